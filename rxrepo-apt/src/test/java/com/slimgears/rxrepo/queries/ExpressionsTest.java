@@ -19,6 +19,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static com.slimgears.rxrepo.filters.ComparableFilter.fromGreaterOrEqual;
 import static com.slimgears.rxrepo.filters.ComparableFilter.fromLessThan;
@@ -153,6 +155,31 @@ public class ExpressionsTest {
         Assert.assertFalse(exp.apply(testEntity2));
     }
 
+    @Test
+    public void testValueInLargeCollectionExpression() {
+        List<String> strings = IntStream.range(0, 100)
+                .mapToObj(i -> "Entity " + (i * 2 + 1))
+                .collect(Collectors.toList());
+        Function<TestEntity, Boolean> exp = Expressions
+                .compile(TestEntity.$.text.in(strings));
+
+        Assert.assertTrue(exp.apply(testEntity1));
+        Assert.assertFalse(exp.apply(testEntity2));
+    }
+
+    @Test
+    public void testCompiledShapeIsReusedForDifferentConstants() {
+        Function<TestEntity, Boolean> exp1 = Expressions.compile(TestEntity.$.text.eq("Entity 1").and(TestEntity.$.number.lessThan(5)));
+        long hitCount = Expressions.compiledShapesStats().hitCount();
+        Function<TestEntity, Boolean> exp2 = Expressions.compile(TestEntity.$.text.eq("Entity 2").and(TestEntity.$.number.lessThan(10)));
+
+        Assert.assertEquals(hitCount + 1, Expressions.compiledShapesStats().hitCount());
+        Assert.assertTrue(exp1.apply(testEntity1));
+        Assert.assertFalse(exp1.apply(testEntity2));
+        Assert.assertFalse(exp2.apply(testEntity1));
+        Assert.assertTrue(exp2.apply(testEntity2));
+    }
+
     @Test
     public void testNullExpression() {
         Function<TestEntity, Boolean> exp = Expressions
@@ -474,6 +501,48 @@ public class ExpressionsTest {
         Assert.assertFalse(exp.apply(testEntity1));
     }
 
+    @Test
+    public void testSearchTextWithConstantTerm() {
+        Assert.assertTrue(Expressions.compile(TestEntity.$.searchText("entity")).apply(testEntity1));
+        Assert.assertTrue(Expressions.compile(TestEntity.$.searchText("*NTITY*")).apply(testEntity1));
+        Assert.assertTrue(Expressions.compile(TestEntity.$.searchText("ent?ty 1")).apply(testEntity1));
+        Assert.assertFalse(Expressions.compile(TestEntity.$.searchText("xyz")).apply(testEntity1));
+    }
+
+    @Test
+    public void testSearchTextFoldsNonAsciiCase() {
+        TestEntity entity = TestEntity.builder()
+                .refEntity(testEntity1.refEntity())
+                .refEntities(Collections.emptyList())
+                .key(TestKey.create("key"))
+                .text("\u00c4rger \u00dcber")
+                .number(1)
+                .build();
+
+        // Literal terms and wildcard patterns are expected to fold case the same way
+        Assert.assertTrue(Expressions.compile(TestEntity.$.searchText("\u00e4rger")).apply(entity));
+        Assert.assertTrue(Expressions.compile(TestEntity.$.searchText("*\u00dcBER*")).apply(entity));
+        Assert.assertTrue(Expressions.compile(TestEntity.$.searchText("\u00e4rg?r")).apply(entity));
+        Assert.assertTrue(Expressions.compile(TestEntity.$.searchText("\u00e4rger \u00fcber")).apply(entity));
+        Assert.assertFalse(Expressions.compile(TestEntity.$.searchText("\u00f6rger")).apply(entity));
+        Assert.assertFalse(Expressions.compile(TestEntity.$.searchText("\u00f6rg?r")).apply(entity));
+    }
+
+    @Test
+    public void testMatchesWithConstantPattern() {
+        Function<TestEntity, Boolean> exp = Expressions
+                .compile(TestEntity.$.text.matches("Entity \\d"));
+
+        Assert.assertTrue(exp.apply(testEntity1));
+        Assert.assertFalse(exp.apply(TestEntity.builder()
+                .refEntity(testEntity1.refEntity())
+                .refEntities(Collections.emptyList())
+                .key(TestKey.create("key"))
+                .text("Entity 12")
+                .number(1)
+                .build()));
+    }
+
     @Test
     public void testValueInTextWithNull1() {
         Function<TestEntity, Boolean> exp = Expressions
@@ -1,11 +1,14 @@
 package com.slimgears.rxrepo.queries;
 
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.Notifications;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
 import com.slimgears.rxrepo.util.Queries;
 import io.reactivex.Observable;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -32,6 +35,53 @@ public class QueriesTest {
         Assert.assertEquals(530, list.get(3).number());
     }
 
+    @Test
+    public void testSortingWithPaginationMatchesFullSort() {
+        QueryInfo<TestKey, TestEntity, TestEntity> queryInfo = QueryInfo.<TestKey, TestEntity, TestEntity>builder()
+                .metaClass(TestEntity.metaClass)
+                .sortDescending(TestEntity.$.refEntity.id)
+                .skip(15L)
+                .limit(20L)
+                .build();
+
+        List<TestEntity> expected = createTestEntities(1000)
+                .sorted(Queries.toComparator(queryInfo))
+                .skip(15)
+                .take(20)
+                .toList()
+                .blockingGet();
+
+        List<TestEntity> actual = createTestEntities(1000)
+                .compose(Queries.applyQuery(queryInfo))
+                .toList()
+                .blockingGet();
+
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testConflateNotifications() {
+        List<TestEntity> entities = createTestEntities(3).toList().blockingGet();
+        TestEntity first = entities.get(0);
+        TestEntity second = entities.get(1);
+        TestEntity third = entities.get(2);
+
+        List<Notification<TestEntity>> conflated = Notifications.conflate(Arrays.asList(
+                Notification.ofCreated(first),
+                Notification.ofModified(second, second.toBuilder().number(100).build()),
+                Notification.ofModified(first, first.toBuilder().number(10).build()),
+                Notification.ofCreated(third),
+                Notification.ofModified(second.toBuilder().number(100).build(), second.toBuilder().number(200).build()),
+                Notification.ofDeleted(third)),
+                TestEntity::key);
+
+        Assert.assertEquals(2, conflated.size());
+        Assert.assertTrue(conflated.get(0).isCreate());
+        Assert.assertEquals(10, conflated.get(0).newValue().number());
+        Assert.assertEquals(second, conflated.get(1).oldValue());
+        Assert.assertEquals(200, conflated.get(1).newValue().number());
+    }
+
     private static Observable<TestEntity> createTestEntities(int count) {
         return Observable.range(0, count)
                 .map(i -> TestEntity.builder()
@@ -2,7 +2,10 @@ package com.slimgears.rxrepo.queries;
 
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.query.decorator.LiveQueryProviderDecorator;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
 import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.query.provider.SnapshotChunking;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.observers.TestObserver;
@@ -14,9 +17,12 @@ import org.mockito.Answers;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.Collections;
 import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class RepositoryTest {
@@ -68,4 +74,22 @@ public class RepositoryTest {
                 .assertNoTimeout()
                 .assertValueAt(2, l -> l.size() == 2);
     }
-}
\ No newline at end of file
+
+    // The provider's own snapshot is used, so its watermark is not replaced by value comparison of shared changes
+    @Test
+    public void testLiveQueryDecoratorDelegatesSnapshotToProvider() {
+        List<Notification<TestEntity>> snapshot = Collections.singletonList(Notification.ofCreated(TestEntities.testEntity1));
+        when(mockQueryProvider.<TestKey, TestEntity>queryAndObserve(any(), any()))
+                .thenReturn(Observable.just(snapshot, Collections.emptyList()));
+
+        QueryProvider provider = LiveQueryProviderDecorator.create().apply(mockQueryProvider);
+        provider.queryAndObserve(
+                QueryInfo.<TestKey, TestEntity, TestEntity>builder().metaClass(TestEntity.metaClass).build(),
+                SnapshotChunking.whole())
+                .test()
+                .assertValues(snapshot, Collections.emptyList());
+
+        verify(mockQueryProvider).queryAndObserve(any(), any());
+        verify(mockQueryProvider, never()).liveQuery(any());
+    }
+}
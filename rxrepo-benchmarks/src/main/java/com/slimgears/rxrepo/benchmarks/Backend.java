@@ -0,0 +1,57 @@
+package com.slimgears.rxrepo.benchmarks;
+
+import com.slimgears.rxrepo.mem.MemoryRepository;
+import com.slimgears.rxrepo.mongodb.MongoRepository;
+import com.slimgears.rxrepo.mongodb.embed.MongoService;
+import com.slimgears.rxrepo.orientdb.OrientDbRepository;
+import com.slimgears.rxrepo.query.Repository;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public enum Backend {
+    Memory {
+        @Override
+        Repository createRepository() {
+            return MemoryRepository.create();
+        }
+    },
+    OrientDbMemory {
+        @Override
+        Repository createRepository() {
+            return OrientDbRepository
+                    .builder()
+                    .url("embedded:db")
+                    .type(OrientDbRepository.Type.Memory)
+                    .name("benchmark_" + dbCounter.incrementAndGet())
+                    .build();
+        }
+    },
+    EmbeddedMongo {
+        @Override
+        AutoCloseable start() {
+            return MongoService.builder()
+                    .port(mongoPort)
+                    .version("4.0.12")
+                    .enableReplica()
+                    .build()
+                    .start();
+        }
+
+        @Override
+        Repository createRepository() {
+            return MongoRepository.builder()
+                    .port(mongoPort)
+                    .dbName("benchmark_" + dbCounter.incrementAndGet())
+                    .build();
+        }
+    };
+
+    private final static int mongoPort = 27019;
+    private final static AtomicInteger dbCounter = new AtomicInteger();
+
+    AutoCloseable start() {
+        return () -> {};
+    }
+
+    abstract Repository createRepository();
+}
@@ -0,0 +1,104 @@
+package com.slimgears.rxrepo.benchmarks;
+
+import com.slimgears.rxrepo.expressions.Aggregator;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import io.reactivex.Maybe;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntitySetBenchmark {
+    @Benchmark
+    public Product insert(RepositoryState state) {
+        int id = state.productCount + ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE - state.productCount);
+        return state.productSet.update(Products.createOne(id)).blockingGet();
+    }
+
+    @Benchmark
+    public Product updateByKey(RepositoryState state) {
+        return state.productSet
+                .update(state.randomKey(), prod -> prod
+                        .flatMap(p -> Maybe.just(p.toBuilder().price(p.price() + 1).build())))
+                .blockingGet();
+    }
+
+    @Benchmark
+    public Product updateEntity(RepositoryState state) {
+        Product product = state.randomProduct();
+        return state.productSet
+                .update(product.toBuilder().name(product.name() + "*").build())
+                .blockingGet();
+    }
+
+    @Benchmark
+    public Product find(RepositoryState state) {
+        return state.productSet.find(state.randomKey()).blockingGet();
+    }
+
+    @Benchmark
+    public List<Product> filteredSortedQuery(RepositoryState state) {
+        return state.productSet
+                .query()
+                .where(Product.$.price.greaterThan(150))
+                .orderBy(Product.$.name)
+                .limit(20)
+                .select()
+                .retrieve()
+                .toList()
+                .blockingGet();
+    }
+
+    @Benchmark
+    public void filteredScan(RepositoryState state, Blackhole blackhole) {
+        state.productSet
+                .query()
+                .where(Product.$.name.contains("1"))
+                .select()
+                .retrieve()
+                .blockingForEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public Long count(RepositoryState state) {
+        return state.productSet
+                .query()
+                .where(Product.$.type.eq(Product.Type.ComputeHardware))
+                .select()
+                .count()
+                .blockingGet();
+    }
+
+    @Benchmark
+    public Integer aggregateSum(RepositoryState state) {
+        return state.productSet
+                .query()
+                .select(Product.$.price)
+                .aggregate(Aggregator.sum())
+                .blockingGet();
+    }
+
+    @Benchmark
+    public Integer aggregateMax(RepositoryState state) {
+        return state.productSet
+                .query()
+                .where(Product.$.type.eq(Product.Type.ConsumerElectronics))
+                .select(Product.$.price)
+                .aggregate(Aggregator.max())
+                .blockingGet();
+    }
+}
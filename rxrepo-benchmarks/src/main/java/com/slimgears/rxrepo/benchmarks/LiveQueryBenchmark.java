@@ -0,0 +1,102 @@
+package com.slimgears.rxrepo.benchmarks;
+
+import com.slimgears.rxrepo.query.Notifications;
+import com.slimgears.rxrepo.test.Product;
+import io.reactivex.Maybe;
+import io.reactivex.disposables.CompositeDisposable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class LiveQueryBenchmark {
+    private final static long timeoutSeconds = 30;
+
+    @State(Scope.Benchmark)
+    public static class Subscribers {
+        @Param({"1", "16", "64"}) public int subscriberCount;
+
+        private final CompositeDisposable subscriptions = new CompositeDisposable();
+        private final AtomicReference<CountDownLatch> observeAsLatch = new AtomicReference<>(new CountDownLatch(0));
+        private final AtomicReference<CountDownLatch> observeLatch = new AtomicReference<>(new CountDownLatch(0));
+
+        @Setup(Level.Trial)
+        public void setUp(RepositoryState state) throws InterruptedException {
+            CountDownLatch initialLists = new CountDownLatch(subscriberCount);
+            for (int i = 0; i < subscriberCount; ++i) {
+                subscriptions.add(state.productSet
+                        .query()
+                        .where(Product.$.price.greaterThan(110))
+                        .liveSelect()
+                        .observeAs(Notifications.toList())
+                        .subscribe(list -> {
+                            initialLists.countDown();
+                            observeAsLatch.get().countDown();
+                        }));
+                subscriptions.add(state.productSet
+                        .query()
+                        .liveSelect()
+                        .observe()
+                        .subscribe(n -> observeLatch.get().countDown()));
+            }
+            initialLists.await(timeoutSeconds, TimeUnit.SECONDS);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            subscriptions.dispose();
+        }
+
+        CountDownLatch expectObserveAs() {
+            CountDownLatch latch = new CountDownLatch(subscriberCount);
+            observeAsLatch.set(latch);
+            return latch;
+        }
+
+        CountDownLatch expectObserve() {
+            CountDownLatch latch = new CountDownLatch(subscriberCount);
+            observeLatch.set(latch);
+            return latch;
+        }
+    }
+
+    @Benchmark
+    public boolean observeAsListUpdate(RepositoryState state, Subscribers subscribers) throws InterruptedException {
+        CountDownLatch latch = subscribers.expectObserveAs();
+        touchRandomProduct(state);
+        return latch.await(timeoutSeconds, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public boolean notificationFanOut(RepositoryState state, Subscribers subscribers) throws InterruptedException {
+        CountDownLatch latch = subscribers.expectObserve();
+        touchRandomProduct(state);
+        return latch.await(timeoutSeconds, TimeUnit.SECONDS);
+    }
+
+    private static void touchRandomProduct(RepositoryState state) {
+        state.productSet
+                .update(state.randomKey(), prod -> prod
+                        .flatMap(p -> Maybe.just(p.toBuilder().price(Math.max(111, p.price() + 1)).build())))
+                .ignoreElement()
+                .blockingAwait();
+    }
+}
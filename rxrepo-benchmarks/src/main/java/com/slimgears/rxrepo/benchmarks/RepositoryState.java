@@ -0,0 +1,50 @@
+package com.slimgears.rxrepo.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.query.EntitySet;
+import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+@State(Scope.Benchmark)
+public class RepositoryState {
+    @Param({"Memory", "OrientDbMemory", "EmbeddedMongo"}) public Backend backend;
+    @Param({"1000"}) public int productCount;
+
+    private AutoCloseable environment;
+    Repository repository;
+    EntitySet<UniqueId, Product> productSet;
+    ImmutableList<Product> products;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        environment = backend.start();
+        repository = backend.createRepository();
+        productSet = repository.entities(Product.metaClass);
+        products = ImmutableList.copyOf(Products.createMany(productCount));
+        productSet.update(products).ignoreElement().blockingAwait();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        repository.clearAndClose();
+        environment.close();
+    }
+
+    UniqueId randomKey() {
+        return UniqueId.productId(ThreadLocalRandom.current().nextInt(productCount));
+    }
+
+    Product randomProduct() {
+        return products.get(ThreadLocalRandom.current().nextInt(productCount));
+    }
+}
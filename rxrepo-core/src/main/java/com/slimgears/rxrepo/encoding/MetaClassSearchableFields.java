@@ -1,13 +1,14 @@
 package com.slimgears.rxrepo.encoding;
 
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.slimgears.rxrepo.annotations.Searchable;
 import com.slimgears.rxrepo.util.PropertyMetas;
 import com.slimgears.util.autovalue.annotations.HasMetaClass;
 import com.slimgears.util.autovalue.annotations.MetaClass;
 import com.slimgears.util.autovalue.annotations.MetaClasses;
 import com.slimgears.util.autovalue.annotations.PropertyMeta;
-import com.slimgears.util.stream.Optionals;
 import com.slimgears.util.stream.Streams;
 
 import java.util.HashSet;
@@ -21,12 +22,23 @@ import java.util.stream.Stream;
 public class MetaClassSearchableFields {
     private final static Map<Class<?>, Function<Object, String>> searchableTextGetterByClass = new ConcurrentHashMap<>();
 
+    private final static Cache<Object, String> searchableTextByObject = CacheBuilder.newBuilder()
+            .weakKeys()
+            .maximumSize(100000)
+            .build();
+
     public static String searchableTextFromObject(Object obj) {
-        return Optional.ofNullable(obj)
-                .flatMap(Optionals.ofType(HasMetaClass.class))
-                .map(o -> (HasMetaClass<?>)o)
-                .flatMap(o -> searchableTextFromEntity(o.metaClass()).map(f -> f.apply(obj)))
-                .orElseGet(() -> obj != null ? obj.toString() : "");
+        if (!(obj instanceof HasMetaClass)) {
+            return obj != null ? obj.toString() : "";
+        }
+        String text = searchableTextByObject.getIfPresent(obj);
+        if (text == null) {
+            text = searchableTextFromEntity(((HasMetaClass<?>)obj).metaClass())
+                    .map(f -> f.apply(obj))
+                    .orElseGet(obj::toString);
+            searchableTextByObject.put(obj, text);
+        }
+        return text;
     }
 
     public static <T> Optional<Function<Object, String>> searchableTextFromEntity(MetaClass<T> metaClass) {
@@ -2,7 +2,18 @@ package com.slimgears.rxrepo.encoding;
 
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+
+import java.util.Collection;
+import java.util.Map;
 
 public interface MetaObjectResolver {
     <K, S> Maybe<S> resolve(MetaClassWithKey<K, S> metaClass, K key);
+
+    default <K, S> Single<Map<K, S>> resolveAll(MetaClassWithKey<K, S> metaClass, Collection<K> keys) {
+        return Observable.fromIterable(keys)
+                .concatMapMaybe(key -> resolve(metaClass, key))
+                .toMap(metaClass::keyOf);
+    }
 }
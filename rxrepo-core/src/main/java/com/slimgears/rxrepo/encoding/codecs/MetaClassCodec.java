@@ -8,10 +8,17 @@ import com.slimgears.util.autovalue.annotations.*;
 import com.slimgears.util.generic.ScopedInstance;
 import com.slimgears.util.stream.Lazy;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 public class MetaClassCodec<T> implements MetaCodec<T> {
     private final MetaClass<T> metaClass;
@@ -54,6 +61,7 @@ public class MetaClassCodec<T> implements MetaCodec<T> {
     public T decode(MetaContext.Reader context) {
         context.reader().readBeginObject();
         MetaBuilder<T> builder = metaClass.createBuilder();
+        List<PendingReference> references = new ArrayList<>();
         int foundProperties = 0;
         while (context.reader().currentElement() != MetaElementType.EndObject) {
             String name = context.reader().readName();
@@ -62,7 +70,7 @@ public class MetaClassCodec<T> implements MetaCodec<T> {
 
             if (context.fieldMapper().isReferenceFieldName(name)) {
                 propertyGetter = n -> context.fieldMapper().fromReferenceFieldName(metaClass, n);
-                propertyReader = prop -> readReferenceProperty(context, prop, builder);
+                propertyReader = prop -> readReferenceProperty(context, prop, builder, references);
             } else {
                 propertyGetter = n -> context.fieldMapper().fromFieldName(metaClass, n);
                 propertyReader = prop -> readProperty(context, prop, builder);
@@ -81,6 +89,7 @@ public class MetaClassCodec<T> implements MetaCodec<T> {
             }
         }
         context.reader().readEndObject();
+        resolveReferences(references);
         return (foundProperties > 0)
                 ? builder.build()
                 : null;
@@ -119,17 +128,42 @@ public class MetaClassCodec<T> implements MetaCodec<T> {
         return codec.decode(context);
     }
 
+    // Referenced objects are not resolved while reading, so the keys of all references of the object
+    // are resolved together once the object is read
     @SuppressWarnings("unchecked")
-    private <V> void readReferenceProperty(MetaContext.Reader context, PropertyMeta<T, V> propertyMeta, MetaBuilder<T> builder) {
+    private <V> void readReferenceProperty(MetaContext.Reader context, PropertyMeta<T, V> propertyMeta, MetaBuilder<T> builder, List<PendingReference> references) {
         MetaClassWithKey<?, V> metaClass = MetaClasses.forTokenWithKeyUnchecked(propertyMeta.type());
-        Optional.ofNullable((V)readReference(context, (MetaClassWithKey)metaClass))
-                .ifPresent(val -> propertyMeta.setValue(builder, val));
+        Optional.ofNullable(readValue(context, metaClass.keyProperty().type()))
+                .ifPresent(key -> references.add(new PendingReference(metaClass, key, val -> propertyMeta.setValue(builder, (V)val))));
+    }
+
+    private void resolveReferences(List<PendingReference> references) {
+        references.stream()
+                .collect(Collectors.groupingBy(reference -> reference.metaClass, LinkedHashMap::new, Collectors.toList()))
+                .forEach(this::resolveReferences);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <K, S> void resolveReferences(MetaClassWithKey<K, S> metaClass, List<PendingReference> references) {
+        Set<K> keys = references.stream()
+                .map(reference -> (K)reference.key)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<K, S> objects = resolver.resolveAll(metaClass, keys).blockingGet();
+        references.forEach(reference -> Optional
+                .ofNullable(objects.get((K)reference.key))
+                .ifPresent(reference.setter));
     }
 
-    private <K, S> S readReference(MetaContext.Reader context, MetaClassWithKey<K, S> metaClass) {
-        return Optional.ofNullable(readValue(context, metaClass.keyProperty().type()))
-                .flatMap(key -> resolver.resolve(metaClass, key).map(Optional::of).blockingGet(Optional.empty()))
-                .orElse(null);
+    private static class PendingReference {
+        private final MetaClassWithKey metaClass;
+        private final Object key;
+        private final Consumer<Object> setter;
+
+        private PendingReference(MetaClassWithKey<?, ?> metaClass, Object key, Consumer<Object> setter) {
+            this.metaClass = metaClass;
+            this.key = key;
+            this.setter = setter;
+        }
     }
 
     @AutoService(MetaCodecProvider.class)
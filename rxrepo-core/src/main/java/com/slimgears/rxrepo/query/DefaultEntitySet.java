@@ -1,6 +1,7 @@
 package com.slimgears.rxrepo.query;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.slimgears.rxrepo.expressions.Aggregator;
 import com.slimgears.rxrepo.expressions.BooleanExpression;
 import com.slimgears.rxrepo.expressions.ObjectExpression;
@@ -9,11 +10,13 @@ import com.slimgears.rxrepo.expressions.internal.CollectionPropertyExpression;
 import com.slimgears.rxrepo.filters.Filter;
 import com.slimgears.rxrepo.query.provider.*;
 import com.slimgears.rxrepo.util.Expressions;
+import com.slimgears.rxrepo.util.KeyBatcher;
 import com.slimgears.util.autovalue.annotations.HasMetaClass;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import com.slimgears.util.rx.Maybes;
 import com.slimgears.util.rx.Observables;
 import com.slimgears.util.rx.Singles;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.ObservableTransformer;
@@ -27,14 +30,18 @@ import org.slf4j.LoggerFactory;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
     private final static Logger log = LoggerFactory.getLogger(DefaultEntitySet.class);
+    private final static int findBatchSize = 256;
+    private final static Duration findBatchWindow = Duration.ofMillis(1);
     private final QueryProvider queryProvider;
     private final MetaClassWithKey<K, S> metaClass;
     private final RepositoryConfigModel config;
+    private final KeyBatcher<K, S> finder;
 
     private DefaultEntitySet(QueryProvider queryProvider,
                              MetaClassWithKey<K, S> metaClass,
@@ -42,6 +49,7 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
         this.queryProvider = queryProvider;
         this.metaClass = metaClass;
         this.config = config;
+        this.finder = KeyBatcher.forEntities(metaClass, queryProvider::query, findBatchSize, findBatchWindow);
     }
 
     static <K, S> DefaultEntitySet<K, S> create(
@@ -56,6 +64,17 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
         return metaClass;
     }
 
+    // Lookups issued concurrently are resolved together with a single query
+    @Override
+    public Maybe<S> find(K key) {
+        return finder.find(key);
+    }
+
+    @Override
+    public Single<Map<K, S>> findAll(Iterable<K> keys) {
+        return queryProvider.findAll(metaClass, keys);
+    }
+
     @Override
     public EntityDeleteQuery<S> delete() {
         return new EntityDeleteQuery<S>() {
@@ -165,6 +184,8 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
             private final AtomicReference<ObjectExpression<S, Boolean>> predicate = new AtomicReference<>();
             private Long limit;
             private Long skip;
+            private KeysetCursor cursor;
+            private boolean backward;
 
             @Override
             public <V extends Comparable<V>> SelectQueryBuilder<S> orderBy(PropertyExpression<S, ?, V> field, boolean ascending) {
@@ -172,6 +193,47 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
                 return this;
             }
 
+            @Override
+            public SelectQueryBuilder<S> after(KeysetCursor cursor) {
+                this.cursor = cursor;
+                this.backward = false;
+                return this;
+            }
+
+            @Override
+            public SelectQueryBuilder<S> before(KeysetCursor cursor) {
+                this.cursor = cursor;
+                this.backward = true;
+                return this;
+            }
+
+            @Override
+            public Single<KeysetPage<S>> retrievePage() {
+                ImmutableList<SortingInfo<S, ?, ? extends Comparable<?>>> sorting = Keysets.withTiebreak(metaClass, sortingInfos.build());
+                return select(ObjectExpression.arg(metaClass.asType()), false, true)
+                        .retrieve()
+                        .toList()
+                        .map(items -> KeysetPage.create(items, item -> Keysets.cursorOf(sorting, item)));
+            }
+
+            private ImmutableList<SortingInfo<S, ?, ? extends Comparable<?>>> sorting(boolean keyset) {
+                if (!keyset) {
+                    return sortingInfos.build();
+                }
+                ImmutableList<SortingInfo<S, ?, ? extends Comparable<?>>> sorting = Keysets.withTiebreak(metaClass, sortingInfos.build());
+                return backward ? Keysets.reversed(sorting) : sorting;
+            }
+
+            private ObjectExpression<S, Boolean> predicate() {
+                return Optional.ofNullable(cursor)
+                        .map(c -> Keysets.predicateOf(sorting(true), c))
+                        .map(keysetPredicate -> Optional
+                                .ofNullable(predicate.get())
+                                .<ObjectExpression<S, Boolean>>map(p -> BooleanExpression.and(p, keysetPredicate))
+                                .orElse(keysetPredicate))
+                        .orElseGet(predicate::get);
+            }
+
             @Override
             public SelectQuery<S> select() {
                 return select(ObjectExpression.arg(metaClass.asType()));
@@ -179,13 +241,18 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
 
             @Override
             public <T> SelectQuery<T> select(ObjectExpression<S, T> expression, boolean distinct) {
+                return select(expression, distinct, cursor != null);
+            }
+
+            private <T> SelectQuery<T> select(ObjectExpression<S, T> expression, boolean distinct, boolean keyset) {
+                boolean reverse = keyset && backward;
                 return new SelectQuery<T>() {
                     private final QueryInfo.Builder<K, S, T> builder = QueryInfo.<K, S, T>builder()
                             .metaClass(metaClass)
-                            .predicate(predicate.get())
+                            .predicate(predicate())
                             .limit(limit)
                             .skip(skip)
-                            .sorting(sortingInfos.build())
+                            .sorting(sorting(keyset))
                             .mapping(expression)
                             .distinct(distinct);
 
@@ -208,7 +275,15 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
 
                     @Override
                     public Observable<T> retrieve() {
-                        return queryProvider.query(builder.build());
+                        Observable<T> items = queryProvider.query(builder.build());
+                        // Backward page is queried in reversed order, restore the requested one
+                        return reverse ? items.toList().flattenAsObservable(Lists::reverse) : items;
+                    }
+
+                    @Override
+                    public Flowable<T> retrieveFlowable() {
+                        Flowable<T> items = queryProvider.queryFlowable(builder.build());
+                        return reverse ? items.toList().flattenAsFlowable(Lists::reverse) : items;
                     }
                 };
             }
@@ -225,6 +300,8 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
                             .metaClass(metaClass)
                             .predicate(predicate.get())
                             .mapping(expression);
+                    private Duration conflationWindow;
+                    private SnapshotChunking snapshotChunking = SnapshotChunking.whole();
 
                     @Override
                     public Observable<T> first() {
@@ -252,18 +329,7 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
                     @Override
                     public <R> Observable<R> observeAs(QueryTransformer<T, R> queryTransformer) {
                         QueryInfo<K, S, T> sourceQuery = builder.build();
-
-                        QueryInfo<K, S, S> observeQuery = QueryInfo.<K, S, S>builder()
-                            .metaClass(sourceQuery.metaClass())
-                            .predicate(sourceQuery.predicate())
-                            .properties(Optional
-                                .ofNullable(sourceQuery.mapping())
-                                .<ImmutableList<PropertyExpression<S, ?, ?>>>map(mapping -> sourceQuery.properties()
-                                    .stream()
-                                    .map(prop -> Expressions.compose(mapping, prop))
-                                    .collect(ImmutableList.toImmutableList()))
-                                .orElse((ImmutableList<PropertyExpression<S, ?, ?>>)(ImmutableList<?>)sourceQuery.properties()))
-                            .build();
+                        QueryInfo<K, S, S> observeQuery = observeQuery(sourceQuery);
 
                         QueryInfo<K, S, S> retrieveQuery = observeQuery.toBuilder()
                             .limit(limit)
@@ -277,27 +343,66 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
                             .sortingAddAll(sortingInfos.build())
                             .build();
 
-                        return queryProvider.aggregate(observeQuery, Aggregator.count())
-                                .defaultIfEmpty(0L)
-                                .map(AtomicLong::new)
+                        // Without pagination the snapshot itself gives the count, so no separate round trip is needed
+                        boolean paginated = limit != null || skip != null;
+                        Maybe<AtomicLong> initialCount = paginated
+                                ? queryProvider.aggregate(observeQuery, Aggregator.count()).defaultIfEmpty(0L).map(AtomicLong::new)
+                                : Maybe.fromCallable(AtomicLong::new);
+
+                        return initialCount
                                 .flatMapObservable(count -> {
                                     ObservableTransformer<List<Notification<S>>, R> transformer = queryTransformer
                                         .transformer(transformQuery, count);
 
+                                    // Snapshot chunks go to the transformer as they are, up to the empty batch terminating the snapshot.
+                                    // The terminating batch is passed on only for an empty snapshot, so the initial result is always emitted
+                                    AtomicBoolean snapshotStarted = new AtomicBoolean();
                                     return queryProvider
-                                            .query(retrieveQuery)
-                                            .map(Notification::ofCreated)
-                                            .toList()
-                                            .toObservable()
-                                            .compose(transformer)
-                                            .concatWith(queryProvider.liveQuery(observeQuery)
-                                                    .doOnNext(n -> updateCount(n, count))
-                                                    .compose(Observables.bufferUntilIdle(Duration.ofMillis(config.debounceTimeoutMillis())))
-                                                    .filter(n -> !n.isEmpty())
-                                                    .compose(transformer));
+                                            .queryAndObserve(retrieveQuery, snapshotChunking)
+                                            .publish(batches -> Observable.merge(
+                                                    batches.takeUntil((List<Notification<S>> batch) -> batch.isEmpty())
+                                                            .filter(chunk -> snapshotStarted.compareAndSet(false, true) || !chunk.isEmpty())
+                                                            .doOnNext(chunk -> {
+                                                                if (!paginated) {
+                                                                    count.addAndGet(chunk.size());
+                                                                }
+                                                            }),
+                                                    batches.skipWhile(batch -> !batch.isEmpty())
+                                                            .skip(1)
+                                                            .concatMapIterable(batch -> batch)
+                                                            .doOnNext(n -> updateCount(n, count))
+                                                            .compose(Observables.bufferUntilIdle(Duration.ofMillis(config.debounceTimeoutMillis())))
+                                                            .map(n -> Notifications.conflate(n, metaClass::keyOf))
+                                                            .filter(n -> !n.isEmpty())))
+                                            .compose(transformer);
                                 });
                     }
 
+                    @SuppressWarnings("unchecked")
+                    private QueryInfo<K, S, S> observeQuery(QueryInfo<K, S, T> sourceQuery) {
+                        return QueryInfo.<K, S, S>builder()
+                            .metaClass(sourceQuery.metaClass())
+                            .predicate(sourceQuery.predicate())
+                            .properties(Optional
+                                .ofNullable(sourceQuery.mapping())
+                                .<ImmutableList<PropertyExpression<S, ?, ?>>>map(mapping -> sourceQuery.properties()
+                                    .stream()
+                                    .map(prop -> Expressions.compose(mapping, prop))
+                                    .collect(ImmutableList.toImmutableList()))
+                                .orElse((ImmutableList<PropertyExpression<S, ?, ?>>)(ImmutableList<?>)sourceQuery.properties()))
+                            .build();
+                    }
+
+                    private Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
+                        if (conflationWindow == null) {
+                            return queryProvider.liveQuery(query);
+                        }
+                        java.util.function.Function<S, T> mapper = Expressions.compile(query.mapping());
+                        return queryProvider.liveQuery(observeQuery(query))
+                                .compose(Notifications.conflate(metaClass::keyOf, conflationWindow))
+                                .map(n -> n.map(mapper));
+                    }
+
                     private void updateCount(Notification<S> notification, AtomicLong count) {
                         if (notification.isDelete()) {
                             count.decrementAndGet();
@@ -309,19 +414,43 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
                     @Override
                     public Observable<Notification<T>> queryAndObserve() {
                         QueryInfo<K, S, T> query = builder.build();
+                        java.util.function.Function<S, T> mapper = Expressions.compile(query.mapping());
                         return queryProvider
-                                .query(query
+                                .queryAndObserve(observeQuery(query)
                                         .toBuilder()
                                         .limit(limit)
                                         .skip(skip)
-                                        .build())
-                                .map(Notification::ofCreated)
-                                .concatWith(queryProvider.liveQuery(query));
+                                        .build(), snapshotChunking)
+                                .concatMapIterable(batch -> batch)
+                                .compose(src -> Optional.ofNullable(conflationWindow)
+                                        .map(window -> src.compose(Notifications.conflate(metaClass::keyOf, window)))
+                                        .orElse(src))
+                                .map(n -> n.map(mapper));
                     }
 
                     @Override
                     public Observable<Notification<T>> observe() {
-                        return queryProvider.liveQuery(builder.build());
+                        return liveQuery(builder.build());
+                    }
+
+                    // Conflated notifications are merged on the client, so only the unconflated ones come with the provider's backpressure
+                    @Override
+                    public Flowable<Notification<T>> observeFlowable() {
+                        return conflationWindow == null
+                                ? queryProvider.liveQueryFlowable(builder.build())
+                                : super.observeFlowable();
+                    }
+
+                    @Override
+                    public LiveSelectQuery<T> conflate(Duration window) {
+                        this.conflationWindow = window;
+                        return this;
+                    }
+
+                    @Override
+                    public LiveSelectQuery<T> snapshotChunks(int maxSize, Duration maxDelay) {
+                        this.snapshotChunking = SnapshotChunking.of(maxSize, maxDelay);
+                        return this;
                     }
                 };
             }
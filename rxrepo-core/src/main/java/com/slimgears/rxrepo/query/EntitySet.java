@@ -6,6 +6,7 @@ import com.slimgears.rxrepo.expressions.PropertyExpression;
 import com.slimgears.rxrepo.filters.Filter;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
@@ -13,6 +14,7 @@ import io.reactivex.functions.Function;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 public interface EntitySet<K, S> {
     MetaClassWithKey<K, S> metaClass();
@@ -24,6 +26,7 @@ public interface EntitySet<K, S> {
     Single<S> update(S entity);
     Maybe<S> update(K key, Function<Maybe<S>, Maybe<S>> updater);
     Single<List<S>> update(Iterable<S> entities);
+    Single<Map<K, S>> findAll(Iterable<K> keys);
 
     default Observable<S> update(Observable<S> entities) {
         return entities.flatMapSingle(this::update);
@@ -37,6 +40,14 @@ public interface EntitySet<K, S> {
         return query().where(predicate).select().retrieve();
     }
 
+    default Flowable<S> findAllFlowable() {
+        return findAllFlowable(null);
+    }
+
+    default Flowable<S> findAllFlowable(BooleanExpression<S> predicate) {
+        return query().where(predicate).select().retrieveFlowable();
+    }
+
     default Observable<S> findAll(Filter<S> filter) {
         return findAll(filter.toExpression(ObjectExpression.arg(metaClass().asType())).orElse(null));
     }
@@ -80,6 +91,10 @@ public interface EntitySet<K, S> {
         return query().liveSelect().observe();
     }
 
+    default Flowable<Notification<S>> observeFlowable() {
+        return query().liveSelect().observeFlowable();
+    }
+
     default Observable<Notification<S>> queryAndObserve() {
         return query().liveSelect().queryAndObserve();
     }
@@ -0,0 +1,16 @@
+package com.slimgears.rxrepo.query;
+
+import com.google.auto.value.AutoValue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@AutoValue
+public abstract class KeysetCursor {
+    abstract List<Object> values();
+
+    static KeysetCursor create(List<Object> values) {
+        return new AutoValue_KeysetCursor(Collections.unmodifiableList(new ArrayList<>(values)));
+    }
+}
@@ -0,0 +1,35 @@
+package com.slimgears.rxrepo.query;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.function.Function;
+
+@AutoValue
+public abstract class KeysetPage<T> {
+    public abstract ImmutableList<T> items();
+    @Nullable public abstract KeysetCursor previous();
+    @Nullable public abstract KeysetCursor next();
+
+    public boolean isEmpty() {
+        return items().isEmpty();
+    }
+
+    public <R> KeysetPage<R> map(Function<T, R> mapper) {
+        return new AutoValue_KeysetPage<>(
+                items().stream().map(mapper).collect(ImmutableList.toImmutableList()),
+                previous(),
+                next());
+    }
+
+    static <T> KeysetPage<T> create(List<T> items, Function<T, KeysetCursor> cursorOf) {
+        return items.isEmpty()
+                ? new AutoValue_KeysetPage<>(ImmutableList.of(), null, null)
+                : new AutoValue_KeysetPage<>(
+                        ImmutableList.copyOf(items),
+                        cursorOf.apply(items.get(0)),
+                        cursorOf.apply(items.get(items.size() - 1)));
+    }
+}
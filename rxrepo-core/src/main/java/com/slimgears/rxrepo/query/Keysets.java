@@ -0,0 +1,133 @@
+package com.slimgears.rxrepo.query;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.expressions.BooleanExpression;
+import com.slimgears.rxrepo.expressions.ComparableExpression;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.expressions.PropertyExpression;
+import com.slimgears.rxrepo.query.provider.SortingInfo;
+import com.slimgears.rxrepo.util.Expressions;
+import com.slimgears.rxrepo.util.PropertyExpressions;
+import com.slimgears.rxrepo.util.PropertyMetas;
+import com.slimgears.util.autovalue.annotations.MetaClass;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.MetaClasses;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+import com.slimgears.util.stream.Streams;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+class Keysets {
+    static <K, S> ImmutableList<SortingInfo<S, ?, ? extends Comparable<?>>> withTiebreak(
+            MetaClassWithKey<K, S> metaClass,
+            List<SortingInfo<S, ?, ? extends Comparable<?>>> sorting) {
+        sorting.stream()
+                .map(SortingInfo::property)
+                .filter(Keysets::isNullable)
+                .findFirst()
+                .ifPresent(p -> {
+                    throw new IllegalArgumentException("Keyset pagination requires non-nullable sort properties, but " + PropertyExpressions.pathOf(p) + " is nullable");
+                });
+
+        Set<String> sortedPaths = sorting.stream()
+                .map(SortingInfo::property)
+                .map(PropertyExpressions::pathOf)
+                .collect(Collectors.toSet());
+
+        return Stream.concat(
+                sorting.stream(),
+                tiebreakPropertiesOf(ObjectExpression.arg(metaClass.asType()), metaClass.keyProperty())
+                        .filter(p -> !sortedPaths.contains(PropertyExpressions.pathOf(p)))
+                        .map(Keysets::ascending))
+                .collect(ImmutableList.toImmutableList());
+    }
+
+    static <S> ImmutableList<SortingInfo<S, ?, ? extends Comparable<?>>> reversed(List<SortingInfo<S, ?, ? extends Comparable<?>>> sorting) {
+        return sorting.stream()
+                .map(Keysets::reversed)
+                .collect(ImmutableList.toImmutableList());
+    }
+
+    static <S> KeysetCursor cursorOf(List<SortingInfo<S, ?, ? extends Comparable<?>>> sorting, S entity) {
+        return KeysetCursor.create(sorting.stream()
+                .map(SortingInfo::property)
+                .map(Expressions::compile)
+                .map(getter -> (Object)getter.apply(entity))
+                .collect(Collectors.toList()));
+    }
+
+    // Expands (p1, p2, ..., pn) > (v1, v2, ..., vn) into
+    // (p1 > v1) or (p1 = v1 and p2 > v2) or ..., so every term is a plain range/equality
+    // predicate which the backends can serve from an index on the leading sort properties.
+    static <S> ObjectExpression<S, Boolean> predicateOf(List<SortingInfo<S, ?, ? extends Comparable<?>>> sorting, KeysetCursor cursor) {
+        List<Object> values = cursor.values();
+        if (values.size() != sorting.size()) {
+            throw new IllegalArgumentException("Keyset cursor does not match query sorting (" + values.size() + " values, " + sorting.size() + " sort properties)");
+        }
+
+        BooleanExpression<S> predicate = null;
+        BooleanExpression<S> equalPrefix = null;
+        for (int i = 0; i < sorting.size(); ++i) {
+            SortingInfo<S, ?, ? extends Comparable<?>> sortingInfo = sorting.get(i);
+            Object value = values.get(i);
+            BooleanExpression<S> following = followingOf(sortingInfo, value);
+            BooleanExpression<S> term = equalPrefix != null ? equalPrefix.and(following) : following;
+            predicate = predicate != null ? predicate.or(term) : term;
+            BooleanExpression<S> equal = equalOf(sortingInfo, value);
+            equalPrefix = equalPrefix != null ? equalPrefix.and(equal) : equal;
+        }
+        return predicate != null ? predicate : BooleanExpression.ofFalse();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <S> BooleanExpression<S> followingOf(SortingInfo<S, ?, ? extends Comparable<?>> sortingInfo, Object value) {
+        ComparableExpression property = ObjectExpression.asComparable((ObjectExpression)sortingInfo.property());
+        return sortingInfo.ascending()
+                ? property.greaterThan((Comparable)value)
+                : property.lessThan((Comparable)value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <S> BooleanExpression<S> equalOf(SortingInfo<S, ?, ? extends Comparable<?>> sortingInfo, Object value) {
+        ObjectExpression<S, Object> property = (ObjectExpression<S, Object>)(ObjectExpression<S, ?>)sortingInfo.property();
+        return property.eq(value);
+    }
+
+    // Backends order nulls differently (first or last, depending on direction), so a range predicate
+    // cannot continue after a null value consistently. A property is nullable if any property on its path is
+    private static boolean isNullable(PropertyExpression<?, ?, ?> property) {
+        return !PropertyMetas.isMandatory(property.property())
+                || (PropertyExpressions.hasParent(property) && isNullable(PropertyExpressions.parentOf(property)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <S, V extends Comparable<V>> SortingInfo<S, ?, ? extends Comparable<?>> ascending(PropertyExpression<S, ?, ? extends Comparable<?>> property) {
+        return SortingInfo.create((PropertyExpression<S, ?, V>)property, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <S, V extends Comparable<V>> SortingInfo<S, ?, ? extends Comparable<?>> reversed(SortingInfo<S, ?, ? extends Comparable<?>> sortingInfo) {
+        return SortingInfo.create((PropertyExpression<S, ?, V>)sortingInfo.property(), !sortingInfo.ascending());
+    }
+
+    // Comparable key is used as is, embedded keys contribute their comparable leaf properties
+    @SuppressWarnings("unchecked")
+    private static <S, T> Stream<PropertyExpression<S, ?, ? extends Comparable<?>>> tiebreakPropertiesOf(ObjectExpression<S, T> target, PropertyMeta<T, ?> property) {
+        TypeToken<?> type = property.type();
+        if (type.isSubtypeOf(Comparable.class)) {
+            return Stream.of(PropertyExpression.ofComparable(target, (PropertyMeta<T, Comparable>)property));
+        }
+        if (!PropertyMetas.hasMetaClass(type)) {
+            return Stream.empty();
+        }
+        PropertyExpression<S, T, Object> parent = PropertyExpression.ofObject(target, (PropertyMeta<T, Object>)property);
+        MetaClass<Object> metaClass = MetaClasses.forTokenUnchecked((TypeToken<Object>)type);
+        return Streams
+                .fromIterable(metaClass.properties())
+                .flatMap(p -> tiebreakPropertiesOf(parent, p));
+    }
+}
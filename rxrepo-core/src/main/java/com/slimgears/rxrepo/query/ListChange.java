@@ -0,0 +1,60 @@
+package com.slimgears.rxrepo.query;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.Nullable;
+import java.util.Optional;
+import java.util.function.Function;
+
+@AutoValue
+public abstract class ListChange<T> {
+    public enum Type {
+        Insert,
+        Remove,
+        Move,
+        Replace,
+        Reset
+    }
+
+    public abstract Type type();
+    public abstract int index();
+    public abstract int fromIndex();
+    @Nullable public abstract T item();
+    @Nullable public abstract ImmutableList<T> items();
+
+    public static <T> ListChange<T> insert(int index, T item) {
+        return create(Type.Insert, index, -1, item, null);
+    }
+
+    public static <T> ListChange<T> remove(int index) {
+        return create(Type.Remove, index, index, null, null);
+    }
+
+    public static <T> ListChange<T> move(int fromIndex, int toIndex, T item) {
+        return create(Type.Move, toIndex, fromIndex, item, null);
+    }
+
+    public static <T> ListChange<T> replace(int index, T item) {
+        return create(Type.Replace, index, index, item, null);
+    }
+
+    public static <T> ListChange<T> reset(ImmutableList<T> items) {
+        return create(Type.Reset, 0, -1, null, items);
+    }
+
+    public <R> ListChange<R> map(Function<T, R> mapper) {
+        return create(
+                type(),
+                index(),
+                fromIndex(),
+                Optional.ofNullable(item()).map(mapper).orElse(null),
+                Optional.ofNullable(items())
+                        .map(items -> items.stream().map(mapper).collect(ImmutableList.toImmutableList()))
+                        .orElse(null));
+    }
+
+    private static <T> ListChange<T> create(Type type, int index, int fromIndex, @Nullable T item, @Nullable ImmutableList<T> items) {
+        return new AutoValue_ListChange<>(type, index, fromIndex, item, items);
+    }
+}
@@ -2,9 +2,12 @@ package com.slimgears.rxrepo.query;
 
 import com.slimgears.rxrepo.expressions.Aggregator;
 import com.slimgears.rxrepo.expressions.PropertyExpression;
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.functions.IntFunction;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 import java.util.function.Function;
@@ -16,6 +19,9 @@ public abstract class LiveSelectQuery<T> {
     public abstract <R> Observable<R> observeAs(QueryTransformer<T, R> transformer);
     public abstract Observable<Notification<T>> queryAndObserve();
     public abstract Observable<Notification<T>> observe();
+    public abstract LiveSelectQuery<T> conflate(Duration window);
+    // Emits the initial result in chunks of up to maxSize items or whatever arrived within maxDelay
+    public abstract LiveSelectQuery<T> snapshotChunks(int maxSize, Duration maxDelay);
 
     public Observable<Long> count() {
         return aggregate(Aggregator.count());
@@ -25,6 +31,10 @@ public abstract class LiveSelectQuery<T> {
         return asList().map(list -> list.toArray(arrayCreator.apply(list.size())));
     }
 
+    public Flowable<Notification<T>> observeFlowable() {
+        return observe().toFlowable(BackpressureStrategy.BUFFER);
+    }
+
     public <R> R apply(Function<LiveSelectQuery<T>, R> mapper) {
         return mapper.apply(this);
     }
@@ -4,6 +4,7 @@ import com.slimgears.rxrepo.expressions.ObjectExpression;
 import com.slimgears.rxrepo.expressions.PropertyExpression;
 import com.slimgears.rxrepo.filters.Filter;
 import com.slimgears.rxrepo.util.Expressions;
+import io.reactivex.Single;
 
 import java.util.Optional;
 
@@ -32,6 +33,23 @@ class MappedSelectQueryBuilder<T, S> extends SelectQueryBuilder<T> {
         return this;
     }
 
+    @Override
+    public SelectQueryBuilder<T> after(KeysetCursor cursor) {
+        underlying.after(cursor);
+        return this;
+    }
+
+    @Override
+    public SelectQueryBuilder<T> before(KeysetCursor cursor) {
+        underlying.before(cursor);
+        return this;
+    }
+
+    @Override
+    public Single<KeysetPage<T>> retrievePage() {
+        return underlying.retrievePage().map(page -> page.map(Expressions.compile(mapper)));
+    }
+
     @Override
     public SelectQuery<T> select() {
         return underlying.select(mapper);
@@ -14,10 +14,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
+import java.time.Duration;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -77,6 +81,24 @@ public class Notifications {
         };
     }
 
+    public static <T> QueryTransformer<T, List<ListChange<T>>> toListChanges() {
+        return toListChanges(0);
+    }
+
+    public static <T> QueryTransformer<T, List<ListChange<T>>> toListChanges(long snapshotInterval) {
+        return new QueryTransformer<T, List<ListChange<T>>>() {
+            @Override
+            public <K, S> ObservableTransformer<List<Notification<S>>, List<ListChange<T>>> transformer(QueryInfo<K, S, T> query, AtomicLong count) {
+                Function<S, T> mapper = Expressions.compile(query.mapping());
+                ObservableTransformer<List<Notification<S>>, List<ListChange<S>>> transformer =
+                        NotificationsToListChangesTransformer.create(query.metaClass(), query.sorting(), query.limit(), snapshotInterval);
+                return src -> src
+                        .compose(transformer)
+                        .map(changes -> changes.stream().map(change -> change.map(mapper)).collect(Collectors.toList()));
+            }
+        };
+    }
+
     public static <S> ObservableTransformer<Notification<S>, Notification<S>> filter(ObjectExpression<S, Boolean> predicate) {
         if (predicate == null) {
             return src -> src;
@@ -108,6 +130,29 @@ public class Notifications {
                 });
     }
 
+    public static <T> ObservableTransformer<Notification<T>, Notification<T>> conflate(Function<T, ?> keyOf, Duration window) {
+        return src -> src
+                .buffer(window.toMillis(), TimeUnit.MILLISECONDS)
+                .filter(notifications -> !notifications.isEmpty())
+                .concatMapIterable(notifications -> conflate(notifications, keyOf));
+    }
+
+    // Keeps the first old value and the last new value per key, so that create followed by delete cancels out
+    public static <T> List<Notification<T>> conflate(List<Notification<T>> notifications, Function<T, ?> keyOf) {
+        if (notifications.size() < 2) {
+            return notifications;
+        }
+        Map<Object, Notification<T>> latest = new LinkedHashMap<>();
+        notifications.forEach(notification -> latest.merge(
+                keyOf.apply(Optional.ofNullable(notification.newValue()).orElseGet(notification::oldValue)),
+                notification,
+                (first, last) -> Notification.ofModified(first.oldValue(), last.newValue())));
+        return latest.values()
+                .stream()
+                .filter(n -> n.oldValue() != null || n.newValue() != null)
+                .collect(Collectors.toList());
+    }
+
     public static <K, S, T> ObservableTransformer<Notification<S>, Notification<T>> applyQuery(QueryInfo<K, S, T> query) {
         return src -> src
                 .doOnNext(n -> log.debug("Notification: {}", n))
@@ -0,0 +1,157 @@
+package com.slimgears.rxrepo.query;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.query.provider.SortingInfo;
+import com.slimgears.rxrepo.query.provider.SortingInfos;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.ObservableTransformer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.*;
+
+public class NotificationsToListChangesTransformer<K, T> implements ObservableTransformer<List<Notification<T>>, List<ListChange<T>>> {
+    private final static Logger log = LoggerFactory.getLogger(NotificationsToListChangesTransformer.class);
+    private final MetaClassWithKey<K, T> metaClass;
+    private final int window;
+    private final long snapshotInterval;
+    // Entries are ordered by the query comparator (if any), ties are broken by insertion sequence
+    private final Comparator<Entry<T>> comparator;
+    private final List<Entry<T>> entries = new ArrayList<>();
+    private final Map<K, Entry<T>> map = new HashMap<>();
+    private long sequence;
+    private long batchCount;
+
+    private NotificationsToListChangesTransformer(MetaClassWithKey<K, T> metaClass,
+                                                  ImmutableList<SortingInfo<T, ?, ? extends Comparable<?>>> sortingInfos,
+                                                  @Nullable Long limit,
+                                                  long snapshotInterval) {
+        log.trace("Creating instance of list changes transformer for {}", metaClass.simpleName());
+        this.metaClass = metaClass;
+        this.window = Optional.ofNullable(limit).map(l -> (int)Math.min(l, Integer.MAX_VALUE)).orElse(Integer.MAX_VALUE);
+        this.snapshotInterval = snapshotInterval;
+        Comparator<Entry<T>> sequenceComparator = Comparator.comparingLong(e -> e.sequence);
+        this.comparator = Optional
+                .ofNullable(SortingInfos.toComparator(sortingInfos))
+                .map(c -> Comparator.<Entry<T>, T>comparing(e -> e.item, c).thenComparing(sequenceComparator))
+                .orElse(sequenceComparator);
+    }
+
+    public static <K, T> NotificationsToListChangesTransformer<K, T> create(
+            MetaClassWithKey<K, T> metaClass,
+            ImmutableList<SortingInfo<T, ?, ? extends Comparable<?>>> sortingInfos,
+            @Nullable Long limit,
+            long snapshotInterval) {
+        return new NotificationsToListChangesTransformer<>(metaClass, sortingInfos, limit, snapshotInterval);
+    }
+
+    @Override
+    public ObservableSource<List<ListChange<T>>> apply(Observable<List<Notification<T>>> src) {
+        return src
+                .map(this::onNotifications)
+                .filter(changes -> !changes.isEmpty());
+    }
+
+    private synchronized List<ListChange<T>> onNotifications(List<Notification<T>> notifications) {
+        boolean snapshot = batchCount == 0 || (snapshotInterval > 0 && batchCount % snapshotInterval == 0);
+        ++batchCount;
+        List<ListChange<T>> changes = new ArrayList<>();
+        notifications.forEach(n -> onNotification(n, changes));
+        return snapshot
+                ? Collections.singletonList(ListChange.reset(entries
+                        .stream()
+                        .limit(window)
+                        .map(e -> e.item)
+                        .collect(ImmutableList.toImmutableList())))
+                : changes;
+    }
+
+    private void onNotification(Notification<T> notification, List<ListChange<T>> changes) {
+        if (notification.isDelete()) {
+            Optional.ofNullable(notification.oldValue())
+                    .map(metaClass::keyOf)
+                    .map(map::remove)
+                    .ifPresent(entry -> onRemoved(removeEntry(entry), changes));
+            return;
+        }
+
+        T item = notification.newValue();
+        if (item == null) {
+            return;
+        }
+        K key = metaClass.keyOf(item);
+        Entry<T> oldEntry = map.get(key);
+        if (oldEntry == null) {
+            Entry<T> entry = new Entry<>(item, sequence++);
+            map.put(key, entry);
+            onInserted(insertEntry(entry), changes);
+        } else {
+            Entry<T> entry = new Entry<>(item, oldEntry.sequence);
+            map.put(key, entry);
+            int fromIndex = removeEntry(oldEntry);
+            onMoved(fromIndex, insertEntry(entry), changes);
+        }
+    }
+
+    private void onInserted(int index, List<ListChange<T>> changes) {
+        if (index >= window) {
+            return;
+        }
+        changes.add(ListChange.insert(index, entries.get(index).item));
+        if (entries.size() > window) {
+            changes.add(ListChange.remove(window));
+        }
+    }
+
+    private void onRemoved(int index, List<ListChange<T>> changes) {
+        if (index >= window) {
+            return;
+        }
+        changes.add(ListChange.remove(index));
+        if (entries.size() >= window) {
+            changes.add(ListChange.insert(window - 1, entries.get(window - 1).item));
+        }
+    }
+
+    private void onMoved(int fromIndex, int toIndex, List<ListChange<T>> changes) {
+        if (fromIndex >= window && toIndex >= window) {
+            return;
+        }
+        if (fromIndex == toIndex) {
+            changes.add(ListChange.replace(toIndex, entries.get(toIndex).item));
+        } else if (fromIndex < window && toIndex < window) {
+            changes.add(ListChange.move(fromIndex, toIndex, entries.get(toIndex).item));
+        } else if (fromIndex < window) {
+            changes.add(ListChange.remove(fromIndex));
+            changes.add(ListChange.insert(window - 1, entries.get(window - 1).item));
+        } else {
+            changes.add(ListChange.insert(toIndex, entries.get(toIndex).item));
+            changes.add(ListChange.remove(window));
+        }
+    }
+
+    private int insertEntry(Entry<T> entry) {
+        int index = -Collections.binarySearch(entries, entry, comparator) - 1;
+        entries.add(index, entry);
+        return index;
+    }
+
+    private int removeEntry(Entry<T> entry) {
+        int index = Collections.binarySearch(entries, entry, comparator);
+        entries.remove(index);
+        return index;
+    }
+
+    private static class Entry<T> {
+        private final T item;
+        private final long sequence;
+
+        private Entry(T item, long sequence) {
+            this.item = item;
+            this.sequence = sequence;
+        }
+    }
+}
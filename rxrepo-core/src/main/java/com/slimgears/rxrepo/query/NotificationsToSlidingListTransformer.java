@@ -14,8 +14,6 @@ import javax.annotation.Nullable;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class NotificationsToSlidingListTransformer<K, T> implements ObservableTransformer<List<Notification<T>>, List<T>> {
     private final static Logger log = LoggerFactory.getLogger(NotificationsToSlidingListTransformer.class);
@@ -23,7 +21,10 @@ public class NotificationsToSlidingListTransformer<K, T> implements ObservableTr
     private final AtomicLong firstItemIndex;
     private final AtomicReference<T> firstItem = new AtomicReference<>();
     private final Comparator<T> comparator;
-    private final Map<K, T> map = Collections.synchronizedMap(new HashMap<>());
+    // Entries are ordered by the query comparator, ties are broken by insertion sequence
+    private final NavigableSet<Entry<K, T>> entries;
+    private final Map<K, Entry<K, T>> map = new HashMap<>();
+    private long sequence;
     private final MetaClassWithKey<K, T> metaClass;
 
 
@@ -38,6 +39,9 @@ public class NotificationsToSlidingListTransformer<K, T> implements ObservableTr
         this.comparator = Optional
                 .ofNullable(SortingInfos.toComparator(sortingInfos))
                 .orElseThrow(() -> new IllegalArgumentException("Query with sorting is expected"));
+        this.entries = new TreeSet<>(Comparator
+                .<Entry<K, T>, T>comparing(e -> e.item, comparator)
+                .thenComparingLong(e -> e.sequence));
     }
 
     public static <K, T> NotificationsToSlidingListTransformer<K, T> create(
@@ -62,14 +66,13 @@ public class NotificationsToSlidingListTransformer<K, T> implements ObservableTr
                 .map(n -> toList());
     }
 
-    private ImmutableList<T> toList() {
-        return map.values()
-                .stream()
-                .sorted(comparator)
+    private synchronized ImmutableList<T> toList() {
+        return entries.stream()
+                .map(e -> e.item)
                 .collect(ImmutableList.toImmutableList());
     }
 
-    private void updateMap(List<Notification<T>> notifications) {
+    private synchronized void updateMap(List<Notification<T>> notifications) {
         notifications
                 .stream()
                 .peek(this::updateStartIndex)
@@ -81,38 +84,28 @@ public class NotificationsToSlidingListTransformer<K, T> implements ObservableTr
     }
 
     private void updateFirst() {
-        map.values()
-                .stream()
-                .min(comparator)
-                .ifPresent(item -> {
-                    log.trace("First item set: {}", item);
-                    firstItem.set(item);
-                });
+        if (!entries.isEmpty()) {
+            T item = entries.first().item;
+            log.trace("First item set: {}", item);
+            firstItem.set(item);
+        }
     }
 
     private void removeAfterLast() {
-        Optional.ofNullable(limit)
-                .map(l -> map.values()
-                        .stream()
-                        .sorted(comparator)
-                        .skip(l))
-                .orElse(Stream.empty())
-                .map(val -> metaClass.keyProperty().getValue(val))
-                .collect(Collectors.toList())
-                .forEach(map::remove);
+        Optional.ofNullable(limit).ifPresent(l -> {
+            while (entries.size() > l) {
+                map.remove(entries.pollLast().key);
+            }
+        });
     }
 
     private void removeBeforeFirst() {
         log.trace("Trying to remove item before first ({})", firstItem.get());
-        Optional.ofNullable(firstItem.get())
-                .map(m -> map.values()
-                        .stream()
-                        .peek(val -> log.trace("Comparing items: (firstItem: {}, currentItem: {}, result: {})", m, val, comparator.compare(m, val)))
-                        .filter(val -> comparator.compare(m, val) > 0))
-                .orElse(Stream.empty())
-                .map(val -> metaClass.keyProperty().getValue(val))
-                .collect(Collectors.toList())
-                .forEach(map::remove);
+        Optional.ofNullable(firstItem.get()).ifPresent(first -> {
+            NavigableSet<Entry<K, T>> head = entries.headSet(new Entry<>(null, first, Long.MIN_VALUE), false);
+            head.forEach(e -> map.remove(e.key));
+            head.clear();
+        });
     }
 
     private void updateStartIndex(Notification<T> notification) {
@@ -138,12 +131,28 @@ public class NotificationsToSlidingListTransformer<K, T> implements ObservableTr
     private void onNotification(Notification<T> notification) {
         if (notification.isDelete()) {
             Optional.ofNullable(notification.oldValue())
-                    .map(val -> metaClass.keyProperty().getValue(val))
-                    .ifPresent(map::remove);
+                    .map(metaClass::keyOf)
+                    .map(map::remove)
+                    .ifPresent(entries::remove);
         } else {
             Optional.ofNullable(notification.newValue())
-                    .map(val -> metaClass.keyProperty().getValue(val))
-                    .ifPresent(key -> map.put(key, notification.newValue()));
+                    .ifPresent(val -> {
+                        Entry<K, T> entry = new Entry<>(metaClass.keyOf(val), val, sequence++);
+                        Optional.ofNullable(map.put(entry.key, entry)).ifPresent(entries::remove);
+                        entries.add(entry);
+                    });
+        }
+    }
+
+    private static class Entry<K, T> {
+        private final K key;
+        private final T item;
+        private final long sequence;
+
+        private Entry(K key, T item, long sequence) {
+            this.key = key;
+            this.item = item;
+            this.sequence = sequence;
         }
     }
 }
@@ -2,6 +2,7 @@ package com.slimgears.rxrepo.query;
 
 import com.slimgears.rxrepo.expressions.Aggregator;
 import com.slimgears.rxrepo.expressions.PropertyExpression;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
@@ -29,6 +30,7 @@ public abstract class SelectQuery<T> {
     }
 
     public abstract Observable<T> retrieve();
+    public abstract Flowable<T> retrieveFlowable();
 
     public Single<Long> count() {
         return aggregate(Aggregator.count()).toSingle(0L);
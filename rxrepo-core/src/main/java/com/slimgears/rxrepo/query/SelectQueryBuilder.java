@@ -15,6 +15,12 @@ public abstract class SelectQueryBuilder<S>
 
     public abstract <V extends Comparable<V>> SelectQueryBuilder<S> orderBy(PropertyExpression<S, ?, V> field, boolean ascending);
 
+    public abstract SelectQueryBuilder<S> after(KeysetCursor cursor);
+
+    public abstract SelectQueryBuilder<S> before(KeysetCursor cursor);
+
+    public abstract Single<KeysetPage<S>> retrievePage();
+
     public abstract SelectQuery<S> select();
 
     public abstract <T> SelectQuery<T> select(ObjectExpression<S, T> expression, boolean distinct);
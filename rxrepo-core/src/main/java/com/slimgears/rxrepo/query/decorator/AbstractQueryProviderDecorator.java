@@ -4,10 +4,12 @@ import com.slimgears.rxrepo.expressions.Aggregator;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.provider.DeleteInfo;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.SnapshotChunking;
 import com.slimgears.rxrepo.query.provider.QueryProvider;
 import com.slimgears.rxrepo.query.provider.UpdateInfo;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
@@ -15,6 +17,9 @@ import io.reactivex.functions.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+import java.util.Map;
+
 import static com.slimgears.util.generic.LazyString.lazy;
 
 public class AbstractQueryProviderDecorator implements QueryProvider {
@@ -46,12 +51,27 @@ public class AbstractQueryProviderDecorator implements QueryProvider {
         return underlyingProvider.query(query);
     }
 
+    @Override
+    public <K, S, T> Flowable<T> queryFlowable(QueryInfo<K, S, T> query) {
+        return underlyingProvider.queryFlowable(query);
+    }
+
     @Override
     public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
         return underlyingProvider.liveQuery(query)
             .doOnNext(n -> log.trace("[{}] Received notification: {}", lazy(() -> getClass().getSimpleName()), n));
     }
 
+    @Override
+    public <K, S> Single<Map<K, S>> findAll(MetaClassWithKey<K, S> metaClass, Iterable<K> keys) {
+        return underlyingProvider.findAll(metaClass, keys);
+    }
+
+    @Override
+    public <K, S> Observable<List<Notification<S>>> queryAndObserve(QueryInfo<K, S, S> query, SnapshotChunking chunking) {
+        return underlyingProvider.queryAndObserve(query, chunking);
+    }
+
     @Override
     public <K, S, T, R> Maybe<R> aggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
         return underlyingProvider.aggregate(query, aggregator);
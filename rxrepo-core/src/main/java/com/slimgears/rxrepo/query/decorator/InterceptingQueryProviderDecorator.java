@@ -2,8 +2,12 @@ package com.slimgears.rxrepo.query.decorator;
 
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.SnapshotChunking;
 import com.slimgears.rxrepo.query.provider.QueryProvider;
 import com.slimgears.rxrepo.query.provider.QueryPublisher;
+import com.slimgears.rxrepo.util.LiveSnapshots;
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.ObservableTransformer;
 import io.reactivex.disposables.Disposable;
@@ -37,11 +41,27 @@ public class InterceptingQueryProviderDecorator implements QueryProvider.Decorat
             return super.query(query).compose(applyOnQuery(query));
         }
 
+        // Listeners intercept observables, so with active listeners the query is pulled through them
+        @Override
+        public <K, S, T> Flowable<T> queryFlowable(QueryInfo<K, S, T> query) {
+            return queryListeners.isEmpty()
+                    ? super.queryFlowable(query)
+                    : query(query).toFlowable(BackpressureStrategy.BUFFER);
+        }
+
         @Override
         public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
             return super.liveQuery(query).compose(applyOnLiveQuery(query));
         }
 
+        // Listeners intercept query and liveQuery separately, so with active listeners the snapshot is composed of them
+        @Override
+        public <K, S> Observable<List<Notification<S>>> queryAndObserve(QueryInfo<K, S, S> query, SnapshotChunking chunking) {
+            return queryListeners.isEmpty()
+                    ? super.queryAndObserve(query, chunking)
+                    : LiveSnapshots.queryAndObserve(this, query, chunking);
+        }
+
         private <K, S, T> ObservableTransformer<T, T> applyOnQuery(QueryInfo<K, S, T> queryInfo) {
             return source -> {
                 AtomicReference<Observable<T>> observable = new AtomicReference<>(source);
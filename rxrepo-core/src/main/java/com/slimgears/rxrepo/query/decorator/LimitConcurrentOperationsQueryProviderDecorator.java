@@ -7,12 +7,14 @@ import com.slimgears.rxrepo.query.provider.QueryProvider;
 import com.slimgears.rxrepo.query.provider.UpdateInfo;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.functions.Function;
 
 import java.util.Collections;
+import java.util.Map;
 import java.util.concurrent.Semaphore;
 
 public class LimitConcurrentOperationsQueryProviderDecorator extends AbstractQueryProviderDecorator {
@@ -56,6 +58,20 @@ public class LimitConcurrentOperationsQueryProviderDecorator extends AbstractQue
                 .doFinally(this::doFinally);
     }
 
+    @Override
+    public <K, S, T> Flowable<T> queryFlowable(QueryInfo<K, S, T> query) {
+        return super.queryFlowable(query)
+                .doOnSubscribe(d -> doOnSubscribe())
+                .doFinally(this::doFinally);
+    }
+
+    @Override
+    public <K, S> Single<Map<K, S>> findAll(MetaClassWithKey<K, S> metaClass, Iterable<K> keys) {
+        return super.findAll(metaClass, keys)
+                .doOnSubscribe(d -> doOnSubscribe())
+                .doFinally(this::doFinally);
+    }
+
     @Override
     public <K, S, T, R> Maybe<R> aggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
         return super.aggregate(query, aggregator)
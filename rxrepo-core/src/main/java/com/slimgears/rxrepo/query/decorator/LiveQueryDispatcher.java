@@ -0,0 +1,324 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.slimgears.rxrepo.annotations.Indexable;
+import com.slimgears.rxrepo.expressions.BinaryOperationExpression;
+import com.slimgears.rxrepo.expressions.ConstantExpression;
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.expressions.PropertyExpression;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.Notifications;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+import io.reactivex.Observable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+class LiveQueryDispatcher<K, S> {
+    private final MetaClassWithKey<K, S> metaClass;
+    private final Observable<Notification<S>> upstream;
+    private final Set<Subscriber<S>> unrouted = new LinkedHashSet<>();
+    private final Map<String, HashRoutes<S>> hashRoutes = new HashMap<>();
+    private final Map<String, RangeRoutes<S>> rangeRoutes = new HashMap<>();
+
+    private LiveQueryDispatcher(MetaClassWithKey<K, S> metaClass, Observable<Notification<S>> source) {
+        this.metaClass = metaClass;
+        this.upstream = source
+                .doOnNext(this::dispatch)
+                .ignoreElements()
+                .<Notification<S>>toObservable()
+                .share();
+    }
+
+    static <K, S> LiveQueryDispatcher<K, S> create(MetaClassWithKey<K, S> metaClass, Observable<Notification<S>> source) {
+        return new LiveQueryDispatcher<>(metaClass, source);
+    }
+
+    <T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
+        Optional<Route> route = Optional.ofNullable(query.predicate()).flatMap(this::routeOf);
+        return Observable
+                .<Notification<S>>create(emitter -> {
+                    Subscriber<S> subscriber = new Subscriber<>(emitter::onNext, route.orElse(null));
+                    register(subscriber);
+                    emitter.setCancellable(() -> unregister(subscriber));
+                })
+                .mergeWith(upstream)
+                .compose(Notifications.applyQuery(query));
+    }
+
+    private void dispatch(Notification<S> notification) {
+        candidatesOf(notification).forEach(subscriber -> subscriber.consumer.accept(notification));
+    }
+
+    private synchronized Collection<Subscriber<S>> candidatesOf(Notification<S> notification) {
+        Set<Subscriber<S>> candidates = Collections.newSetFromMap(new IdentityHashMap<>());
+        candidates.addAll(unrouted);
+        addCandidates(notification.oldValue(), candidates);
+        addCandidates(notification.newValue(), candidates);
+        return candidates;
+    }
+
+    private void addCandidates(S entity, Set<Subscriber<S>> candidates) {
+        if (entity == null) {
+            return;
+        }
+        hashRoutes.values().forEach(routes -> routes.addCandidates(entity, candidates));
+        rangeRoutes.values().forEach(routes -> routes.addCandidates(entity, candidates));
+    }
+
+    private synchronized void register(Subscriber<S> subscriber) {
+        if (subscriber.route == null) {
+            unrouted.add(subscriber);
+        } else if (subscriber.route.values != null) {
+            hashRoutes.computeIfAbsent(subscriber.route.property.name(), name -> new HashRoutes<>(subscriber.route.property)).add(subscriber);
+        } else {
+            rangeRoutes.computeIfAbsent(subscriber.route.property.name(), name -> new RangeRoutes<>(subscriber.route.property)).add(subscriber);
+        }
+    }
+
+    private synchronized void unregister(Subscriber<S> subscriber) {
+        if (subscriber.route == null) {
+            unrouted.remove(subscriber);
+        } else if (subscriber.route.values != null) {
+            Optional.ofNullable(hashRoutes.get(subscriber.route.property.name()))
+                    .filter(routes -> routes.remove(subscriber))
+                    .ifPresent(routes -> hashRoutes.remove(subscriber.route.property.name()));
+        } else {
+            Optional.ofNullable(rangeRoutes.get(subscriber.route.property.name()))
+                    .filter(routes -> routes.remove(subscriber))
+                    .ifPresent(routes -> rangeRoutes.remove(subscriber.route.property.name()));
+        }
+    }
+
+    private Optional<Route> routeOf(ObjectExpression<S, Boolean> predicate) {
+        List<ObjectExpression<S, ?>> terms = new ArrayList<>();
+        collectConjunction(predicate, terms);
+
+        Optional<Route> hashRoute = terms.stream()
+                .map(this::hashRouteOf)
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .findFirst();
+        if (hashRoute.isPresent()) {
+            return hashRoute;
+        }
+
+        Map<String, Route> ranges = new HashMap<>();
+        terms.stream()
+                .map(this::rangeRouteOf)
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .forEach(route -> ranges.merge(route.property.name(), route, Route::intersect));
+        return ranges.values().stream().findFirst();
+    }
+
+    private void collectConjunction(ObjectExpression<S, ?> expression, List<ObjectExpression<S, ?>> terms) {
+        if (expression.type() == Expression.Type.And) {
+            BinaryOperationExpression<S, ?, ?, ?> binary = (BinaryOperationExpression<S, ?, ?, ?>)expression;
+            collectConjunction(binary.left(), terms);
+            collectConjunction(binary.right(), terms);
+        } else {
+            terms.add(expression);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Optional<Route> hashRouteOf(ObjectExpression<S, ?> expression) {
+        Expression.Type type = expression.type();
+        if (type != Expression.Type.Equals && type != Expression.Type.ValueIn) {
+            return Optional.empty();
+        }
+        BinaryOperationExpression<S, ?, ?, ?> binary = (BinaryOperationExpression<S, ?, ?, ?>)expression;
+        Optional<PropertyMeta<S, ?>> property = propertyOf(binary.left());
+        Optional<Object> value = constantOf(binary.right());
+        if (!property.isPresent() || !value.isPresent()) {
+            return Optional.empty();
+        }
+        if (type == Expression.Type.Equals) {
+            return Optional.of(Route.lookup(property.get(), Collections.singleton(value.get())));
+        }
+        return value
+                .filter(Collection.class::isInstance)
+                .map(values -> Route.lookup(property.get(), (Collection<Object>)values));
+    }
+
+    private Optional<Route> rangeRouteOf(ObjectExpression<S, ?> expression) {
+        Expression.Type type = expression.type();
+        if (type != Expression.Type.GreaterThan && type != Expression.Type.LessThan) {
+            return Optional.empty();
+        }
+        BinaryOperationExpression<S, ?, ?, ?> binary = (BinaryOperationExpression<S, ?, ?, ?>)expression;
+        Optional<PropertyMeta<S, ?>> leftProperty = propertyOf(binary.left());
+        Optional<PropertyMeta<S, ?>> property = leftProperty.isPresent() ? leftProperty : propertyOf(binary.right());
+        Optional<Object> value = constantOf(leftProperty.isPresent() ? binary.right() : binary.left());
+        if (!property.isPresent() || !value.isPresent() || !(value.get() instanceof Comparable)) {
+            return Optional.empty();
+        }
+        boolean propertyGreater = (type == Expression.Type.GreaterThan) == leftProperty.isPresent();
+        return Optional.of(propertyGreater
+                ? Route.range(property.get(), value.get(), null)
+                : Route.range(property.get(), null, value.get()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Optional<PropertyMeta<S, ?>> propertyOf(ObjectExpression<S, ?> expression) {
+        if (expression.type().operationType() != Expression.OperationType.Property) {
+            return Optional.empty();
+        }
+        PropertyExpression<S, ?, ?> propertyExpression = (PropertyExpression<S, ?, ?>)expression;
+        if (propertyExpression.target().type().operationType() != Expression.OperationType.Argument) {
+            return Optional.empty();
+        }
+        PropertyMeta<S, ?> property = (PropertyMeta<S, ?>)propertyExpression.property();
+        return Objects.equals(property.name(), metaClass.keyProperty().name()) || property.hasAnnotation(Indexable.class)
+                ? Optional.of(property)
+                : Optional.empty();
+    }
+
+    private Optional<Object> constantOf(ObjectExpression<S, ?> expression) {
+        return expression.type().operationType() == Expression.OperationType.Constant
+                ? Optional.ofNullable(((ConstantExpression<S, ?>)expression).value())
+                : Optional.empty();
+    }
+
+    private static class Subscriber<S> {
+        private final Consumer<Notification<S>> consumer;
+        private final Route route;
+
+        private Subscriber(Consumer<Notification<S>> consumer, Route route) {
+            this.consumer = consumer;
+            this.route = route;
+        }
+    }
+
+    private static class Route {
+        private final PropertyMeta<?, ?> property;
+        private final Collection<Object> values;
+        private final Object lowerBound;
+        private final Object upperBound;
+
+        private Route(PropertyMeta<?, ?> property, Collection<Object> values, Object lowerBound, Object upperBound) {
+            this.property = property;
+            this.values = values;
+            this.lowerBound = lowerBound;
+            this.upperBound = upperBound;
+        }
+
+        static Route lookup(PropertyMeta<?, ?> property, Collection<Object> values) {
+            return new Route(property, values, null, null);
+        }
+
+        static Route range(PropertyMeta<?, ?> property, Object lowerBound, Object upperBound) {
+            return new Route(property, null, lowerBound, upperBound);
+        }
+
+        static Route intersect(Route first, Route second) {
+            return range(
+                    first.property,
+                    Optional.ofNullable(first.lowerBound).orElse(second.lowerBound),
+                    Optional.ofNullable(first.upperBound).orElse(second.upperBound));
+        }
+    }
+
+    private static class HashRoutes<S> {
+        private final PropertyMeta<S, ?> property;
+        private final Map<Object, Set<Subscriber<S>>> buckets = new HashMap<>();
+        private int size;
+
+        private HashRoutes(PropertyMeta<?, ?> property) {
+            this.property = cast(property);
+        }
+
+        void add(Subscriber<S> subscriber) {
+            subscriber.route.values.forEach(value -> buckets.computeIfAbsent(value, v -> new LinkedHashSet<>()).add(subscriber));
+            ++size;
+        }
+
+        // Returns true when no subscribers are left
+        boolean remove(Subscriber<S> subscriber) {
+            subscriber.route.values.forEach(value -> Optional
+                    .ofNullable(buckets.get(value))
+                    .filter(bucket -> bucket.remove(subscriber) && bucket.isEmpty())
+                    .ifPresent(bucket -> buckets.remove(value)));
+            return --size == 0;
+        }
+
+        void addCandidates(S entity, Set<Subscriber<S>> candidates) {
+            Optional.ofNullable(property.getValue(entity))
+                    .map(buckets::get)
+                    .ifPresent(candidates::addAll);
+        }
+    }
+
+    // Subscribers are ordered by lower bound, so only ranges starting at or below the value are visited
+    private static class RangeRoutes<S> {
+        private final PropertyMeta<S, ?> property;
+        private final TreeMap<Object, Set<Subscriber<S>>> byLowerBound = new TreeMap<>();
+        private final Set<Subscriber<S>> unboundedBelow = new LinkedHashSet<>();
+        private int size;
+
+        private RangeRoutes(PropertyMeta<?, ?> property) {
+            this.property = cast(property);
+        }
+
+        void add(Subscriber<S> subscriber) {
+            Object lowerBound = subscriber.route.lowerBound;
+            if (lowerBound != null) {
+                byLowerBound.computeIfAbsent(lowerBound, v -> new LinkedHashSet<>()).add(subscriber);
+            } else {
+                unboundedBelow.add(subscriber);
+            }
+            ++size;
+        }
+
+        boolean remove(Subscriber<S> subscriber) {
+            Object lowerBound = subscriber.route.lowerBound;
+            if (lowerBound != null) {
+                Optional.ofNullable(byLowerBound.get(lowerBound))
+                        .filter(bucket -> bucket.remove(subscriber) && bucket.isEmpty())
+                        .ifPresent(bucket -> byLowerBound.remove(lowerBound));
+            } else {
+                unboundedBelow.remove(subscriber);
+            }
+            return --size == 0;
+        }
+
+        void addCandidates(S entity, Set<Subscriber<S>> candidates) {
+            Object value = property.getValue(entity);
+            if (value == null) {
+                return;
+            }
+            addWithinUpperBound(value, unboundedBelow, candidates);
+            byLowerBound.headMap(value, true).values().forEach(bucket -> addWithinUpperBound(value, bucket, candidates));
+        }
+
+        private void addWithinUpperBound(Object value, Set<Subscriber<S>> subscribers, Set<Subscriber<S>> candidates) {
+            subscribers.stream()
+                    .filter(subscriber -> subscriber.route.upperBound == null || compare(value, subscriber.route.upperBound) <= 0)
+                    .forEach(candidates::add);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static int compare(Object left, Object right) {
+            return ((Comparable<Object>)left).compareTo(right);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <S> PropertyMeta<S, ?> cast(PropertyMeta<?, ?> property) {
+        return (PropertyMeta<S, ?>)property;
+    }
+}
@@ -2,16 +2,18 @@ package com.slimgears.rxrepo.query.decorator;
 
 import com.slimgears.rxrepo.expressions.Aggregator;
 import com.slimgears.rxrepo.query.Notification;
-import com.slimgears.rxrepo.query.Notifications;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
 import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.util.LiveAggregations;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Observable;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class LiveQueryProviderDecorator extends AbstractQueryProviderDecorator {
+    private final Map<MetaClassWithKey<?, ?>, LiveQueryDispatcher<?, ?>> dispatchers = new ConcurrentHashMap<>();
+
     private LiveQueryProviderDecorator(QueryProvider upstream) {
         super(upstream);
     }
@@ -22,17 +24,18 @@ public class LiveQueryProviderDecorator extends AbstractQueryProviderDecorator {
 
     @Override
     public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
-        return super.liveQuery(QueryInfo.<K, S, S>builder()
-                        .metaClass(query.metaClass())
-                        .build())
-                .compose(Notifications.applyQuery(query));
+        return dispatcherOf(query.metaClass()).liveQuery(query);
     }
 
     @Override
     public <K, S, T, R> Observable<R> liveAggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
-        return liveQuery(query)
-            .debounce(500, TimeUnit.MILLISECONDS)
-            .switchMapMaybe(n -> aggregate(query, aggregator))
-            .distinctUntilChanged();
+        return LiveAggregations.liveAggregate(this, query, aggregator);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <K, S> LiveQueryDispatcher<K, S> dispatcherOf(MetaClassWithKey<K, S> metaClass) {
+        return (LiveQueryDispatcher<K, S>)dispatchers.computeIfAbsent(metaClass, mc -> LiveQueryDispatcher.create(
+                metaClass,
+                super.liveQuery(QueryInfo.<K, S, S>builder().metaClass(metaClass).build())));
     }
 }
@@ -5,14 +5,17 @@ import com.google.common.reflect.TypeToken;
 import com.slimgears.rxrepo.expressions.PropertyExpression;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.SnapshotChunking;
 import com.slimgears.rxrepo.query.provider.QueryProvider;
 import com.slimgears.rxrepo.util.PropertyExpressions;
 import com.slimgears.rxrepo.util.PropertyMetas;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -39,6 +42,15 @@ public class MandatoryPropertiesQueryProviderDecorator extends AbstractQueryProv
                         .build());
     }
 
+    @Override
+    public <K, S, T> Flowable<T> queryFlowable(QueryInfo<K, S, T> query) {
+        return query.properties().isEmpty()
+                ? super.queryFlowable(query)
+                : super.queryFlowable(query.toBuilder()
+                        .apply(includeProperties(query.properties(), query.objectType()))
+                        .build());
+    }
+
     @Override
     public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
         return query.properties().isEmpty()
@@ -48,6 +60,15 @@ public class MandatoryPropertiesQueryProviderDecorator extends AbstractQueryProv
                         .build());
     }
 
+    @Override
+    public <K, S> Observable<List<Notification<S>>> queryAndObserve(QueryInfo<K, S, S> query, SnapshotChunking chunking) {
+        return query.properties().isEmpty()
+                ? super.queryAndObserve(query, chunking)
+                : super.queryAndObserve(query.toBuilder()
+                        .apply(includeProperties(query.properties(), query.objectType()))
+                        .build(), chunking);
+    }
+
     private static <K, S, T> Consumer<QueryInfo.Builder<K, S, T>> includeProperties(Collection<PropertyExpression<T, ?, ?>> properties, TypeToken<T> typeToken) {
         return builder -> {
             Stream<PropertyExpression<T, ?, ?>> includedProperties = properties.stream()
@@ -5,6 +5,7 @@ import com.slimgears.rxrepo.expressions.Aggregator;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.provider.DeleteInfo;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.SnapshotChunking;
 import com.slimgears.rxrepo.query.provider.QueryProvider;
 import com.slimgears.rxrepo.query.provider.UpdateInfo;
 import com.slimgears.util.autovalue.annotations.MetaClass;
@@ -12,6 +13,8 @@ import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.*;
 import io.reactivex.functions.Function;
 
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class MetricsQueryProviderDecorator implements QueryProvider.Decorator, MetricCollector.Binder, AutoCloseable {
@@ -75,12 +78,24 @@ public class MetricsQueryProviderDecorator implements QueryProvider.Decorator, M
                     .lift(asyncCollector("query", query.metaClass()).forObservable());
         }
 
+        @Override
+        public <K, S> Single<Map<K, S>> findAll(MetaClassWithKey<K, S> metaClass, Iterable<K> keys) {
+            return super.findAll(metaClass, keys)
+                    .lift(asyncCollector("findAll", metaClass).forSingle());
+        }
+
         @Override
         public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
             return super.liveQuery(query)
                     .lift(asyncCollector("liveQuery", query.metaClass()).forObservable());
         }
 
+        @Override
+        public <K, S> Observable<List<Notification<S>>> queryAndObserve(QueryInfo<K, S, S> query, SnapshotChunking chunking) {
+            return super.queryAndObserve(query, chunking)
+                    .lift(asyncCollector("queryAndObserve", query.metaClass()).forObservable());
+        }
+
         @Override
         public <K, S, T, R> Maybe<R> aggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
             return super.aggregate(query, aggregator)
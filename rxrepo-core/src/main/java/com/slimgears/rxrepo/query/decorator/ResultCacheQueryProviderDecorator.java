@@ -0,0 +1,281 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.slimgears.rxrepo.expressions.Aggregator;
+import com.slimgears.rxrepo.expressions.CollectionExpression;
+import com.slimgears.rxrepo.expressions.internal.MoreTypeTokens;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.provider.DeleteInfo;
+import com.slimgears.rxrepo.query.provider.HasMapping;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.query.provider.UpdateInfo;
+import com.slimgears.rxrepo.util.Expressions;
+import com.slimgears.rxrepo.util.PropertyReferences;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.MetaClasses;
+import com.slimgears.util.stream.Streams;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.functions.Function;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// Caches query and aggregation results until a change notification of the entity class matches the predicate
+// of the cached query (with either the old or the new value), or until any entity of a class reachable through
+// reference properties changes. Entries are weighed by the number of items and evicted in LRU order once
+// the total weight exceeds maximumWeight
+public class ResultCacheQueryProviderDecorator implements QueryProvider.Decorator {
+    private final long maximumWeight;
+
+    private ResultCacheQueryProviderDecorator(long maximumWeight) {
+        this.maximumWeight = maximumWeight;
+    }
+
+    public static ResultCacheQueryProviderDecorator create(long maximumWeight) {
+        return new ResultCacheQueryProviderDecorator(maximumWeight);
+    }
+
+    @Override
+    public QueryProvider apply(QueryProvider queryProvider) {
+        return new DecoratedProvider(queryProvider, maximumWeight);
+    }
+
+    // Keys are compared by the query, and the predicate is compiled only for the keys being stored
+    private static class CacheKey {
+        private final QueryInfo<?, ?, ?> query;
+        private final Object aggregation;
+        private volatile Predicate<Object> predicate;
+
+        private CacheKey(QueryInfo<?, ?, ?> query, Object aggregation) {
+            this.query = query;
+            this.aggregation = aggregation;
+        }
+
+        @SuppressWarnings("unchecked")
+        private CacheKey compiled() {
+            predicate = (Predicate<Object>)Expressions.compilePredicate(query.predicate());
+            return this;
+        }
+
+        private boolean isAffectedBy(Notification<?> notification) {
+            return (notification.oldValue() != null && predicate.test(notification.oldValue())) ||
+                    (notification.newValue() != null && predicate.test(notification.newValue()));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof CacheKey &&
+                    Objects.equals(query, ((CacheKey)obj).query) &&
+                    Objects.equals(aggregation, ((CacheKey)obj).aggregation);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(query, aggregation);
+        }
+    }
+
+    private static class DecoratedProvider extends AbstractQueryProviderDecorator {
+        private final Cache<CacheKey, Object> cache;
+        private final Map<MetaClassWithKey<?, ?>, Invalidator> invalidators = new ConcurrentHashMap<>();
+        private final Map<MetaClassWithKey<?, ?>, Set<MetaClassWithKey<?, ?>>> dependencies = new ConcurrentHashMap<>();
+
+        private DecoratedProvider(QueryProvider underlyingProvider, long maximumWeight) {
+            super(underlyingProvider);
+            this.cache = CacheBuilder.newBuilder()
+                    .maximumWeight(maximumWeight)
+                    .<CacheKey, Object>weigher((key, value) -> value instanceof Collection ? Math.max(1, ((Collection<?>)value).size()) : 1)
+                    .build();
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <K, S, T> Observable<T> query(QueryInfo<K, S, T> query) {
+            return cached(query, new CacheKey(query, null), super.query(query).toList())
+                    .flattenAsObservable(items -> (List<T>)items);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <K, S, T, R> Maybe<R> aggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
+            Object aggregation = aggregator.apply(CollectionExpression.indirectArg(MoreTypeTokens.collection(HasMapping.objectType(query))));
+            return cached(query, new CacheKey(query, aggregation), super.aggregate(query, aggregator).map(Optional::of).toSingle(Optional.empty()))
+                    .flatMapMaybe(result -> ((Optional<R>)result).map(Maybe::just).orElseGet(Maybe::empty));
+        }
+
+        // Own writes invalidate synchronously, so they are visible to the next query even before their notifications
+        // are delivered. When the old value is unknown all results of the entity class are dropped
+        @Override
+        public <K, S> Completable insert(MetaClassWithKey<K, S> metaClass, Iterable<S> entities) {
+            return super.insert(metaClass, entities)
+                    .doOnComplete(() -> invalidate(metaClass, key -> Streams
+                            .fromIterable(entities)
+                            .anyMatch(entity -> key.isAffectedBy(Notification.ofCreated(entity)))));
+        }
+
+        @Override
+        public <K, S> Single<S> insertOrUpdate(MetaClassWithKey<K, S> metaClass, S entity) {
+            return super.insertOrUpdate(metaClass, entity)
+                    .doOnSuccess(updated -> invalidate(metaClass, key -> true));
+        }
+
+        @Override
+        public <K, S> Maybe<S> insertOrUpdate(MetaClassWithKey<K, S> metaClass, K key, Function<Maybe<S>, Maybe<S>> entityUpdater) {
+            AtomicReference<S> oldValue = new AtomicReference<>();
+            return super.insertOrUpdate(metaClass, key, current -> entityUpdater.apply(current.doOnSuccess(oldValue::set)))
+                    .doOnEvent((updated, error) -> {
+                        if (error == null) {
+                            Notification<S> notification = Notification.ofModified(oldValue.get(), updated);
+                            invalidate(metaClass, cacheKey -> cacheKey.isAffectedBy(notification));
+                        }
+                    });
+        }
+
+        @Override
+        public <K, S> Single<Integer> update(UpdateInfo<K, S> update) {
+            return super.update(update)
+                    .doOnSuccess(count -> invalidate(update.metaClass(), key -> count > 0));
+        }
+
+        @Override
+        public <K, S> Single<Integer> delete(DeleteInfo<K, S> delete) {
+            return super.delete(delete)
+                    .doOnSuccess(count -> invalidate(delete.metaClass(), key -> count > 0));
+        }
+
+        @Override
+        public <K, S> Completable drop(MetaClassWithKey<K, S> metaClass) {
+            return super.drop(metaClass).doFinally(() -> invalidate(metaClass, key -> true));
+        }
+
+        @Override
+        public Completable dropAll() {
+            return super.dropAll().doFinally(cache::invalidateAll);
+        }
+
+        @Override
+        public void close() {
+            invalidators.values().forEach(Invalidator::dispose);
+            invalidators.clear();
+            cache.invalidateAll();
+            super.close();
+        }
+
+        // Result is stored only if no notification of the entity class or of the referenced classes arrived while it was retrieved
+        private <K, S> Single<Object> cached(QueryInfo<K, S, ?> query, CacheKey key, Single<?> source) {
+            return Single.defer(() -> {
+                Object cachedValue = cache.getIfPresent(key);
+                if (cachedValue != null) {
+                    return Single.just(cachedValue);
+                }
+                List<Invalidator> dependencyInvalidators = dependenciesOf(query.metaClass())
+                        .stream()
+                        .map(this::invalidatorOf)
+                        .collect(Collectors.toList());
+                long[] generations = dependencyInvalidators.stream().mapToLong(Invalidator::generation).toArray();
+                return source
+                        .<Object>map(value -> value)
+                        .doOnSuccess(value -> {
+                            if (IntStream.range(0, generations.length).allMatch(i -> dependencyInvalidators.get(i).isCurrent(generations[i]))) {
+                                cache.put(key.compiled(), value);
+                            }
+                        });
+            });
+        }
+
+        private Invalidator invalidatorOf(MetaClassWithKey<?, ?> metaClass) {
+            Invalidator invalidator = invalidators.computeIfAbsent(metaClass, Invalidator::new);
+            invalidator.start(metaClass);
+            return invalidator;
+        }
+
+        // Entity class itself followed by the classes reachable from it through reference properties
+        private Set<MetaClassWithKey<?, ?>> dependenciesOf(MetaClassWithKey<?, ?> metaClass) {
+            return dependencies.computeIfAbsent(metaClass, mc -> {
+                Set<MetaClassWithKey<?, ?>> classes = new LinkedHashSet<>();
+                classes.add(mc);
+                PropertyReferences.forMetaClass(mc)
+                        .forEach(reference -> classes.add(MetaClasses.forTokenWithKeyUnchecked(reference.property().type())));
+                return classes;
+            });
+        }
+
+        // Cached entries are scanned on each change, which is cheap for the read-mostly workloads the cache is meant for.
+        // Results embedding referenced entities of the changed class are dropped regardless of their predicate
+        private void invalidate(MetaClassWithKey<?, ?> metaClass, Predicate<CacheKey> isAffected) {
+            Optional.ofNullable(invalidators.get(metaClass)).ifPresent(Invalidator::advance);
+            cache.asMap().keySet().removeIf(key -> key.query.metaClass().equals(metaClass)
+                    ? isAffected.test(key)
+                    : dependenciesOf(key.query.metaClass()).contains(metaClass));
+        }
+
+        private class Invalidator {
+            private final MetaClassWithKey<?, ?> metaClass;
+            private final AtomicLong generation = new AtomicLong();
+            private final AtomicBoolean started = new AtomicBoolean();
+            private final CompositeDisposable subscription = new CompositeDisposable();
+
+            private Invalidator(MetaClassWithKey<?, ?> metaClass) {
+                this.metaClass = metaClass;
+            }
+
+            private <K, S> void start(MetaClassWithKey<K, S> metaClass) {
+                if (started.compareAndSet(false, true)) {
+                    subscription.add(DecoratedProvider.super
+                            .liveQuery(QueryInfo.<K, S, S>builder().metaClass(metaClass).build())
+                            .subscribe(this::onNotification, this::onError, this::onComplete));
+                }
+            }
+
+            private long generation() {
+                return generation.get();
+            }
+
+            private void advance() {
+                generation.incrementAndGet();
+            }
+
+            private boolean isCurrent(long generation) {
+                return !subscription.isDisposed() && this.generation.get() == generation;
+            }
+
+            private void dispose() {
+                subscription.dispose();
+            }
+
+            private void onNotification(Notification<?> notification) {
+                invalidate(metaClass, key -> key.isAffectedBy(notification));
+            }
+
+            private void onError(Throwable error) {
+                log.warn("Change notifications of {} failed, dropping cached results", metaClass.simpleName(), error);
+                onComplete();
+            }
+
+            private void onComplete() {
+                subscription.dispose();
+                invalidators.remove(metaClass, this);
+                advance();
+                invalidate(metaClass, key -> true);
+            }
+        }
+    }
+}
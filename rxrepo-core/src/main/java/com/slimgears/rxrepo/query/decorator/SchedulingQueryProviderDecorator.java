@@ -4,6 +4,7 @@ import com.slimgears.rxrepo.expressions.Aggregator;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.provider.DeleteInfo;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.SnapshotChunking;
 import com.slimgears.rxrepo.query.provider.QueryProvider;
 import com.slimgears.rxrepo.query.provider.UpdateInfo;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
@@ -11,6 +12,9 @@ import io.reactivex.*;
 import io.reactivex.functions.Function;
 import io.reactivex.schedulers.Schedulers;
 
+import java.util.List;
+import java.util.Map;
+
 public class SchedulingQueryProviderDecorator extends AbstractQueryProviderDecorator {
     private final Scheduler updateScheduler;
     private final Scheduler queryScheduler;
@@ -82,6 +86,16 @@ public class SchedulingQueryProviderDecorator extends AbstractQueryProviderDecor
         return super.query(query).subscribeOn(queryScheduler);
     }
 
+    @Override
+    public <K, S, T> Flowable<T> queryFlowable(QueryInfo<K, S, T> query) {
+        return super.queryFlowable(query).subscribeOn(queryScheduler);
+    }
+
+    @Override
+    public <K, S> Single<Map<K, S>> findAll(MetaClassWithKey<K, S> metaClass, Iterable<K> keys) {
+        return super.findAll(metaClass, keys).subscribeOn(queryScheduler);
+    }
+
     @Override
     public <K, S, T, R> Maybe<R> aggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
         return super.aggregate(query, aggregator).subscribeOn(queryScheduler);
@@ -92,6 +106,11 @@ public class SchedulingQueryProviderDecorator extends AbstractQueryProviderDecor
         return super.liveQuery(query).subscribeOn(notificationScheduler);
     }
 
+    @Override
+    public <K, S> Observable<List<Notification<S>>> queryAndObserve(QueryInfo<K, S, S> query, SnapshotChunking chunking) {
+        return super.queryAndObserve(query, chunking).subscribeOn(notificationScheduler);
+    }
+
     @Override
     public <K, S, T, R> Observable<R> liveAggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
         return super.liveAggregate(query, aggregator).subscribeOn(notificationScheduler);
@@ -0,0 +1,113 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.slimgears.rxrepo.expressions.Aggregator;
+import com.slimgears.rxrepo.expressions.CollectionExpression;
+import com.slimgears.rxrepo.expressions.internal.MoreTypeTokens;
+import com.slimgears.rxrepo.query.provider.DeleteInfo;
+import com.slimgears.rxrepo.query.provider.HasMapping;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.query.provider.UpdateInfo;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.functions.Function;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+// Concurrent identical queries and aggregations share a single backend execution.
+// Results are replayed to callers joining while the execution is in flight, and the execution
+// is cancelled only when all of its callers are disposed. Writes through the decorator detach the executions
+// of the written entity class, so queries made after a write do not join an execution started before it
+public class SingleFlightQueryProviderDecorator implements QueryProvider.Decorator {
+    @Override
+    public QueryProvider apply(QueryProvider queryProvider) {
+        return new DecoratedProvider(queryProvider);
+    }
+
+    public static QueryProvider.Decorator create() {
+        return new SingleFlightQueryProviderDecorator();
+    }
+
+    private static class DecoratedProvider extends AbstractQueryProviderDecorator {
+        private final Map<MetaClassWithKey<?, ?>, Map<Object, Observable<?>>> inFlight = new ConcurrentHashMap<>();
+
+        private DecoratedProvider(QueryProvider underlyingProvider) {
+            super(underlyingProvider);
+        }
+
+        @Override
+        public <K, S, T> Observable<T> query(QueryInfo<K, S, T> query) {
+            return singleFlight(query.metaClass(), query, () -> super.query(query));
+        }
+
+        @Override
+        public <K, S, T, R> Maybe<R> aggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
+            Object aggregation = aggregator.apply(CollectionExpression.indirectArg(MoreTypeTokens.collection(HasMapping.objectType(query))));
+            return singleFlight(query.metaClass(), Arrays.asList(query, aggregation), () -> super.aggregate(query, aggregator).toObservable())
+                    .singleElement();
+        }
+
+        @Override
+        public <K, S> Completable insert(MetaClassWithKey<K, S> metaClass, Iterable<S> entities) {
+            return super.insert(metaClass, entities).doFinally(() -> detach(metaClass));
+        }
+
+        @Override
+        public <K, S> Single<S> insertOrUpdate(MetaClassWithKey<K, S> metaClass, S entity) {
+            return super.insertOrUpdate(metaClass, entity).doFinally(() -> detach(metaClass));
+        }
+
+        @Override
+        public <K, S> Maybe<S> insertOrUpdate(MetaClassWithKey<K, S> metaClass, K key, Function<Maybe<S>, Maybe<S>> entityUpdater) {
+            return super.insertOrUpdate(metaClass, key, entityUpdater).doFinally(() -> detach(metaClass));
+        }
+
+        @Override
+        public <K, S> Single<Integer> update(UpdateInfo<K, S> update) {
+            return super.update(update).doFinally(() -> detach(update.metaClass()));
+        }
+
+        @Override
+        public <K, S> Single<Integer> delete(DeleteInfo<K, S> delete) {
+            return super.delete(delete).doFinally(() -> detach(delete.metaClass()));
+        }
+
+        @Override
+        public <K, S> Completable drop(MetaClassWithKey<K, S> metaClass) {
+            return super.drop(metaClass).doFinally(() -> detach(metaClass));
+        }
+
+        @Override
+        public Completable dropAll() {
+            return super.dropAll().doFinally(() -> inFlight.values().forEach(Map::clear));
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> Observable<T> singleFlight(MetaClassWithKey<?, ?> metaClass, Object key, Supplier<Observable<T>> source) {
+            return Observable.defer(() -> {
+                Map<Object, Observable<?>> executions = inFlight.computeIfAbsent(metaClass, mc -> new ConcurrentHashMap<>());
+                return (Observable<T>)executions.computeIfAbsent(key, k -> {
+                    AtomicReference<Observable<T>> shared = new AtomicReference<>();
+                    shared.set(source.get()
+                            .doFinally(() -> executions.remove(k, shared.get()))
+                            .replay()
+                            .refCount());
+                    return shared.get();
+                });
+            });
+        }
+
+        // Detached executions keep serving the callers that already joined them
+        private void detach(MetaClassWithKey<?, ?> metaClass) {
+            Optional.ofNullable(inFlight.get(metaClass)).ifPresent(Map::clear);
+        }
+    }
+}
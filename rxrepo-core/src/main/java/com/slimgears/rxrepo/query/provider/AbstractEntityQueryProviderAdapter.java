@@ -4,11 +4,13 @@ import com.slimgears.rxrepo.expressions.Aggregator;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.functions.Function;
 
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -31,11 +33,26 @@ public abstract class AbstractEntityQueryProviderAdapter implements QueryProvide
         return entities(query.metaClass()).query(query);
     }
 
+    @Override
+    public <K, S, T> Flowable<T> queryFlowable(QueryInfo<K, S, T> query) {
+        return entities(query.metaClass()).queryFlowable(query);
+    }
+
     @Override
     public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
         return entities(query.metaClass()).liveQuery(query);
     }
 
+    @Override
+    public <K, S> Single<Map<K, S>> findAll(MetaClassWithKey<K, S> metaClass, Iterable<K> keys) {
+        return entities(metaClass).findAll(keys);
+    }
+
+    @Override
+    public <K, S> Observable<List<Notification<S>>> queryAndObserve(QueryInfo<K, S, S> query, SnapshotChunking chunking) {
+        return entities(query.metaClass()).queryAndObserve(query, chunking);
+    }
+
     @Override
     public <K, S, T, R> Maybe<R> aggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
         return entities(query.metaClass())
@@ -2,14 +2,21 @@ package com.slimgears.rxrepo.query.provider;
 
 import com.slimgears.rxrepo.expressions.Aggregator;
 import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.Notifications;
+import com.slimgears.rxrepo.util.LiveSnapshots;
+import com.slimgears.rxrepo.util.Queries;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import com.slimgears.util.autovalue.annotations.MetaClasses;
+import io.reactivex.BackpressureStrategy;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.functions.Function;
 
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 public interface EntityQueryProvider<K, S> {
@@ -22,6 +29,23 @@ public interface EntityQueryProvider<K, S> {
     Single<Integer> delete(DeleteInfo<K, S> delete);
     Completable drop();
 
+    default <T> Flowable<T> queryFlowable(QueryInfo<K, S, T> query) {
+        return query(query).toFlowable(BackpressureStrategy.BUFFER);
+    }
+
+    default Single<Map<K, S>> findAll(Iterable<K> keys) {
+        return Queries.findAll(metaClass(), keys, this::query);
+    }
+
+    default Observable<List<Notification<S>>> queryAndObserve(QueryInfo<K, S, S> query, SnapshotChunking chunking) {
+        return LiveSnapshots.queryAndObserve(
+                liveQuery(LiveSnapshots.liveQueryOf(query)).compose(Notifications.filter(query.predicate())),
+                query(query),
+                chunking,
+                metaClass()::keyOf,
+                entity -> null);
+    }
+
     default Completable insert(Iterable<S> entities) {
         return Observable.fromIterable(entities)
                 .concatMapEager(e -> insertOrUpdate(e).toObservable())
@@ -2,16 +2,22 @@ package com.slimgears.rxrepo.query.provider;
 
 import com.slimgears.rxrepo.expressions.Aggregator;
 import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.util.LiveAggregations;
+import com.slimgears.rxrepo.util.LiveSnapshots;
+import com.slimgears.rxrepo.util.Queries;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import com.slimgears.util.autovalue.annotations.MetaClasses;
+import io.reactivex.BackpressureStrategy;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.functions.Function;
 
 import java.util.Arrays;
-import java.util.concurrent.TimeUnit;
+import java.util.List;
+import java.util.Map;
 import java.util.function.UnaryOperator;
 
 public interface QueryProvider extends AutoCloseable {
@@ -39,11 +45,31 @@ public interface QueryProvider extends AutoCloseable {
                 .toSingle();
     }
 
+    default <K, S, T> Flowable<T> queryFlowable(QueryInfo<K, S, T> query) {
+        return query(query).toFlowable(BackpressureStrategy.BUFFER);
+    }
+
+    // Live notifications are pushed by the backend, so they can only be buffered for slow consumers
+    default <K, S, T> Flowable<Notification<T>> liveQueryFlowable(QueryInfo<K, S, T> query) {
+        return liveQuery(query).toFlowable(BackpressureStrategy.BUFFER);
+    }
+
+    default <K, S> Single<Map<K, S>> findAll(MetaClassWithKey<K, S> metaClass, Iterable<K> keys) {
+        return Queries.findAll(metaClass, keys, this::query);
+    }
+
+    default <K, S> Observable<List<Notification<S>>> queryAndObserve(QueryInfo<K, S, S> query) {
+        return queryAndObserve(query, SnapshotChunking.whole());
+    }
+
+    // Emits the snapshot as batches of created notifications, terminated by an empty batch,
+    // followed by batches of changes newer than the snapshot
+    default <K, S> Observable<List<Notification<S>>> queryAndObserve(QueryInfo<K, S, S> query, SnapshotChunking chunking) {
+        return LiveSnapshots.queryAndObserve(this, query, chunking);
+    }
+
     default <K, S, T, R> Observable<R> liveAggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
-        return liveQuery(query)
-            .debounce(500, TimeUnit.MILLISECONDS)
-            .switchMapMaybe(n -> aggregate(query, aggregator))
-            .distinctUntilChanged();
+        return LiveAggregations.liveAggregate(this, query, aggregator);
     }
 
     default void close() {
@@ -0,0 +1,42 @@
+package com.slimgears.rxrepo.query.provider;
+
+import com.google.auto.value.AutoValue;
+import io.reactivex.ObservableTransformer;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@AutoValue
+public abstract class SnapshotChunking {
+    private final static SnapshotChunking whole = new AutoValue_SnapshotChunking(Integer.MAX_VALUE, null);
+
+    public abstract int maxSize();
+    @Nullable public abstract Duration maxDelay();
+
+    public static SnapshotChunking whole() {
+        return whole;
+    }
+
+    public static SnapshotChunking of(int maxSize) {
+        return new AutoValue_SnapshotChunking(maxSize, null);
+    }
+
+    public static SnapshotChunking of(int maxSize, Duration maxDelay) {
+        return new AutoValue_SnapshotChunking(maxSize, maxDelay);
+    }
+
+    public boolean isWhole() {
+        return equals(whole);
+    }
+
+    public <T> ObservableTransformer<T, List<T>> chunks() {
+        if (isWhole()) {
+            return src -> src.toList().toObservable();
+        }
+        return maxDelay() != null
+                ? src -> src.buffer(maxDelay().toMillis(), TimeUnit.MILLISECONDS, maxSize()).filter(chunk -> !chunk.isEmpty())
+                : src -> src.buffer(maxSize());
+    }
+}
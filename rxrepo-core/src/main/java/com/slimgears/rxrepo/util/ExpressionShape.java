@@ -0,0 +1,68 @@
+package com.slimgears.rxrepo.util;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.expressions.ExpressionVisitor;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ExpressionShape {
+    private final Object key;
+    private final Object[] parameters;
+
+    private ExpressionShape(Object key, Object[] parameters) {
+        this.key = key;
+        this.parameters = parameters;
+    }
+
+    public static ExpressionShape of(Expression expression) {
+        List<Object> parameters = new ArrayList<>();
+        Object key = new ShapeVisitor().visit(expression, parameters);
+        return new ExpressionShape(key, parameters.toArray());
+    }
+
+    public Object key() {
+        return key;
+    }
+
+    public Object[] parameters() {
+        return parameters;
+    }
+
+    private static class ShapeVisitor extends ExpressionVisitor<List<Object>, Object> {
+        @Override
+        protected Object reduceBinary(ObjectExpression<?, ?> expression, Expression.Type type, Object first, Object second) {
+            return ImmutableList.of(type, first, second);
+        }
+
+        @Override
+        protected Object reduceUnary(ObjectExpression<?, ?> expression, Expression.Type type, Object first) {
+            return ImmutableList.of(type, first);
+        }
+
+        @Override
+        protected <S, T> Object visitOther(ObjectExpression<S, T> expression, List<Object> arg) {
+            return expression;
+        }
+
+        @Override
+        protected <T, V> Object visitProperty(PropertyMeta<T, V> propertyMeta, List<Object> arg) {
+            return ImmutableList.of(propertyMeta.declaringType().asType(), propertyMeta.name());
+        }
+
+        @Override
+        protected <V> Object visitConstant(Expression.Type type, V value, List<Object> parameters) {
+            parameters.add(value);
+            return type;
+        }
+
+        @Override
+        protected <T> Object visitArgument(TypeToken<T> argType, List<Object> arg) {
+            return Expression.OperationType.Argument;
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.slimgears.rxrepo.util;
 
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.reflect.TypeToken;
 import com.slimgears.rxrepo.encoding.MetaClassSearchableFields;
@@ -18,24 +21,41 @@ import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
 public class Expressions {
+    private final static Function identity = a -> a;
+    private final static int compiledShapesCacheSize = 1024;
+    private final static Cache<Object, Binder> compiledShapes = CacheBuilder.newBuilder()
+            .maximumSize(compiledShapesCacheSize)
+            .recordStats()
+            .build();
+
     @SuppressWarnings("unchecked")
     public static <S, T> Function<S, T> compile(ObjectExpression<S, T> exp) {
-        return exp != null
-                ? (Function<S, T>)new InternalVisitor().visit(exp, null)
-                : (Function<S, T>)Function.identity();
+        if (exp == null) {
+            return (Function<S, T>)Function.identity();
+        }
+        ExpressionShape shape = ExpressionShape.of(exp);
+        Binder binder = compiledShapes.getIfPresent(shape.key());
+        if (binder == null) {
+            binder = new InternalVisitor().visit(exp, null);
+            compiledShapes.put(shape.key(), binder);
+        }
+        return (Function<S, T>)binder.apply(shape.parameters());
+    }
+
+    public static CacheStats compiledShapesStats() {
+        return compiledShapes.stats();
     }
 
     public static <S, V extends Comparable<V>> Comparator<S> compileComparator(PropertyExpression<S, ?, V> property, boolean ascending) {
         Function<S, V> propertyGetter = compile(property);
-        Comparator<S> comparator = (c1, c2) -> Optional
-                .ofNullable(propertyGetter.apply(c1))
-                .map(cc1 -> Optional.ofNullable(propertyGetter.apply(c2))
-                        .map(cc1::compareTo)
-                        .orElse(-1))
-                .orElseGet(() -> Optional
-                        .ofNullable(propertyGetter.apply(c2))
-                        .map(cc2 -> 1)
-                        .orElse(0));
+        Comparator<S> comparator = (c1, c2) -> {
+            V cc1 = propertyGetter.apply(c1);
+            V cc2 = propertyGetter.apply(c2);
+            if (cc1 == null) {
+                return cc2 == null ? 0 : 1;
+            }
+            return cc2 == null ? -1 : cc1.compareTo(cc2);
+        };
         return ascending ? comparator : comparator.reversed();
     }
 
@@ -121,8 +141,41 @@ public class Expressions {
     private static Function<Function[], Function> composition() {
         //noinspection unchecked
         return funcs -> Arrays.stream(funcs)
+                .filter(f -> f != identity)
                 .reduce((f1, f2) -> val -> f2.apply(f1.apply(val)))
-                .orElse(val -> val);
+                .orElse(identity);
+    }
+
+    private static Function equalsTo(Function operand, Object value) {
+        return value != null
+                ? val -> value.equals(operand.apply(val))
+                : val -> operand.apply(val) == null;
+    }
+
+    private static Function valueIn(Function operand, Object value) {
+        if (value == null) {
+            return val -> false;
+        }
+        Collection<?> collection = value instanceof Set || ((Collection<?>)value).size() <= 8
+                ? (Collection<?>)value
+                : new HashSet<>((Collection<?>)value);
+        return val -> {
+            Object obj = operand.apply(val);
+            return obj != null && collection.contains(obj);
+        };
+    }
+
+    private static class ConstantFunction implements Function<Object, Object> {
+        private final Object value;
+
+        private ConstantFunction(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object apply(Object o) {
+            return value;
+        }
     }
 
     private static Function<Function[], Function> notSupported() {
@@ -131,7 +184,7 @@ public class Expressions {
         };
     }
 
-    private static class InternalVisitor extends ExpressionVisitor<Void, Function> {
+    private static class InternalVisitor extends ExpressionVisitor<Void, Binder> {
         @SuppressWarnings("unchecked")
         private final static ImmutableMap<Expression.Type, Function<Function[], Function>> expressionTypeReducersMap = ImmutableMap.<Expression.Type, Function<Function[], Function>>builder()
                 .put(Expression.Type.AsString, fromUnary(o -> o != null ? o.toString() : null))
@@ -173,48 +226,70 @@ public class Expressions {
                 .put(Expression.OperationType.Composition, composition())
                 .build();
 
-        private static Function reduce(Expression.Type type, Function... functions) {
+        private final static ImmutableMap<Expression.Type, BiFunction<Function, Object, Function>> constantOperandReducersMap = ImmutableMap.<Expression.Type, BiFunction<Function, Object, Function>>builder()
+                .put(Expression.Type.Equals, Expressions::equalsTo)
+                .put(Expression.Type.ValueIn, Expressions::valueIn)
+                .put(Expression.Type.SearchText, Expressions::searchTextOf)
+                .put(Expression.Type.Matches, Expressions::matchesPattern)
+                .build();
+
+        private int parameterCount = 0;
+
+        private static Function<Function[], Function> reducerOf(Expression.Type type) {
             return Optionals.or(
-                    () -> Optional.ofNullable(expressionTypeReducersMap.get(type)).map(r -> r.apply(functions)),
-                    () -> Optional.ofNullable(operationTypeReducersMap.get(type.operationType())).map(r -> r.apply(functions)))
+                    () -> Optional.ofNullable(expressionTypeReducersMap.get(type)),
+                    () -> Optional.ofNullable(operationTypeReducersMap.get(type.operationType())))
                     .orElseThrow(() -> new IllegalArgumentException("Not supported expression type: " + type));
         }
 
         @Override
-        protected Function reduceBinary(ObjectExpression<?, ?> expression, Expression.Type type, Function first, Function second) {
-            return reduce(type, first, second);
+        protected Binder reduceBinary(ObjectExpression<?, ?> expression, Expression.Type type, Binder first, Binder second) {
+            Function<Function[], Function> reducer = reducerOf(type);
+            BiFunction<Function, Object, Function> constantReducer = constantOperandReducersMap.get(type);
+            return params -> {
+                Function firstFunc = first.apply(params);
+                Function secondFunc = second.apply(params);
+                return constantReducer != null && secondFunc instanceof ConstantFunction
+                        ? constantReducer.apply(firstFunc, ((ConstantFunction)secondFunc).value)
+                        : reducer.apply(new Function[]{firstFunc, secondFunc});
+            };
         }
 
         @Override
-        protected Function reduceUnary(ObjectExpression<?, ?> expression, Expression.Type type, Function first) {
-            return reduce(type, first);
+        protected Binder reduceUnary(ObjectExpression<?, ?> expression, Expression.Type type, Binder first) {
+            Function<Function[], Function> reducer = reducerOf(type);
+            return params -> reducer.apply(new Function[]{first.apply(params)});
         }
 
         @Override
-        protected <S, T> Function visitOther(ObjectExpression<S, T> expression, Void arg) {
+        protected <S, T> Binder visitOther(ObjectExpression<S, T> expression, Void arg) {
             throw new IllegalArgumentException("Not supported expression type: " + expression.toString());
         }
 
         @Override
-        protected <T, V> Function visitProperty(PropertyMeta<T, V> propertyMeta, Void arg) {
-            return target -> Optional
-                    .ofNullable(target)
-                    .flatMap(Optionals.ofType(propertyMeta.declaringType().asClass()))
-                    .map(propertyMeta::getValue)
-                    .orElse(null);
+        protected <T, V> Binder visitProperty(PropertyMeta<T, V> propertyMeta, Void arg) {
+            Class<T> declaringClass = propertyMeta.declaringType().asClass();
+            Function<Object, V> getter = target -> declaringClass.isInstance(target)
+                    ? propertyMeta.getValue(declaringClass.cast(target))
+                    : null;
+            return params -> getter;
         }
 
         @Override
-        protected <V> Function visitConstant(Expression.Type type, V value, Void arg) {
-            return a -> value;
+        protected <V> Binder visitConstant(Expression.Type type, V value, Void arg) {
+            int index = parameterCount++;
+            return params -> new ConstantFunction(params[index]);
         }
 
         @Override
-        protected <T> Function visitArgument(TypeToken<T> argType, Void arg) {
-            return a -> a;
+        protected <T> Binder visitArgument(TypeToken<T> argType, Void arg) {
+            return params -> identity;
         }
     }
 
+    private interface Binder extends Function<Object[], Function> {
+    }
+
     private static <T> Function<Collection<T>, T> min() {
         return c -> Optional
                 .ofNullable(c)
@@ -313,13 +388,29 @@ public class Expressions {
     private static BiFunction<Object, String, Boolean> searchText() {
         return (obj, str) -> Optional.ofNullable(obj)
                 .map(MetaClassSearchableFields::searchableTextFromObject)
-                .map(text -> {
-                    Pattern pattern = Pattern.compile(SearchTextUtils.searchTextToRegex(getStringOrEmpty(str)), Pattern.CASE_INSENSITIVE);
-                    return pattern.matcher(text).find();
-                })
+                .map(SearchTextUtils.searchTextMatcher(str)::test)
                 .orElse(false);
     }
 
+    private static Function searchTextOf(Function operand, Object value) {
+        Predicate<String> matcher = SearchTextUtils.searchTextMatcher((String)value);
+        return val -> {
+            Object obj = operand.apply(val);
+            return obj != null && matcher.test(MetaClassSearchableFields.searchableTextFromObject(obj));
+        };
+    }
+
+    private static Function matchesPattern(Function operand, Object value) {
+        if (value == null) {
+            return val -> operand.apply(val) == null;
+        }
+        Pattern pattern = Pattern.compile((String)value);
+        return val -> {
+            Object str = operand.apply(val);
+            return str != null && pattern.matcher((String)str).matches();
+        };
+    }
+
     private static BiFunction<String, String, Boolean> contains() {
         return (s1, s2) -> s1 != null && (s2 == null || s1.contains(s2)); //if s1 == null returns false but then null does not contain null
     }
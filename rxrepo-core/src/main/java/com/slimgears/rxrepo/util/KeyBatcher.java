@@ -0,0 +1,144 @@
+package com.slimgears.rxrepo.util;
+
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.MaybeSubject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Collects key lookups issued within the batch window (or until maxBatchSize keys are pending)
+// and resolves them with a single query, fanning the results out to the individual lookups.
+// A lookup issued while no batch is pending or executing has nothing to be batched with, so it is not delayed.
+// A started batch is executed even if all of its lookups are disposed
+public class KeyBatcher<K, S> {
+    private final static Logger log = LoggerFactory.getLogger(KeyBatcher.class);
+    private final Function<List<K>, Observable<S>> loader;
+    private final Function<S, K> keyOf;
+    private final int maxBatchSize;
+    private final Duration window;
+    private final Scheduler scheduler;
+    private Map<K, MaybeSubject<S>> pending = new LinkedHashMap<>();
+    private int executing;
+
+    private KeyBatcher(Function<List<K>, Observable<S>> loader, Function<S, K> keyOf, int maxBatchSize, Duration window, Scheduler scheduler) {
+        this.loader = loader;
+        this.keyOf = keyOf;
+        this.maxBatchSize = maxBatchSize;
+        this.window = window;
+        this.scheduler = scheduler;
+    }
+
+    public static <K, S> KeyBatcher<K, S> create(Function<List<K>, Observable<S>> loader, Function<S, K> keyOf, int maxBatchSize, Duration window, Scheduler scheduler) {
+        return new KeyBatcher<>(loader, keyOf, maxBatchSize, window, scheduler);
+    }
+
+    // Lookups may block on the result (as references do while decoding), so the window is timed on the io scheduler
+    public static <K, S> KeyBatcher<K, S> forEntities(MetaClassWithKey<K, S> metaClass, Function<QueryInfo<K, S, S>, Observable<S>> query, int maxBatchSize, Duration window) {
+        return create(
+                keys -> query.apply(QueryInfo.<K, S, S>builder()
+                        .metaClass(metaClass)
+                        .predicate(Queries.keyPredicateOf(metaClass, keys))
+                        .build()),
+                metaClass::keyOf,
+                maxBatchSize,
+                window,
+                Schedulers.io());
+    }
+
+    public Maybe<S> find(K key) {
+        return Maybe.defer(() -> {
+            MaybeSubject<S> lookup;
+            Map<K, MaybeSubject<S>> batch = null;
+            synchronized (this) {
+                lookup = pending.get(key);
+                if (lookup == null) {
+                    lookup = MaybeSubject.create();
+                    pending.put(key, lookup);
+                    if (pending.size() == 1 && executing == 0) {
+                        batch = takePending();
+                    } else if (pending.size() >= maxBatchSize) {
+                        batch = takePending();
+                    } else if (pending.size() == 1) {
+                        scheduler.scheduleDirect(this::flush, window.toMillis(), TimeUnit.MILLISECONDS);
+                    }
+                }
+            }
+            if (batch != null) {
+                execute(batch);
+            }
+            return lookup;
+        });
+    }
+
+    // Keys known upfront are resolved right away, together with the lookups pending at the moment
+    public Single<Map<K, S>> findAll(Collection<K> keys) {
+        return Single.defer(() -> {
+            List<MaybeSubject<S>> lookups = new ArrayList<>();
+            List<Map<K, MaybeSubject<S>>> batches = new ArrayList<>();
+            synchronized (this) {
+                for (K key : keys) {
+                    lookups.add(pending.computeIfAbsent(key, k -> MaybeSubject.create()));
+                    if (pending.size() >= maxBatchSize) {
+                        batches.add(takePending());
+                    }
+                }
+                if (!pending.isEmpty()) {
+                    batches.add(takePending());
+                }
+            }
+            batches.forEach(this::execute);
+            return Observable.fromIterable(lookups)
+                    .concatMapMaybe(lookup -> lookup)
+                    .toMap(keyOf::apply);
+        });
+    }
+
+    private void flush() {
+        Map<K, MaybeSubject<S>> batch;
+        synchronized (this) {
+            batch = !pending.isEmpty() ? takePending() : null;
+        }
+        if (batch != null) {
+            execute(batch);
+        }
+    }
+
+    // Should be called while holding the lock, the taken batch is expected to be executed
+    private Map<K, MaybeSubject<S>> takePending() {
+        Map<K, MaybeSubject<S>> batch = pending;
+        pending = new LinkedHashMap<>();
+        ++executing;
+        return batch;
+    }
+
+    private synchronized void onExecuted() {
+        --executing;
+    }
+
+    private void execute(Map<K, MaybeSubject<S>> batch) {
+        log.trace("Resolving batch of {} keys", batch.size());
+        loader.apply(new ArrayList<>(batch.keySet())).doFinally(this::onExecuted).subscribe(
+                item -> {
+                    MaybeSubject<S> lookup = batch.remove(keyOf.apply(item));
+                    if (lookup != null) {
+                        lookup.onSuccess(item);
+                    }
+                },
+                error -> batch.values().forEach(lookup -> lookup.onError(error)),
+                () -> batch.values().forEach(MaybeSubject::onComplete));
+    }
+}
@@ -0,0 +1,143 @@
+package com.slimgears.rxrepo.util;
+
+import com.google.common.collect.ImmutableSet;
+import com.slimgears.rxrepo.expressions.Aggregator;
+import com.slimgears.rxrepo.expressions.CollectionExpression;
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.query.provider.SnapshotChunking;
+import com.slimgears.util.reflect.TypeTokens;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class LiveAggregations {
+    private final static int snapshotChunkSize = 1000;
+    private final static ImmutableSet<Expression.Type> incrementalTypes = ImmutableSet.of(
+            Expression.Type.Count,
+            Expression.Type.Sum,
+            Expression.Type.Average,
+            Expression.Type.Min,
+            Expression.Type.Max);
+
+    public static <K, S, T, R> Observable<R> liveAggregate(QueryProvider provider, QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
+        Expression.Type type = aggregationTypeOf(query, aggregator);
+        return isIncremental(query, type)
+                ? incrementalAggregate(provider, query, type)
+                : requeryAggregate(provider, query, aggregator);
+    }
+
+    public static <K, S, T, R> Observable<R> requeryAggregate(QueryProvider provider, QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
+        return provider.liveQuery(query)
+                .debounce(500, TimeUnit.MILLISECONDS)
+                .switchMapMaybe(n -> provider.aggregate(query, aggregator))
+                .distinctUntilChanged();
+    }
+
+    // State is seeded from the snapshot and maintained by the changes newer than it, so no change is applied twice
+    private static <K, S, T, R> Observable<R> incrementalAggregate(QueryProvider provider, QueryInfo<K, S, T> query, Expression.Type type) {
+        java.util.function.Function<S, T> mapper = Expressions.compile(query.mapping());
+        QueryInfo<K, S, S> sourceQuery = QueryInfo.<K, S, S>builder()
+                .metaClass(query.metaClass())
+                .predicate(query.predicate())
+                .build();
+        return Observable.defer(() -> {
+            AggregationState<R> state = new AggregationState<>(type);
+            AtomicBoolean snapshotComplete = new AtomicBoolean();
+            return provider.queryAndObserve(sourceQuery, SnapshotChunking.of(snapshotChunkSize))
+                    .concatMapMaybe(notifications -> {
+                        notifications.forEach(n -> state.apply(n.map(mapper)));
+                        if (notifications.isEmpty()) {
+                            snapshotComplete.set(true);
+                        }
+                        return snapshotComplete.get()
+                                ? Maybe.fromCallable(state::result)
+                                : Maybe.<R>empty();
+                    })
+                    .distinctUntilChanged();
+        });
+    }
+
+    private static <T, R> Expression.Type aggregationTypeOf(QueryInfo<?, ?, T> query, Aggregator<T, T, R> aggregator) {
+        return aggregator.apply(CollectionExpression
+                .indirectArg(TypeTokens.ofParameterized(Collection.class, query.objectType())))
+                .type();
+    }
+
+    private static boolean isIncremental(QueryInfo<?, ?, ?> query, Expression.Type type) {
+        return incrementalTypes.contains(type)
+                && query.skip() == null
+                && query.limit() == null
+                && !Optional.ofNullable(query.distinct()).orElse(false);
+    }
+
+    // Null values are not aggregated, the same way as by the aggregations of the backends.
+    // Min and max are kept with the counts of all the values, so removal of the current extreme does not require re-aggregation
+    private static class AggregationState<R> {
+        private final Expression.Type type;
+        private final TreeMap<Object, Integer> values = new TreeMap<>(AggregationState::compare);
+        private long count;
+        private Object sum;
+
+        private AggregationState(Expression.Type type) {
+            this.type = type;
+        }
+
+        void apply(Notification<?> notification) {
+            remove(notification.oldValue());
+            add(notification.newValue());
+        }
+
+        @SuppressWarnings("unchecked")
+        R result() {
+            switch (type) {
+                case Count:
+                    return (R)Long.valueOf(count);
+                case Average:
+                    return (R)Double.valueOf(count > 0 && sum != null ? ((Number)sum).doubleValue() / count : 0.0);
+                case Min:
+                    return values.isEmpty() ? null : (R)values.firstKey();
+                case Max:
+                    return values.isEmpty() ? null : (R)values.lastKey();
+                default:
+                    return count > 0 ? (R)sum : null;
+            }
+        }
+
+        private void add(Object value) {
+            if (value == null) {
+                return;
+            }
+            ++count;
+            if (type == Expression.Type.Sum || type == Expression.Type.Average) {
+                sum = sum != null ? GenericMath.add((Number)sum, (Number)value) : value;
+            } else if (type == Expression.Type.Min || type == Expression.Type.Max) {
+                values.merge(value, 1, Integer::sum);
+            }
+        }
+
+        private void remove(Object value) {
+            if (value == null) {
+                return;
+            }
+            count = Math.max(0, count - 1);
+            if (type == Expression.Type.Sum || type == Expression.Type.Average) {
+                sum = count > 0 && sum != null ? GenericMath.subtract((Number)sum, (Number)value) : null;
+            } else if (type == Expression.Type.Min || type == Expression.Type.Max) {
+                values.computeIfPresent(value, (v, c) -> c > 1 ? c - 1 : null);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static int compare(Object left, Object right) {
+            return ((Comparable<Object>)left).compareTo(right);
+        }
+    }
+}
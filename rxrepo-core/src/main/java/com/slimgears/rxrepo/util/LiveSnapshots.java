@@ -0,0 +1,136 @@
+package com.slimgears.rxrepo.util;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.Notifications;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.query.provider.SnapshotChunking;
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.disposables.CompositeDisposable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class LiveSnapshots {
+    private final static Logger log = LoggerFactory.getLogger(LiveSnapshots.class);
+
+    public static <K, S> Observable<List<Notification<S>>> queryAndObserve(QueryProvider provider, QueryInfo<K, S, S> query, SnapshotChunking chunking) {
+        return queryAndObserve(
+                provider.liveQuery(liveQueryOf(query)).compose(Notifications.filter(query.predicate())),
+                provider.query(query),
+                chunking,
+                query.metaClass()::keyOf,
+                entity -> null);
+    }
+
+    // Changes are observed class-wide and filtered on the client, so an update moving an entity out of the predicate is not lost
+    public static <K, S, T> QueryInfo<K, S, T> liveQueryOf(QueryInfo<K, S, T> query) {
+        return query.toBuilder()
+                .predicate(null)
+                .limit(null)
+                .skip(null)
+                .sorting(ImmutableList.of())
+                .build();
+    }
+
+    // Changes are subscribed before the snapshot is requested and buffered until it is complete.
+    // The snapshot is emitted in chunks of created notifications followed by an empty batch.
+    // Buffered changes already reflected in the snapshot are dropped: for each key everything up to the last change
+    // which is not newer than the snapshot is skipped. The change is compared by version when both sides have one,
+    // otherwise by its new value
+    public static <T> Observable<List<Notification<T>>> queryAndObserve(
+            Observable<Notification<T>> changes,
+            Observable<T> snapshot,
+            SnapshotChunking chunking,
+            Function<T, ?> keyOf,
+            Function<T, Long> versionOf) {
+        return Observable.create(emitter -> {
+            ObservableEmitter<List<Notification<T>>> serialized = emitter.serialize();
+            CompositeDisposable subscriptions = new CompositeDisposable();
+            serialized.setDisposable(subscriptions);
+
+            List<Notification<T>> buffered = new ArrayList<>();
+            Map<Object, T> snapshotByKey = new HashMap<>();
+            AtomicBoolean live = new AtomicBoolean();
+            subscriptions.add(changes.subscribe(
+                    notification -> {
+                        synchronized (buffered) {
+                            if (!live.get()) {
+                                buffered.add(notification);
+                                return;
+                            }
+                        }
+                        serialized.onNext(Collections.singletonList(notification));
+                    },
+                    serialized::tryOnError,
+                    serialized::onComplete));
+
+            subscriptions.add(snapshot.compose(chunking.<T>chunks()).subscribe(
+                    items -> {
+                        synchronized (buffered) {
+                            items.forEach(item -> snapshotByKey.put(keyOf.apply(item), item));
+                            if (!items.isEmpty()) {
+                                serialized.onNext(items.stream().map(Notification::ofCreated).collect(Collectors.toList()));
+                            }
+                        }
+                    },
+                    serialized::tryOnError,
+                    () -> {
+                        synchronized (buffered) {
+                            serialized.onNext(Collections.emptyList());
+                            List<Notification<T>> pending = newerThan(snapshotByKey, buffered, keyOf, versionOf);
+                            log.debug("Snapshot of {} items, replaying {} of {} buffered changes", snapshotByKey.size(), pending.size(), buffered.size());
+                            if (!pending.isEmpty()) {
+                                serialized.onNext(pending);
+                            }
+                            buffered.clear();
+                            snapshotByKey.clear();
+                            live.set(true);
+                        }
+                    }));
+        });
+    }
+
+    private static <T> List<Notification<T>> newerThan(Map<Object, T> snapshotByKey, List<Notification<T>> buffered, Function<T, ?> keyOf, Function<T, Long> versionOf) {
+        if (buffered.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Object> keys = buffered.stream()
+                .map(n -> keyOf.apply(Optional.ofNullable(n.newValue()).orElseGet(n::oldValue)))
+                .collect(Collectors.toList());
+
+        Map<Object, Integer> watermarks = new HashMap<>();
+        for (int i = 0; i < buffered.size(); ++i) {
+            if (isReflected(buffered.get(i), snapshotByKey.get(keys.get(i)), versionOf)) {
+                watermarks.put(keys.get(i), i);
+            }
+        }
+
+        return IntStream.range(0, buffered.size())
+                .filter(i -> i > watermarks.getOrDefault(keys.get(i), -1))
+                .mapToObj(buffered::get)
+                .collect(Collectors.toList());
+    }
+
+    private static <T> boolean isReflected(Notification<T> notification, T snapshotValue, Function<T, Long> versionOf) {
+        Long changeVersion = Optional.ofNullable(notification.newValue()).map(versionOf).orElse(null);
+        Long snapshotVersion = Optional.ofNullable(snapshotValue).map(versionOf).orElse(null);
+        return changeVersion != null && snapshotVersion != null
+                ? changeVersion <= snapshotVersion
+                : Objects.equals(notification.newValue(), snapshotValue);
+    }
+}
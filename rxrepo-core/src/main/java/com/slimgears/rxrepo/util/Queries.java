@@ -1,14 +1,49 @@
 package com.slimgears.rxrepo.util;
 
+import com.slimgears.rxrepo.expressions.BooleanExpression;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.expressions.PropertyExpression;
 import com.slimgears.rxrepo.query.provider.*;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Observable;
 import io.reactivex.ObservableTransformer;
+import io.reactivex.Single;
 
 import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.function.Predicate;
 
 @SuppressWarnings("WeakerAccess")
 public class Queries {
+    private final static int findAllChunkSize = 1000;
+
+    // Keys are looked up in chunks, so very large key sets do not produce unbounded predicates
+    public static <K, S> Single<Map<K, S>> findAll(MetaClassWithKey<K, S> metaClass, Iterable<K> keys, Function<QueryInfo<K, S, S>, Observable<S>> query) {
+        return Observable.fromIterable(keys)
+                .distinct()
+                .buffer(findAllChunkSize)
+                .concatMap(chunk -> query.apply(QueryInfo.<K, S, S>builder()
+                        .metaClass(metaClass)
+                        .predicate(keyPredicateOf(metaClass, chunk))
+                        .build()))
+                .toMap(metaClass::keyOf);
+    }
+
+    // Embedded keys are matched one by one, as not every backend supports 'in' for them
+    public static <K, S> BooleanExpression<S> keyPredicateOf(MetaClassWithKey<K, S> metaClass, List<K> keys) {
+        ObjectExpression<S, K> keyProperty = PropertyExpression.ofObject(ObjectExpression.arg(metaClass.asType()), metaClass.keyProperty());
+        if (keys.size() > 1 && metaClass.keyProperty().type().isSubtypeOf(Comparable.class)) {
+            return keyProperty.in(keys);
+        }
+        return keys.stream()
+                .map(keyProperty::eq)
+                .reduce((first, second) -> first.or(second))
+                .orElseGet(BooleanExpression::ofFalse);
+    }
+
     public static <T> Comparator<T> toComparator(HasSortingInfo<T> sortingInfo) {
         return sortingInfo.sorting()
                 .stream()
@@ -64,12 +99,15 @@ public class Queries {
                 .compose(applyLimit(pagination));
     }
 
+    public static <T, Q extends HasSortingInfo<T> & HasPagination> ObservableTransformer<T, T> applySortingAndPagination(Q query) {
+        return TopKTransformer.create(toComparator(query), query.skip(), query.limit());
+    }
+
     public static <K, S, T> ObservableTransformer<S, T> applyQuery(QueryInfo<K, S, T> query) {
         return source -> source
                 .compose(applyFilter(query))
-                .compose(applySorting(query))
-                .compose(applyMapping(query))
-                .compose(applyPagination(query));
+                .compose(applySortingAndPagination(query))
+                .compose(applyMapping(query));
     }
 
     private static <T, V extends Comparable<V>> Comparator<T> toComparator(SortingInfo<T, ?, V> sortingInfo) {
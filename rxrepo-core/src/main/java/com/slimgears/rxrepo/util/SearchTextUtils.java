@@ -1,8 +1,15 @@
 package com.slimgears.rxrepo.util;
 
+import com.google.common.base.CharMatcher;
 import com.google.common.base.Strings;
 
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
 class SearchTextUtils {
+    private final static CharMatcher wildcardMatcher = CharMatcher.anyOf("*");
+    private final static CharMatcher literalMatcher = CharMatcher.javaLetterOrDigit().or(CharMatcher.anyOf("-_@.,:;'\"/#"));
+
     static String searchTextToRegex(String searchExpr) {
         if (Strings.isNullOrEmpty(searchExpr)) {
             return "";
@@ -17,4 +24,25 @@ class SearchTextUtils {
                 .replace("?", ".")
                 .replace("*", ".*");
     }
+
+    static Predicate<String> searchTextMatcher(String searchExpr) {
+        String term = wildcardMatcher.trimFrom(Strings.nullToEmpty(searchExpr));
+        if (term.isEmpty()) {
+            return text -> true;
+        }
+        if (literalMatcher.matchesAllOf(term)) {
+            return text -> containsIgnoreCase(text, term);
+        }
+        Pattern pattern = Pattern.compile(searchTextToRegex(searchExpr), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+        return text -> pattern.matcher(text).find();
+    }
+
+    private static boolean containsIgnoreCase(String text, String term) {
+        for (int i = 0, last = text.length() - term.length(); i <= last; ++i) {
+            if (text.regionMatches(true, i, term, 0, term.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
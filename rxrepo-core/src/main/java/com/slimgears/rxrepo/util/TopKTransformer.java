@@ -0,0 +1,87 @@
+package com.slimgears.rxrepo.util;
+
+import com.google.common.math.LongMath;
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.ObservableTransformer;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+
+public class TopKTransformer<T> implements ObservableTransformer<T, T> {
+    private final Comparator<? super T> comparator;
+    private final long skip;
+    private final @Nullable Long limit;
+
+    private TopKTransformer(Comparator<? super T> comparator, long skip, @Nullable Long limit) {
+        this.comparator = comparator;
+        this.skip = skip;
+        this.limit = limit;
+    }
+
+    public static <T> TopKTransformer<T> create(Comparator<? super T> comparator, @Nullable Long skip, @Nullable Long limit) {
+        return new TopKTransformer<>(comparator, Optional.ofNullable(skip).orElse(0L), limit);
+    }
+
+    @Override
+    public ObservableSource<T> apply(Observable<T> upstream) {
+        long capacity = Optional.ofNullable(limit).map(l -> LongMath.saturatedAdd(l, skip)).orElse(Long.MAX_VALUE);
+        if (capacity <= 0) {
+            return upstream.ignoreElements().toObservable();
+        }
+        if (capacity >= Integer.MAX_VALUE) {
+            return upstream.sorted(comparator).skip(skip);
+        }
+        return upstream
+                .collect(() -> new BoundedHeap<T>(comparator, (int)capacity), BoundedHeap::add)
+                .flattenAsObservable(BoundedHeap::toSortedList)
+                .skip(skip);
+    }
+
+    private static class BoundedHeap<T> {
+        private final Comparator<Entry<T>> comparator;
+        private final PriorityQueue<Entry<T>> queue;
+        private final int capacity;
+        private long sequence;
+
+        private BoundedHeap(Comparator<? super T> itemComparator, int capacity) {
+            // Ties are broken by arrival order, so the result matches a stable sort followed by skip/limit
+            this.comparator = Comparator.<Entry<T>, T>comparing(e -> e.item, itemComparator).thenComparingLong(e -> e.sequence);
+            this.queue = new PriorityQueue<>(Math.min(capacity, 1024), this.comparator.reversed());
+            this.capacity = capacity;
+        }
+
+        private void add(T item) {
+            Entry<T> entry = new Entry<>(item, sequence++);
+            if (queue.size() < capacity) {
+                queue.add(entry);
+            } else if (comparator.compare(entry, queue.peek()) < 0) {
+                queue.poll();
+                queue.add(entry);
+            }
+        }
+
+        private List<T> toSortedList() {
+            List<Entry<T>> entries = new ArrayList<>(queue);
+            entries.sort(comparator);
+            List<T> items = new ArrayList<>(entries.size());
+            entries.forEach(e -> items.add(e.item));
+            return Collections.unmodifiableList(items);
+        }
+    }
+
+    private static class Entry<T> {
+        private final T item;
+        private final long sequence;
+
+        private Entry(T item, long sequence) {
+            this.item = item;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.slimgears.rxrepo.util;
+
+import com.google.common.collect.ImmutableMap;
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+public class KeyBatcherTest {
+    private final TestScheduler scheduler = new TestScheduler();
+    private final List<List<String>> batches = new ArrayList<>();
+    // Keys starting with 'x' are missing, each batch takes 5 milliseconds
+    private final KeyBatcher<String, String> batcher = KeyBatcher.create(
+            keys -> {
+                batches.add(keys);
+                return Observable.fromIterable(keys)
+                        .filter(key -> !key.startsWith("x"))
+                        .delay(5, TimeUnit.MILLISECONDS, scheduler);
+            },
+            Function.identity(),
+            4,
+            Duration.ofMillis(10),
+            scheduler);
+
+    @Test
+    public void testSingleLookupIsNotDelayed() {
+        TestObserver<String> observer = batcher.find("a").test();
+        Assert.assertEquals(Collections.singletonList(Collections.singletonList("a")), batches);
+
+        scheduler.advanceTimeBy(5, TimeUnit.MILLISECONDS);
+        observer.assertValue("a");
+    }
+
+    @Test
+    public void testLookupsIssuedDuringExecutionAreBatched() {
+        TestObserver<String> first = batcher.find("a").test();
+        TestObserver<String> second = batcher.find("b").test();
+        TestObserver<String> third = batcher.find("x").test();
+
+        scheduler.advanceTimeBy(5, TimeUnit.MILLISECONDS);
+        first.assertValue("a");
+        second.assertNoValues().assertNotComplete();
+
+        scheduler.advanceTimeBy(10, TimeUnit.MILLISECONDS);
+        second.assertValue("b");
+        third.assertNoValues().assertComplete();
+        Assert.assertEquals(Arrays.asList(Collections.singletonList("a"), Arrays.asList("b", "x")), batches);
+    }
+
+    @Test
+    public void testFullBatchIsExecutedWithoutWaitingForWindow() {
+        batcher.find("a").test();
+        Observable.just("b", "c", "d", "e")
+                .flatMapMaybe(batcher::find)
+                .test();
+
+        Assert.assertEquals(Arrays.asList(Collections.singletonList("a"), Arrays.asList("b", "c", "d", "e")), batches);
+    }
+
+    @Test
+    public void testKeysKnownUpfrontAreResolvedInSingleBatch() {
+        TestObserver<Map<String, String>> observer = batcher.findAll(Arrays.asList("a", "b", "x", "a")).test();
+        Assert.assertEquals(Collections.singletonList(Arrays.asList("a", "b", "x")), batches);
+
+        scheduler.advanceTimeBy(5, TimeUnit.MILLISECONDS);
+        observer.assertValue(ImmutableMap.of("a", "a", "b", "b"));
+    }
+
+    @Test
+    public void testKeysKnownUpfrontAreJoinedWithPendingLookups() {
+        batcher.find("a").test();
+        TestObserver<String> pending = batcher.find("b").test();
+        batcher.findAll(Arrays.asList("b", "c")).test();
+
+        Assert.assertEquals(Arrays.asList(Collections.singletonList("a"), Arrays.asList("b", "c")), batches);
+        scheduler.advanceTimeBy(5, TimeUnit.MILLISECONDS);
+        pending.assertValue("b");
+    }
+}
@@ -0,0 +1,166 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.sql.SqlStatement;
+import com.slimgears.rxrepo.util.PropertyResolver;
+import com.slimgears.util.autovalue.annotations.MetaClass;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Observable;
+import io.reactivex.schedulers.Schedulers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.slimgears.rxrepo.jdbc.JdbcColumn.quote;
+import static com.slimgears.rxrepo.sql.StatementUtils.concat;
+
+// Changes of each table are appended to its change log table within the transaction of the write, with the encoded
+// old and new values. Each change log is tailed by a single poller, shared by all the live queries of the table
+class JdbcChangeLog {
+    private final static Logger log = LoggerFactory.getLogger(JdbcChangeLog.class);
+    private final static String sequenceColumn = "__seq";
+    private final static String oldValueColumn = "__old";
+    private final static String newValueColumn = "__new";
+    private final static String timeColumn = "__time";
+    private final JdbcSqlStatementExecutor statementExecutor;
+    private final Duration retention;
+    private final Duration minPollInterval;
+    private final Duration maxPollInterval;
+    private final int batchSize;
+    private final Map<MetaClass<?>, JdbcChangeLogPoller<?>> pollers = new ConcurrentHashMap<>();
+    private final Map<MetaClass<?>, AtomicLong> pruneTimes = new ConcurrentHashMap<>();
+
+    private JdbcChangeLog(JdbcSqlStatementExecutor statementExecutor,
+                          Duration retention,
+                          Duration minPollInterval,
+                          Duration maxPollInterval,
+                          int batchSize) {
+        this.statementExecutor = statementExecutor;
+        this.retention = retention;
+        this.minPollInterval = minPollInterval;
+        this.maxPollInterval = maxPollInterval;
+        this.batchSize = batchSize;
+    }
+
+    static JdbcChangeLog create(JdbcSqlStatementExecutor statementExecutor,
+                                Duration retention,
+                                Duration minPollInterval,
+                                Duration maxPollInterval,
+                                int batchSize) {
+        return new JdbcChangeLog(statementExecutor, retention, minPollInterval, maxPollInterval, batchSize);
+    }
+
+    @SuppressWarnings("unchecked")
+    <K, S> Observable<Notification<S>> notifications(MetaClassWithKey<K, S> metaClass) {
+        return ((JdbcChangeLogPoller<S>)pollers.computeIfAbsent(metaClass, mc -> JdbcChangeLogPoller.create(
+                metaClass,
+                statementExecutor,
+                Schedulers.io(),
+                minPollInterval,
+                maxPollInterval,
+                batchSize)))
+                .notifications();
+    }
+
+    // Pollers are woken up right away for the changes committed by this process, and entries older than
+    // the retention period are removed by the writers from time to time
+    void onCommitted(MetaClass<?> metaClass) {
+        Optional.ofNullable(pollers.get(metaClass)).ifPresent(JdbcChangeLogPoller::wake);
+        AtomicLong nextPruneTime = pruneTimes.computeIfAbsent(metaClass, mc -> new AtomicLong());
+        long now = System.currentTimeMillis();
+        long pruneTime = nextPruneTime.get();
+        if (now >= pruneTime && nextPruneTime.compareAndSet(pruneTime, now + retention.toMillis() / 2)) {
+            statementExecutor
+                    .executeCommand(forPrune(metaClass, new Timestamp(now - retention.toMillis())))
+                    .subscribeOn(Schedulers.io())
+                    .subscribe(
+                            () -> log.debug("Pruned change log of {}", metaClass.simpleName()),
+                            e -> log.warn("Could not prune change log of {}", metaClass.simpleName(), e));
+        }
+    }
+
+    static <T> List<String> createStatements(MetaClass<T> metaClass) {
+        return Arrays.asList(
+                concat(
+                        "create table if not exists",
+                        tableName(metaClass),
+                        "(" + quote(sequenceColumn) + " BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,",
+                        quote(oldValueColumn) + " BYTEA,",
+                        quote(newValueColumn) + " BYTEA,",
+                        quote(timeColumn) + " TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL)"),
+                concat(
+                        "create index if not exists",
+                        quote(metaClass.simpleName() + "__changes_time_idx"),
+                        "on",
+                        tableName(metaClass),
+                        "(" + quote(timeColumn) + ")"));
+    }
+
+    static <K, S> SqlStatement forAppend(MetaClassWithKey<K, S> metaClass, S oldValue, S newValue) {
+        return SqlStatement.create(
+                concat("insert into", tableName(metaClass), "(" + quote(oldValueColumn) + ", " + quote(newValueColumn) + ") values (?, ?)"),
+                JdbcValueCodec.encode(oldValue, metaClass.asType()),
+                JdbcValueCodec.encode(newValue, metaClass.asType()));
+    }
+
+    static <T> SqlStatement forRecentSequences(MetaClass<T> metaClass, int count) {
+        return SqlStatement.create(concat(
+                "select", quote(sequenceColumn),
+                "from", tableName(metaClass),
+                "order by", quote(sequenceColumn), "desc",
+                "limit " + count));
+    }
+
+    static <T> SqlStatement forRead(MetaClass<T> metaClass, long afterSequence, int count) {
+        return SqlStatement.create(concat(
+                "select * from", tableName(metaClass),
+                "where", quote(sequenceColumn), "> ?",
+                "order by", quote(sequenceColumn),
+                "limit " + count),
+                afterSequence);
+    }
+
+    // Ranges are given as inclusive bounds by lower bound
+    static <T> SqlStatement forSequenceRanges(MetaClass<T> metaClass, Map<Long, Long> ranges, int count) {
+        return SqlStatement.create(concat(
+                "select * from", tableName(metaClass),
+                "where", ranges.keySet().stream()
+                        .map(from -> quote(sequenceColumn) + " between ? and ?")
+                        .collect(Collectors.joining(" or ", "(", ")")),
+                "order by", quote(sequenceColumn),
+                "limit " + count),
+                ranges.entrySet().stream()
+                        .flatMap(range -> Stream.of(range.getKey(), range.getValue()))
+                        .toArray());
+    }
+
+    static long sequenceOf(PropertyResolver row) {
+        return (Long)row.getProperty(sequenceColumn, Long.class);
+    }
+
+    static <S> Notification<S> toNotification(MetaClass<S> metaClass, PropertyResolver row) {
+        return Notification.ofModified(
+                JdbcValueCodec.decode((byte[])row.getProperty(oldValueColumn, byte[].class), metaClass.asType()),
+                JdbcValueCodec.decode((byte[])row.getProperty(newValueColumn, byte[].class), metaClass.asType()));
+    }
+
+    private static <T> SqlStatement forPrune(MetaClass<T> metaClass, Timestamp before) {
+        return SqlStatement.create(
+                concat("delete from", tableName(metaClass), "where", quote(timeColumn), "< ?"),
+                before);
+    }
+
+    private static <T> String tableName(MetaClass<T> metaClass) {
+        return quote(metaClass.simpleName() + "__changes");
+    }
+}
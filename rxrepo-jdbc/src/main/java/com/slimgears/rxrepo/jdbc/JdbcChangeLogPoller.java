@@ -0,0 +1,279 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.sql.SqlStatement;
+import com.slimgears.rxrepo.util.PropertyResolver;
+import com.slimgears.util.autovalue.annotations.MetaClass;
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.Scheduler;
+import io.reactivex.exceptions.MissingBackpressureException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+// Reads the change log of a table in batches ordered by sequence number, while it has subscribers.
+// Sequence numbers are allocated when a change is written but become visible when its transaction commits,
+// so the gaps behind the read position are polled again until they show up. A gap which does not show up in time
+// is reported as an error, so that live queries resubscribe and resync rather than silently miss changes.
+// Polling interval doubles while the log is idle, and drops back once changes arrive
+class JdbcChangeLogPoller<S> {
+    private final static Logger log = LoggerFactory.getLogger(JdbcChangeLogPoller.class);
+    private final static Duration defaultGapTimeout = Duration.ofSeconds(30);
+    private final MetaClass<S> metaClass;
+    private final JdbcSqlStatementExecutor statementExecutor;
+    private final Scheduler scheduler;
+    private final long minPollIntervalMillis;
+    private final long maxPollIntervalMillis;
+    private final int batchSize;
+    private final long gapTimeoutMillis;
+    private final AtomicReference<Tail> activeTail = new AtomicReference<>();
+    private final Observable<Notification<S>> notifications;
+
+    private JdbcChangeLogPoller(MetaClass<S> metaClass,
+                                JdbcSqlStatementExecutor statementExecutor,
+                                Scheduler scheduler,
+                                Duration minPollInterval,
+                                Duration maxPollInterval,
+                                int batchSize,
+                                Duration gapTimeout) {
+        this.metaClass = metaClass;
+        this.statementExecutor = statementExecutor;
+        this.scheduler = scheduler;
+        this.minPollIntervalMillis = minPollInterval.toMillis();
+        this.maxPollIntervalMillis = Math.max(minPollIntervalMillis, maxPollInterval.toMillis());
+        this.batchSize = batchSize;
+        this.gapTimeoutMillis = gapTimeout.toMillis();
+        this.notifications = Observable.<Notification<S>>create(emitter -> {
+            Tail tail = new Tail(emitter);
+            emitter.setCancellable(() -> {
+                activeTail.compareAndSet(tail, null);
+                tail.stop();
+            });
+            tail.start();
+            activeTail.set(tail);
+        }).share();
+    }
+
+    static <S> JdbcChangeLogPoller<S> create(MetaClass<S> metaClass,
+                                             JdbcSqlStatementExecutor statementExecutor,
+                                             Scheduler scheduler,
+                                             Duration minPollInterval,
+                                             Duration maxPollInterval,
+                                             int batchSize) {
+        return create(metaClass, statementExecutor, scheduler, minPollInterval, maxPollInterval, batchSize, defaultGapTimeout);
+    }
+
+    static <S> JdbcChangeLogPoller<S> create(MetaClass<S> metaClass,
+                                             JdbcSqlStatementExecutor statementExecutor,
+                                             Scheduler scheduler,
+                                             Duration minPollInterval,
+                                             Duration maxPollInterval,
+                                             int batchSize,
+                                             Duration gapTimeout) {
+        return new JdbcChangeLogPoller<>(metaClass, statementExecutor, scheduler, minPollInterval, maxPollInterval, batchSize, gapTimeout);
+    }
+
+    Observable<Notification<S>> notifications() {
+        return notifications;
+    }
+
+    void wake() {
+        Optional.ofNullable(activeTail.get()).ifPresent(Tail::wake);
+    }
+
+    private List<PropertyResolver> read(SqlStatement statement) {
+        return statementExecutor.executeQuery(statement).toList().blockingGet();
+    }
+
+    private class Tail {
+        private final ObservableEmitter<Notification<S>> emitter;
+        private final Scheduler.Worker worker = scheduler.createWorker();
+        private final TreeMap<Long, Gap> gaps = new TreeMap<>();
+        private long position;
+        private long intervalMillis = minPollIntervalMillis;
+        private boolean polling;
+        private boolean wakeRequested;
+        private boolean stopped;
+        private long generation;
+
+        private Tail(ObservableEmitter<Notification<S>> emitter) {
+            this.emitter = emitter;
+        }
+
+        // Position is read synchronously, so every change committed after subscription is delivered.
+        // Gaps between the recent entries may be left by transactions rolled back before subscription,
+        // so they are polled as well, but given up without an error
+        private void start() {
+            List<Long> sequences = read(JdbcChangeLog.forRecentSequences(metaClass, batchSize))
+                    .stream()
+                    .map(JdbcChangeLog::sequenceOf)
+                    .sorted()
+                    .collect(Collectors.toList());
+            sequences.stream().findFirst().ifPresent(first -> position = first);
+            sequences.forEach(sequence -> advanceTo(sequence, false));
+            schedule(intervalMillis);
+        }
+
+        private synchronized void wake() {
+            if (stopped) {
+                return;
+            }
+            if (polling) {
+                wakeRequested = true;
+                return;
+            }
+            schedulePoll(0);
+        }
+
+        // Worker is not disposed while polling, so that the running statement is not interrupted
+        private synchronized void stop() {
+            stopped = true;
+            if (!polling) {
+                worker.dispose();
+            }
+        }
+
+        private synchronized void schedule(long delayMillis) {
+            polling = false;
+            if (stopped) {
+                worker.dispose();
+                return;
+            }
+            schedulePoll(wakeRequested ? 0 : delayMillis);
+            wakeRequested = false;
+        }
+
+        // Polls scheduled before a wake-up are superseded by the one scheduled by it
+        private void schedulePoll(long delayMillis) {
+            long pollGeneration = ++generation;
+            worker.schedule(() -> poll(pollGeneration), delayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        private void poll(long pollGeneration) {
+            synchronized (this) {
+                if (stopped || pollGeneration != generation) {
+                    return;
+                }
+                polling = true;
+            }
+            try {
+                intervalMillis = readChanges();
+            } catch (Exception e) {
+                log.warn("Could not read change log of {}", metaClass.simpleName(), e);
+                intervalMillis = maxPollIntervalMillis;
+            }
+            schedule(intervalMillis);
+        }
+
+        // Missing entries are read after the next batch, so a change committed before any of the batch is not skipped,
+        // and changes are emitted in sequence order, which is the commit order of the changes of each entity
+        private long readChanges() {
+            List<PropertyResolver> rows = read(JdbcChangeLog.forRead(metaClass, position, batchSize));
+            Map<Long, Long> missingRanges = new LinkedHashMap<>();
+            gaps.values().stream().limit(batchSize).forEach(gap -> missingRanges.put(gap.from, gap.to));
+            List<PropertyResolver> missingRows = missingRanges.isEmpty()
+                    ? Collections.emptyList()
+                    : read(JdbcChangeLog.forSequenceRanges(metaClass, missingRanges, batchSize));
+
+            TreeMap<Long, PropertyResolver> changes = new TreeMap<>();
+            missingRows.forEach(row -> {
+                long sequence = JdbcChangeLog.sequenceOf(row);
+                fill(sequence);
+                changes.put(sequence, row);
+            });
+            rows.forEach(row -> {
+                long sequence = JdbcChangeLog.sequenceOf(row);
+                advanceTo(sequence, true);
+                changes.put(sequence, row);
+            });
+
+            changes.forEach(this::emit);
+            expireGaps();
+
+            if (rows.size() >= batchSize || missingRows.size() >= batchSize) {
+                return 0;
+            }
+            return changes.isEmpty()
+                    ? Math.min(maxPollIntervalMillis, Math.max(minPollIntervalMillis, intervalMillis * 2))
+                    : minPollIntervalMillis;
+        }
+
+        // Gaps are kept as ranges, so a large transaction in flight costs a single entry
+        private void advanceTo(long sequence, boolean afterSubscription) {
+            if (sequence > position + 1) {
+                gaps.put(position + 1, new Gap(position + 1, sequence - 1, System.currentTimeMillis() + gapTimeoutMillis, afterSubscription));
+            }
+            position = Math.max(position, sequence);
+        }
+
+        private void fill(long sequence) {
+            Optional.ofNullable(gaps.floorEntry(sequence))
+                    .map(Map.Entry::getValue)
+                    .filter(gap -> gap.to >= sequence)
+                    .ifPresent(gap -> {
+                        gaps.remove(gap.from);
+                        if (sequence > gap.from) {
+                            gaps.put(gap.from, new Gap(gap.from, sequence - 1, gap.deadline, gap.afterSubscription));
+                        }
+                        if (sequence < gap.to) {
+                            gaps.put(sequence + 1, new Gap(sequence + 1, gap.to, gap.deadline, gap.afterSubscription));
+                        }
+                    });
+        }
+
+        private void expireGaps() {
+            long now = System.currentTimeMillis();
+            List<Gap> expired = gaps.values().stream()
+                    .filter(gap -> gap.deadline <= now)
+                    .collect(Collectors.toList());
+            expired.forEach(gap -> gaps.remove(gap.from));
+            expired.stream()
+                    .filter(gap -> !gap.afterSubscription)
+                    .forEach(gap -> log.debug("Giving up gap {}..{} in change log of {}, which precedes subscription", gap.from, gap.to, metaClass.simpleName()));
+            expired.stream()
+                    .filter(gap -> gap.afterSubscription)
+                    .findFirst()
+                    .ifPresent(gap -> emitter.tryOnError(new MissingBackpressureException(
+                            "Changes " + gap.from + ".." + gap.to + " of " + metaClass.simpleName() +
+                                    " did not show up in change log in time; resubscribe to resync")));
+        }
+
+        private void emit(long sequence, PropertyResolver row) {
+            Notification<S> notification;
+            try {
+                notification = JdbcChangeLog.toNotification(metaClass, row);
+            } catch (RuntimeException e) {
+                log.warn("Could not decode change {} of {}", sequence, metaClass.simpleName(), e);
+                return;
+            }
+            if (!emitter.isDisposed()) {
+                emitter.onNext(notification);
+            }
+        }
+    }
+
+    private static class Gap {
+        private final long from;
+        private final long to;
+        private final long deadline;
+        private final boolean afterSubscription;
+
+        private Gap(long from, long to, long deadline, boolean afterSubscription) {
+            this.from = from;
+            this.to = to;
+            this.deadline = deadline;
+            this.afterSubscription = afterSubscription;
+        }
+    }
+}
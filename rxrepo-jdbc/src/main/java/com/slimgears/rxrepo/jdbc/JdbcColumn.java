@@ -0,0 +1,179 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.util.PropertyMetas;
+import com.slimgears.util.autovalue.annotations.MetaClass;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.MetaClasses;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+import com.slimgears.util.stream.Streams;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Properties are flattened into columns: embedded objects contribute a column per nested property
+// ("vendor.id.areaId"), references contribute the columns of the referenced key ("inventory.id.id").
+// Values that cannot be flattened are stored encoded in a binary column
+class JdbcColumn {
+    static final String versionColumn = "__version";
+
+    private final static Map<MetaClass<?>, List<JdbcColumn>> columnsByMetaClass = new ConcurrentHashMap<>();
+    private final static Map<Class<?>, SqlType> sqlTypesByClass = ImmutableMap.<Class<?>, SqlType>builder()
+            .put(Integer.class, new SqlType(Types.INTEGER, "INTEGER"))
+            .put(int.class, new SqlType(Types.INTEGER, "INTEGER"))
+            .put(Long.class, new SqlType(Types.BIGINT, "BIGINT"))
+            .put(long.class, new SqlType(Types.BIGINT, "BIGINT"))
+            .put(Short.class, new SqlType(Types.SMALLINT, "SMALLINT"))
+            .put(short.class, new SqlType(Types.SMALLINT, "SMALLINT"))
+            .put(Byte.class, new SqlType(Types.SMALLINT, "SMALLINT"))
+            .put(byte.class, new SqlType(Types.SMALLINT, "SMALLINT"))
+            .put(Double.class, new SqlType(Types.DOUBLE, "DOUBLE PRECISION"))
+            .put(double.class, new SqlType(Types.DOUBLE, "DOUBLE PRECISION"))
+            .put(Float.class, new SqlType(Types.REAL, "REAL"))
+            .put(float.class, new SqlType(Types.REAL, "REAL"))
+            .put(Boolean.class, new SqlType(Types.BOOLEAN, "BOOLEAN"))
+            .put(boolean.class, new SqlType(Types.BOOLEAN, "BOOLEAN"))
+            .put(String.class, new SqlType(Types.VARCHAR, "VARCHAR"))
+            .put(BigDecimal.class, new SqlType(Types.NUMERIC, "NUMERIC"))
+            .put(Date.class, new SqlType(Types.TIMESTAMP, "TIMESTAMP"))
+            .put(byte[].class, new SqlType(Types.VARBINARY, "BYTEA"))
+            .build();
+    private final static SqlType enumType = new SqlType(Types.VARCHAR, "VARCHAR");
+    private final static SqlType encodedType = new SqlType(Types.VARBINARY, "BYTEA");
+
+    private final String name;
+    private final SqlType sqlType;
+    private final TypeToken<?> type;
+    private final Function<Object, Object> getter;
+
+    private static class SqlType {
+        private final int type;
+        private final String name;
+
+        private SqlType(int type, String name) {
+            this.type = type;
+            this.name = name;
+        }
+    }
+
+    private JdbcColumn(String name, SqlType sqlType, TypeToken<?> type, Function<Object, Object> getter) {
+        this.name = name;
+        this.sqlType = sqlType;
+        this.type = type;
+        this.getter = getter;
+    }
+
+    String name() {
+        return name;
+    }
+
+    int sqlType() {
+        return sqlType.type;
+    }
+
+    String typeName() {
+        return sqlType.name;
+    }
+
+    boolean isEncoded() {
+        return sqlType == encodedType;
+    }
+
+    Object valueOf(Object obj) {
+        return toStorage(getter.apply(obj));
+    }
+
+    @SuppressWarnings("unchecked")
+    Object toStorage(Object value) {
+        if (value == null) {
+            return null;
+        } else if (isEncoded()) {
+            return JdbcValueCodec.encode(value, (TypeToken<Object>)type);
+        } else if (value instanceof Enum) {
+            return ((Enum<?>)value).name();
+        }
+        return value;
+    }
+
+    static String quote(String name) {
+        return "\"" + name.replace("\"", "\"\"") + "\"";
+    }
+
+    static List<JdbcColumn> forMetaClass(MetaClass<?> metaClass) {
+        return columnsByMetaClass.computeIfAbsent(metaClass, mc -> Streams
+                .fromIterable(mc.properties())
+                .flatMap(p -> forProperty(p.name(), p, new HashSet<>()).stream().map(c -> c.compose(obj -> getValue(p, obj))))
+                .collect(ImmutableList.toImmutableList()));
+    }
+
+    static List<JdbcColumn> keyColumns(MetaClassWithKey<?, ?> metaClass) {
+        return forProperty(metaClass.keyProperty().name(), metaClass.keyProperty());
+    }
+
+    // Columns of a property, with getters applied to the property value
+    static List<JdbcColumn> forProperty(String path, PropertyMeta<?, ?> propertyMeta) {
+        return forProperty(path, propertyMeta, new HashSet<>());
+    }
+
+    private static List<JdbcColumn> forProperty(String path, PropertyMeta<?, ?> propertyMeta, Set<TypeToken<?>> visitedTypes) {
+        if (PropertyMetas.isReference(propertyMeta)) {
+            return forReference(path, propertyMeta.type(), visitedTypes);
+        }
+        return forType(path, propertyMeta.type(), visitedTypes);
+    }
+
+    private static List<JdbcColumn> forReference(String path, TypeToken<?> type, Set<TypeToken<?>> visitedTypes) {
+        MetaClassWithKey<?, ?> metaClass = MetaClasses.forTokenWithKeyUnchecked(type);
+        PropertyMeta<?, ?> keyProperty = metaClass.keyProperty();
+        return forProperty(path + "." + keyProperty.name(), keyProperty, visitedTypes)
+                .stream()
+                .map(c -> c.compose(obj -> getValue(keyProperty, obj)))
+                .collect(Collectors.toList());
+    }
+
+    private static List<JdbcColumn> forType(String path, TypeToken<?> type, Set<TypeToken<?>> visitedTypes) {
+        if (PropertyMetas.isEmbedded(type) && visitedTypes.add(type)) {
+            try {
+                MetaClass<?> metaClass = MetaClasses.forTokenUnchecked(type);
+                return Streams
+                        .fromIterable(metaClass.properties())
+                        .flatMap(p -> forProperty(path + "." + p.name(), p, visitedTypes)
+                                .stream()
+                                .map(c -> c.compose(obj -> getValue(p, obj))))
+                        .collect(Collectors.toList());
+            } finally {
+                visitedTypes.remove(type);
+            }
+        }
+        return ImmutableList.of(new JdbcColumn(path, sqlTypeOf(type), type, Function.identity()));
+    }
+
+    private static SqlType sqlTypeOf(TypeToken<?> type) {
+        return Optional.ofNullable(sqlTypesByClass.get(type.getRawType()))
+                .orElseGet(() -> type.getRawType().isEnum() ? enumType : encodedType);
+    }
+
+    TypeToken<?> type() {
+        return type;
+    }
+
+    private JdbcColumn compose(Function<Object, Object> before) {
+        return new JdbcColumn(name, sqlType, type, obj -> obj != null ? getter.apply(before.apply(obj)) : null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object getValue(PropertyMeta<?, ?> propertyMeta, Object obj) {
+        return ((PropertyMeta<Object, Object>)propertyMeta).getValue(obj);
+    }
+}
@@ -0,0 +1,258 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Bounded pool of connections, each with its own cache of prepared statements.
+// Acquisition is reentrant per thread, so statements issued while a result set is being read
+// (e.g. loading of references) reuse the connection of the enclosing query instead of taking another one
+public class JdbcConnectionPool implements AutoCloseable {
+    private final static Logger log = LoggerFactory.getLogger(JdbcConnectionPool.class);
+    private final Callable<Connection> connectionFactory;
+    private final Semaphore permits;
+    private final Duration acquireTimeout;
+    private final int statementCacheSize;
+    private final Deque<PooledConnection> idleConnections = new ConcurrentLinkedDeque<>();
+    private final List<PooledConnection> allConnections = new ArrayList<>();
+    private final ThreadLocal<PooledConnection> currentConnection = new ThreadLocal<>();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private JdbcConnectionPool(Callable<Connection> connectionFactory, int maxSize, int statementCacheSize, Duration acquireTimeout) {
+        this.connectionFactory = connectionFactory;
+        this.permits = new Semaphore(maxSize, true);
+        this.statementCacheSize = statementCacheSize;
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    public static JdbcConnectionPool create(Callable<Connection> connectionFactory, int maxSize, int statementCacheSize, Duration acquireTimeout) {
+        return new JdbcConnectionPool(connectionFactory, maxSize, statementCacheSize, acquireTimeout);
+    }
+
+    // Connection bound to the current thread until the outermost lease is closed
+    public Lease acquire() throws SQLException {
+        PooledConnection connection = currentConnection.get();
+        if (connection != null) {
+            ++connection.holdCount;
+            return new Lease(connection, true);
+        }
+        connection = take();
+        connection.holdCount = 1;
+        currentConnection.set(connection);
+        return new Lease(connection, true);
+    }
+
+    // Connection that is not bound to the thread, for cursors that are read from arbitrary threads
+    public Lease acquireDetached() throws SQLException {
+        return new Lease(take(), false);
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        List<PooledConnection> connections;
+        synchronized (allConnections) {
+            connections = new ArrayList<>(allConnections);
+            allConnections.clear();
+        }
+        idleConnections.clear();
+        connections.forEach(PooledConnection::close);
+    }
+
+    private PooledConnection take() throws SQLException {
+        if (closed.get()) {
+            throw new SQLException("Connection pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out waiting for connection after " + acquireTimeout.toMillis() + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for connection", e);
+        }
+        try {
+            PooledConnection connection;
+            while ((connection = idleConnections.pollFirst()) != null) {
+                if (connection.isValid()) {
+                    return connection;
+                }
+                discard(connection);
+            }
+            return open();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PooledConnection open() throws SQLException {
+        try {
+            PooledConnection connection = new PooledConnection(connectionFactory.call(), statementCacheSize);
+            synchronized (allConnections) {
+                allConnections.add(connection);
+            }
+            log.debug("Opened connection ({} total)", allConnections.size());
+            return connection;
+        } catch (SQLException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SQLException(e);
+        }
+    }
+
+    private void release(PooledConnection connection) {
+        try {
+            if (closed.get() || connection.broken || !connection.reset()) {
+                discard(connection);
+            } else {
+                idleConnections.offerFirst(connection);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void discard(PooledConnection connection) {
+        synchronized (allConnections) {
+            allConnections.remove(connection);
+        }
+        connection.close();
+    }
+
+    public class Lease implements AutoCloseable {
+        private final PooledConnection connection;
+        private final boolean threadBound;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease(PooledConnection connection, boolean threadBound) {
+            this.connection = connection;
+            this.threadBound = threadBound;
+        }
+
+        public Connection connection() {
+            return connection.connection;
+        }
+
+        // The first lease of the connection owns the transaction
+        public boolean isOutermost() {
+            return !threadBound || connection.holdCount == 1;
+        }
+
+        // Statement is taken out of the cache while in use, so a nested use of the same statement prepares another one
+        public PreparedStatement prepareStatement(String sql) throws SQLException {
+            PreparedStatement statement = connection.statements.asMap().remove(sql);
+            if (statement == null || statement.isClosed()) {
+                statement = connection.connection.prepareStatement(sql);
+            }
+            return statement;
+        }
+
+        public void releaseStatement(String sql, PreparedStatement statement) {
+            try {
+                statement.clearParameters();
+                statement.clearBatch();
+                if (connection.statements.asMap().putIfAbsent(sql, statement) != null) {
+                    statement.close();
+                }
+            } catch (SQLException e) {
+                log.debug("Discarding statement: {}", sql, e);
+                closeQuietly(statement);
+            }
+        }
+
+        public void markBroken() {
+            connection.broken = true;
+        }
+
+        @Override
+        public void close() {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            if (threadBound && --connection.holdCount > 0) {
+                return;
+            }
+            if (threadBound) {
+                currentConnection.remove();
+            }
+            release(connection);
+        }
+    }
+
+    private static class PooledConnection {
+        private final Connection connection;
+        private final Cache<String, PreparedStatement> statements;
+        private int holdCount;
+        private volatile boolean broken;
+
+        private PooledConnection(Connection connection, int statementCacheSize) {
+            this.connection = connection;
+            this.statements = CacheBuilder.newBuilder()
+                    .maximumSize(statementCacheSize)
+                    .removalListener((RemovalListener<String, PreparedStatement>)notification -> {
+                        if (notification.wasEvicted()) {
+                            closeQuietly(notification.getValue());
+                        }
+                    })
+                    .build();
+        }
+
+        // Connections failing with connection errors are marked broken by the executor, so no round-trip is made here
+        private boolean isValid() {
+            try {
+                return !connection.isClosed();
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        private boolean reset() {
+            try {
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                return true;
+            } catch (SQLException e) {
+                log.debug("Could not reset connection", e);
+                return false;
+            }
+        }
+
+        private void close() {
+            statements.asMap().values().forEach(JdbcConnectionPool::closeQuietly);
+            statements.invalidateAll();
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                log.debug("Could not close connection", e);
+            }
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            log.trace("Could not close {}", closeable, e);
+        }
+    }
+}
@@ -2,11 +2,13 @@ package com.slimgears.rxrepo.jdbc;
 
 import com.slimgears.rxrepo.sql.SqlStatement;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -44,7 +46,15 @@ public class JdbcHelper {
         registerType(Types.NCHAR, PreparedStatement::setString, ResultSet::getString);
         registerType(Types.CHAR, PreparedStatement::setString, ResultSet::getString);
         registerType(Types.BLOB, PreparedStatement::setBytes, ResultSet::getBytes, byte[].class);
+        registerType(Types.BINARY, PreparedStatement::setBytes, ResultSet::getBytes);
+        registerType(Types.VARBINARY, PreparedStatement::setBytes, ResultSet::getBytes);
+        registerType(Types.LONGVARBINARY, PreparedStatement::setBytes, ResultSet::getBytes);
         registerType(Types.DATE, PreparedStatement::setDate, ResultSet::getDate, Date.class);
+        registerType(Types.TIMESTAMP, PreparedStatement::setTimestamp, ResultSet::getTimestamp, Timestamp.class);
+        registerType(Types.BOOLEAN, PreparedStatement::setBoolean, ResultSet::getBoolean, Boolean.class, boolean.class);
+        registerType(Types.BIT, PreparedStatement::setBoolean, ResultSet::getBoolean);
+        registerType(Types.NUMERIC, PreparedStatement::setBigDecimal, ResultSet::getBigDecimal, BigDecimal.class);
+        registerType(Types.DECIMAL, PreparedStatement::setBigDecimal, ResultSet::getBigDecimal);
     }
 
     @SafeVarargs
@@ -53,8 +63,14 @@ public class JdbcHelper {
         Arrays.asList(classes).forEach(cls -> paramSettersByClass.put(cls, setter));
     }
 
-    private static void setSerializedParam(PreparedStatement preparedStatement, int index, Object val) {
-        throw new RuntimeException("Type is not supported: " + val.getClass());
+    private static void setSerializedParam(PreparedStatement preparedStatement, int index, Object val) throws SQLException {
+        if (val instanceof Enum) {
+            preparedStatement.setString(index, ((Enum<?>)val).name());
+        } else if (val instanceof java.util.Date) {
+            preparedStatement.setTimestamp(index, new Timestamp(((java.util.Date)val).getTime()));
+        } else {
+            preparedStatement.setBytes(index, JdbcValueCodec.encode(val));
+        }
     }
 
     public static PreparedStatement prepareStatement(Connection connection, SqlStatement statement) {
@@ -72,9 +88,13 @@ public class JdbcHelper {
     }
 
     @SuppressWarnings("unchecked")
-    private static void setParams(PreparedStatement preparedStatement, Object[] params) throws SQLException {
+    static void setParams(PreparedStatement preparedStatement, Object[] params) throws SQLException {
         for (int i = 0; i < params.length; ++i) {
-            Object param = Optional.ofNullable(params[i]).orElse("NULL");
+            Object param = params[i];
+            if (param == null) {
+                preparedStatement.setNull(i + 1, Types.NULL);
+                continue;
+            }
             Class paramClass = param.getClass();
             ParamSetter<Object> setter = Optional
                     .ofNullable(paramSettersByClass.get(paramClass))
@@ -117,8 +137,9 @@ public class JdbcHelper {
 
     @SuppressWarnings("unchecked")
     public static <T> T getColumnValue(ResultSet resultSet, int columnType, int columnIndex) throws SQLException {
-        return (T)Optional.ofNullable(columnGettersByType.get(columnType))
-                .orElseThrow(() -> new RuntimeException("Not supported type: " + columnType))
+        Object value = Optional.<ColumnGetter<?>>ofNullable(columnGettersByType.get(columnType))
+                .orElse(ResultSet::getObject)
                 .getValue(resultSet, columnIndex);
+        return resultSet.wasNull() ? null : (T)value;
     }
 }
@@ -0,0 +1,230 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.util.PropertyMetas;
+import com.slimgears.rxrepo.util.PropertyResolver;
+import com.slimgears.util.autovalue.annotations.HasMetaClass;
+import com.slimgears.util.autovalue.annotations.HasMetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.MetaClass;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.MetaClasses;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+import com.slimgears.util.reflect.TypeTokens;
+import com.slimgears.util.stream.Streams;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Resolves properties from a row of flattened columns. Nested objects are resolved from the columns
+// prefixed with the property path, references are loaded by the key stored in the row
+class JdbcPropertyResolver implements PropertyResolver {
+    private final Map<String, Object> row;
+    private final String prefix;
+    private final ReferenceLoader referenceLoader;
+
+    interface ReferenceLoader {
+        <K, S> S load(MetaClassWithKey<K, S> metaClass, K key);
+    }
+
+    private JdbcPropertyResolver(Map<String, Object> row, String prefix, ReferenceLoader referenceLoader) {
+        this.row = row;
+        this.prefix = prefix;
+        this.referenceLoader = referenceLoader;
+    }
+
+    static PropertyResolver create(Map<String, Object> row, ReferenceLoader referenceLoader) {
+        return new JdbcPropertyResolver(row, "", referenceLoader);
+    }
+
+    @Override
+    public Iterable<String> propertyNames() {
+        return row.keySet()
+                .stream()
+                .filter(name -> name.startsWith(prefix))
+                .map(name -> name.substring(prefix.length()))
+                .filter(name -> !name.equals(JdbcColumn.versionColumn))
+                .map(name -> name.contains(".") ? name.substring(0, name.indexOf('.')) : name)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Object getProperty(String name, Class type) {
+        String column = columnName(prefix + name);
+        if (row.containsKey(column)) {
+            return toValue(row.get(column), TypeToken.of(type));
+        }
+        if (HasMetaClassWithKey.class.isAssignableFrom(type) && !hasEmbeddedColumns(column, type)) {
+            MetaClassWithKey<Object, Object> metaClass = MetaClasses.forTokenWithKeyUnchecked(TypeToken.of(type));
+            PropertyMeta<Object, Object> keyProperty = metaClass.keyProperty();
+            return Optional.ofNullable(nested(column).getProperty(keyProperty))
+                    .map(key -> referenceLoader.load(metaClass, key))
+                    .orElse(null);
+        }
+        if (HasMetaClass.class.isAssignableFrom(type)) {
+            return hasNonNullColumns(column + ".") ? nested(column) : null;
+        }
+        return null;
+    }
+
+    // Encoded values are decoded with the declared type of the property, as the raw class lacks element types
+    @SuppressWarnings("unchecked")
+    @Override
+    public <V> V getProperty(PropertyMeta<?, V> propertyMeta) {
+        Object value = getProperty(propertyMeta.name(), TypeTokens.asClass(propertyMeta.type()));
+        if (value instanceof EncodedValue) {
+            return (V)wrapObjects(((EncodedValue)value).toObject(propertyMeta.type()));
+        }
+        return (value instanceof PropertyResolver)
+                ? ((PropertyResolver)value).toObject(propertyMeta.type())
+                : (V)value;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T toObject(TypeToken<T> typeToken) {
+        Object value = PropertyResolver.super.toObject(typeToken);
+        return value instanceof EncodedValue
+                ? ((EncodedValue)value).toObject(typeToken)
+                : (T)value;
+    }
+
+    // Unquoted aliases (e.g. of aggregations) are case-folded by the database
+    private String columnName(String name) {
+        return row.containsKey(name)
+                ? name
+                : row.keySet().stream().filter(name::equalsIgnoreCase).findFirst().orElse(name);
+    }
+
+    private JdbcPropertyResolver nested(String column) {
+        return new JdbcPropertyResolver(row, column + ".", referenceLoader);
+    }
+
+    private boolean hasNonNullColumns(String columnPrefix) {
+        return row.entrySet()
+                .stream()
+                .anyMatch(entry -> entry.getKey().startsWith(columnPrefix) && entry.getValue() != null);
+    }
+
+    // Embedded entities are stored with all of their properties, references only with the key
+    private boolean hasEmbeddedColumns(String column, Class<?> type) {
+        MetaClassWithKey<?, ?> metaClass = MetaClasses.forTokenWithKeyUnchecked(TypeToken.of(type));
+        return Streams.fromIterable(metaClass.properties())
+                .filter(p -> !PropertyMetas.isKey(p))
+                .map(p -> column + "." + p.name())
+                .anyMatch(name -> row.keySet().stream().anyMatch(c -> c.equals(name) || c.startsWith(name + ".")));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object toValue(Object value, TypeToken<?> type) {
+        if (value == null) {
+            return null;
+        }
+        Class<?> rawType = type.getRawType();
+        if (value instanceof byte[] && rawType != byte[].class) {
+            return new EncodedValue((byte[])value);
+        } else if (rawType.isEnum() && value instanceof String) {
+            return Enum.valueOf((Class)rawType, (String)value);
+        } else if (value instanceof Date && rawType == Date.class) {
+            return new Date(((Date)value).getTime());
+        } else if (value instanceof Number && !rawType.isInstance(value)) {
+            return toNumber((Number)value, type.wrap().getRawType());
+        }
+        return value;
+    }
+
+    private static Object toNumber(Number value, Class<?> type) {
+        if (type == Integer.class) {
+            return value.intValue();
+        } else if (type == Long.class) {
+            return value.longValue();
+        } else if (type == Double.class) {
+            return value.doubleValue();
+        } else if (type == Float.class) {
+            return value.floatValue();
+        } else if (type == Short.class) {
+            return value.shortValue();
+        } else if (type == Byte.class) {
+            return value.byteValue();
+        } else if (type == BigDecimal.class) {
+            return new BigDecimal(value.toString());
+        }
+        return value;
+    }
+
+    // Collections of objects are expected to be represented by resolvers of their elements
+    @SuppressWarnings("unchecked")
+    private static Object wrapObjects(Object value) {
+        if (!(value instanceof Collection) || ((Collection<?>)value).stream().noneMatch(HasMetaClass.class::isInstance)) {
+            return value;
+        }
+        Stream<Object> elements = ((Collection<Object>)value).stream()
+                .map(element -> element instanceof HasMetaClass
+                        ? PropertyResolver.fromObject(((HasMetaClass<Object>)element).metaClass(), element)
+                        : element);
+        return value instanceof Set
+                ? elements.collect(ImmutableSet.toImmutableSet())
+                : elements.collect(ImmutableList.toImmutableList());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof JdbcPropertyResolver &&
+                Objects.equals(prefix, ((JdbcPropertyResolver)obj).prefix) &&
+                Objects.equals(row, ((JdbcPropertyResolver)obj).row);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(prefix, row);
+    }
+
+    @Override
+    public String toString() {
+        return row.entrySet()
+                .stream()
+                .filter(entry -> entry.getKey().startsWith(prefix))
+                .map(entry -> entry.getKey().substring(prefix.length()) + "=" + entry.getValue())
+                .collect(Collectors.joining(", ", "{", "}"));
+    }
+
+    // Encoded value is decoded once the caller provides the full type of the value
+    private static class EncodedValue implements PropertyResolver {
+        private final byte[] bytes;
+
+        private EncodedValue(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public Iterable<String> propertyNames() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Object getProperty(String name, Class type) {
+            return null;
+        }
+
+        @Override
+        public <T> T toObject(MetaClass<T> metaClass) {
+            return toObject(metaClass.asType());
+        }
+
+        @Override
+        public <T> T toObject(TypeToken<T> typeToken) {
+            return JdbcValueCodec.decode(bytes, typeToken);
+        }
+    }
+}
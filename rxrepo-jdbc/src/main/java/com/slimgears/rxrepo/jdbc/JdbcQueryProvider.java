@@ -0,0 +1,252 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.slimgears.rxrepo.expressions.BooleanExpression;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.expressions.PropertyExpression;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.Notifications;
+import com.slimgears.rxrepo.query.provider.DeleteInfo;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.UpdateInfo;
+import com.slimgears.rxrepo.sql.ReferenceResolver;
+import com.slimgears.rxrepo.sql.SqlQueryProvider;
+import com.slimgears.rxrepo.sql.SqlServiceFactory;
+import com.slimgears.rxrepo.sql.SqlStatement;
+import com.slimgears.rxrepo.util.Queries;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.functions.Function;
+
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Writes do not return the stored entities, and updates of existing entities are guarded by the stored row version.
+// Every write appends its changes to the change log of the table in the same transaction, and live queries tail the log
+public class JdbcQueryProvider extends SqlQueryProvider {
+    private final static int keyChunkSize = 1000;
+    private final JdbcSqlStatementProvider jdbcStatementProvider;
+    private final JdbcSqlStatementExecutor jdbcStatementExecutor;
+    private final JdbcSchemaProvider jdbcSchemaProvider;
+    private final JdbcChangeLog changeLog;
+    private final ReferenceResolver referenceResolver;
+    private final Completable shutdownSignal;
+
+    private JdbcQueryProvider(SqlServiceFactory serviceFactory,
+                              JdbcSqlStatementProvider statementProvider,
+                              JdbcSqlStatementExecutor statementExecutor,
+                              JdbcSchemaProvider schemaProvider,
+                              JdbcChangeLog changeLog) {
+        super(serviceFactory.statementProvider(),
+                serviceFactory.statementExecutor(),
+                serviceFactory.schemaProvider(),
+                serviceFactory.referenceResolver());
+        this.jdbcStatementProvider = statementProvider;
+        this.jdbcStatementExecutor = statementExecutor;
+        this.jdbcSchemaProvider = schemaProvider;
+        this.changeLog = changeLog;
+        this.referenceResolver = serviceFactory.referenceResolver();
+        this.shutdownSignal = serviceFactory.shutdownSignal();
+    }
+
+    static JdbcQueryProvider create(SqlServiceFactory serviceFactory,
+                                    JdbcSqlStatementProvider statementProvider,
+                                    JdbcSqlStatementExecutor statementExecutor,
+                                    JdbcSchemaProvider schemaProvider,
+                                    JdbcChangeLog changeLog) {
+        return new JdbcQueryProvider(serviceFactory, statementProvider, statementExecutor, schemaProvider, changeLog);
+    }
+
+    @Override
+    public <K, S> Completable insert(MetaClassWithKey<K, S> metaClass, Iterable<S> entities) {
+        return Optional
+                .of(entities)
+                .filter(e -> !Iterables.isEmpty(e))
+                .map(ImmutableList::copyOf)
+                .map(e -> schemaProvider.createOrUpdate(metaClass)
+                        .andThen(Completable.defer(() -> jdbcStatementExecutor.executeBatch(Stream.concat(
+                                e.stream().map(entity -> jdbcStatementProvider.forInsert(metaClass, entity, referenceResolver)),
+                                e.stream().map(entity -> JdbcChangeLog.forAppend(metaClass, null, entity)))
+                                .collect(ImmutableList.toImmutableList()))))
+                        .doOnComplete(() -> changeLog.onCommitted(metaClass)))
+                .orElseGet(Completable::complete);
+    }
+
+    // Stored entity is locked until the transaction is committed, so the logged old value is the one replaced
+    @Override
+    public <K, S> Single<S> insertOrUpdate(MetaClassWithKey<K, S> metaClass, S entity) {
+        return schemaProvider.createOrUpdate(metaClass)
+                .andThen(jdbcStatementExecutor.executeInTransaction(() -> {
+                    S oldEntity = queryEntities(metaClass, keyPredicateOf(metaClass, metaClass.keyOf(entity)), 1L, true)
+                            .stream()
+                            .findFirst()
+                            .orElse(null);
+                    if (!Objects.equals(oldEntity, entity)) {
+                        execute(ImmutableList.of(
+                                jdbcStatementProvider.forInsertOrUpdate(metaClass, entity, referenceResolver),
+                                JdbcChangeLog.forAppend(metaClass, oldEntity, entity)));
+                    }
+                    return entity;
+                }))
+                .doOnSuccess(e -> changeLog.onCommitted(metaClass));
+    }
+
+    // Entity is written only if it was not modified since it was read, otherwise the update is reported as
+    // a concurrent modification, so it can be retried with the fresh state
+    @Override
+    public <K, S> Maybe<S> insertOrUpdate(MetaClassWithKey<K, S> metaClass, K key, Function<Maybe<S>, Maybe<S>> entityUpdater) {
+        SqlStatement statement = jdbcStatementProvider.forQuery(QueryInfo
+                .<K, S, S>builder()
+                .metaClass(metaClass)
+                .predicate(keyPredicateOf(metaClass, key))
+                .limit(1L)
+                .build());
+
+        return schemaProvider.createOrUpdate(metaClass)
+                .andThen(jdbcStatementExecutor
+                        .executeQuery(statement)
+                        .map(Optional::of)
+                        .first(Optional.empty())
+                        .flatMapMaybe(row -> row
+                                .map(pr -> {
+                                    S oldObj = pr.toObject(metaClass);
+                                    Long version = (Long)pr.getProperty(JdbcColumn.versionColumn, Long.class);
+                                    return Maybe.defer(() -> entityUpdater.apply(Maybe.just(oldObj)))
+                                            .flatMap(newObj -> Objects.equals(oldObj, newObj)
+                                                    ? Maybe.just(newObj)
+                                                    : update(metaClass, oldObj, newObj, version));
+                                })
+                                .orElseGet(() -> Maybe.defer(() -> entityUpdater.apply(Maybe.<S>empty()))
+                                        .flatMap(e -> jdbcStatementExecutor
+                                                .executeBatch(ImmutableList.of(
+                                                        jdbcStatementProvider.forInsert(metaClass, e, referenceResolver),
+                                                        JdbcChangeLog.forAppend(metaClass, null, e)))
+                                                .doOnComplete(() -> changeLog.onCommitted(metaClass))
+                                                .andThen(Maybe.just(e))))));
+    }
+
+    // Affected entities are locked and updated by their keys, so that their new values can be logged
+    @Override
+    public <K, S> Single<Integer> update(UpdateInfo<K, S> update) {
+        MetaClassWithKey<K, S> metaClass = update.metaClass();
+        return schemaProvider.createOrUpdate(metaClass)
+                .andThen(jdbcStatementExecutor.executeInTransaction(() -> {
+                    int count = 0;
+                    for (List<S> oldEntities : Lists.partition(queryEntities(metaClass, update.predicate(), update.limit(), true), keyChunkSize)) {
+                        BooleanExpression<S> keyPredicate = keysPredicateOf(metaClass, oldEntities);
+                        count += jdbcStatementExecutor
+                                .executeCommandReturnCount(jdbcStatementProvider.forUpdate(update
+                                        .toBuilder()
+                                        .predicate(keyPredicate)
+                                        .limit(null)
+                                        .build()))
+                                .blockingGet();
+                        Map<K, S> newEntities = queryEntities(metaClass, keyPredicate, null, false)
+                                .stream()
+                                .collect(Collectors.toMap(metaClass::keyOf, e -> e));
+                        execute(oldEntities
+                                .stream()
+                                .map(oldEntity -> Notification.ofModified(oldEntity, newEntities.get(metaClass.keyOf(oldEntity))))
+                                .filter(n -> !Objects.equals(n.oldValue(), n.newValue()))
+                                .map(n -> JdbcChangeLog.forAppend(metaClass, n.oldValue(), n.newValue()))
+                                .collect(Collectors.toList()));
+                    }
+                    return count;
+                }))
+                .doOnSuccess(count -> changeLog.onCommitted(metaClass));
+    }
+
+    @Override
+    public <K, S> Single<Integer> delete(DeleteInfo<K, S> deleteInfo) {
+        MetaClassWithKey<K, S> metaClass = deleteInfo.metaClass();
+        return schemaProvider.createOrUpdate(metaClass)
+                .andThen(jdbcStatementExecutor.executeInTransaction(() -> {
+                    int count = 0;
+                    for (List<S> oldEntities : Lists.partition(queryEntities(metaClass, deleteInfo.predicate(), deleteInfo.limit(), true), keyChunkSize)) {
+                        count += jdbcStatementExecutor
+                                .executeCommandReturnCount(jdbcStatementProvider.forDelete(deleteInfo
+                                        .toBuilder()
+                                        .predicate(keysPredicateOf(metaClass, oldEntities))
+                                        .limit(null)
+                                        .build()))
+                                .blockingGet();
+                        execute(oldEntities
+                                .stream()
+                                .map(oldEntity -> JdbcChangeLog.forAppend(metaClass, oldEntity, null))
+                                .collect(Collectors.toList()));
+                    }
+                    return count;
+                }))
+                .doOnSuccess(count -> changeLog.onCommitted(metaClass));
+    }
+
+    @Override
+    public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
+        return schemaProvider.createOrUpdate(query.metaClass())
+                .andThen(changeLog.notifications(query.metaClass()))
+                .takeUntil(shutdownSignal.andThen(Observable.just(0)))
+                .compose(Notifications.applyQuery(query));
+    }
+
+    @Override
+    public <K, S> Completable drop(MetaClassWithKey<K, S> metaClass) {
+        return delete(DeleteInfo.<K, S>builder().metaClass(metaClass).build()).ignoreElement();
+    }
+
+    // Tables are cleared without logging the deletions
+    @Override
+    public Completable dropAll() {
+        return jdbcSchemaProvider.clear();
+    }
+
+    private <K, S> Maybe<S> update(MetaClassWithKey<K, S> metaClass, S oldEntity, S newEntity, Long version) {
+        return jdbcStatementExecutor
+                .executeInTransaction(() -> {
+                    int count = jdbcStatementExecutor
+                            .executeCommandReturnCount(jdbcStatementProvider.forUpdate(metaClass, newEntity, version))
+                            .blockingGet();
+                    if (count == 0) {
+                        throw new ConcurrentModificationException("Concurrent modification of " + metaClass.simpleName() + " detected");
+                    }
+                    execute(ImmutableList.of(JdbcChangeLog.forAppend(metaClass, oldEntity, newEntity)));
+                    return newEntity;
+                })
+                .doOnSuccess(e -> changeLog.onCommitted(metaClass))
+                .toMaybe();
+    }
+
+    private <K, S> List<S> queryEntities(MetaClassWithKey<K, S> metaClass, ObjectExpression<S, Boolean> predicate, Long limit, boolean forUpdate) {
+        SqlStatement statement = jdbcStatementProvider.forQuery(QueryInfo.<K, S, S>builder()
+                .metaClass(metaClass)
+                .predicate(predicate)
+                .limit(limit)
+                .build());
+        return jdbcStatementExecutor
+                .executeQuery(forUpdate ? SqlStatement.create(statement.statement() + " for update", statement.args()) : statement)
+                .map(pr -> pr.toObject(metaClass))
+                .toList()
+                .blockingGet();
+    }
+
+    private void execute(List<SqlStatement> statements) {
+        jdbcStatementExecutor.executeBatch(statements).blockingAwait();
+    }
+
+    private static <K, S> BooleanExpression<S> keyPredicateOf(MetaClassWithKey<K, S> metaClass, K key) {
+        return PropertyExpression.ofObject(metaClass.keyProperty()).eq(key);
+    }
+
+    private static <K, S> BooleanExpression<S> keysPredicateOf(MetaClassWithKey<K, S> metaClass, List<S> entities) {
+        return Queries.keyPredicateOf(metaClass, entities.stream().map(metaClass::keyOf).collect(Collectors.toList()));
+    }
+}
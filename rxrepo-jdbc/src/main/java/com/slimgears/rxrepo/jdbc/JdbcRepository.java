@@ -0,0 +1,160 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.query.RepositoryConfig;
+import com.slimgears.rxrepo.query.RepositoryConfigModelBuilder;
+import com.slimgears.rxrepo.query.decorator.LiveQueryProviderDecorator;
+import com.slimgears.rxrepo.query.decorator.UpdateReferencesFirstQueryProviderDecorator;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.sql.DefaultSqlAssignmentGenerator;
+import com.slimgears.rxrepo.sql.SqlServiceFactory;
+import io.reactivex.subjects.CompletableSubject;
+
+import javax.annotation.Nonnull;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+
+public class JdbcRepository {
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder implements RepositoryConfigModelBuilder<Builder> {
+        private String url;
+        private String user;
+        private String password;
+        private Callable<Connection> connectionFactory;
+        private int poolSize = 10;
+        private int statementCacheSize = 256;
+        private int fetchSize = 1000;
+        private Duration acquireTimeout = Duration.ofSeconds(30);
+        private Duration changeLogRetention = Duration.ofHours(1);
+        private Duration minPollInterval = Duration.ofMillis(10);
+        private Duration maxPollInterval = Duration.ofSeconds(1);
+        private int changeLogBatchSize = 1000;
+        private QueryProvider.Decorator decorator = QueryProvider.Decorator.identity();
+        private RepositoryConfig.Builder configBuilder = RepositoryConfig
+                .builder()
+                .retryCount(10)
+                .retryInitialDurationMillis(10)
+                .debounceTimeoutMillis(100);
+
+        public final Builder url(@Nonnull String url) {
+            this.url = url;
+            return this;
+        }
+
+        public final Builder user(@Nonnull String user) {
+            this.user = user;
+            return this;
+        }
+
+        public final Builder password(@Nonnull String password) {
+            this.password = password;
+            return this;
+        }
+
+        public final Builder connectionFactory(@Nonnull Callable<Connection> connectionFactory) {
+            this.connectionFactory = connectionFactory;
+            return this;
+        }
+
+        public final Builder poolSize(int poolSize) {
+            this.poolSize = poolSize;
+            return this;
+        }
+
+        public final Builder statementCacheSize(int statementCacheSize) {
+            this.statementCacheSize = statementCacheSize;
+            return this;
+        }
+
+        public final Builder fetchSize(int fetchSize) {
+            this.fetchSize = fetchSize;
+            return this;
+        }
+
+        public final Builder acquireTimeout(@Nonnull Duration acquireTimeout) {
+            this.acquireTimeout = acquireTimeout;
+            return this;
+        }
+
+        public final Builder changeLogRetention(@Nonnull Duration changeLogRetention) {
+            this.changeLogRetention = changeLogRetention;
+            return this;
+        }
+
+        public final Builder pollInterval(@Nonnull Duration minPollInterval, @Nonnull Duration maxPollInterval) {
+            this.minPollInterval = minPollInterval;
+            this.maxPollInterval = maxPollInterval;
+            return this;
+        }
+
+        public final Builder changeLogBatchSize(int changeLogBatchSize) {
+            this.changeLogBatchSize = changeLogBatchSize;
+            return this;
+        }
+
+        public final Builder decorate(@Nonnull QueryProvider.Decorator... decorators) {
+            this.decorator = this.decorator.andThen(QueryProvider.Decorator.of(decorators));
+            return this;
+        }
+
+        public final Repository build() {
+            Callable<Connection> connectionFactory = this.connectionFactory != null
+                    ? this.connectionFactory
+                    : () -> DriverManager.getConnection(Objects.requireNonNull(url), user, password);
+
+            JdbcConnectionPool connectionPool = JdbcConnectionPool.create(connectionFactory, poolSize, statementCacheSize, acquireTimeout);
+            JdbcSchemaProvider schemaProvider = JdbcSchemaProvider.create(connectionPool);
+            JdbcSqlExpressionGenerator expressionGenerator = new JdbcSqlExpressionGenerator(schemaProvider);
+            JdbcSqlStatementProvider statementProvider = new JdbcSqlStatementProvider(
+                    expressionGenerator,
+                    new DefaultSqlAssignmentGenerator(expressionGenerator),
+                    schemaProvider);
+            JdbcSqlStatementExecutor statementExecutor = JdbcSqlStatementExecutor.create(connectionPool, statementProvider, fetchSize);
+            JdbcChangeLog changeLog = JdbcChangeLog.create(statementExecutor, changeLogRetention, minPollInterval, maxPollInterval, changeLogBatchSize);
+            CompletableSubject shutdownSubject = CompletableSubject.create();
+
+            return SqlServiceFactory.builder()
+                    .schemaProvider(svc -> schemaProvider)
+                    .expressionGenerator(svc -> expressionGenerator)
+                    .assignmentGenerator(svc -> new DefaultSqlAssignmentGenerator(svc.expressionGenerator()))
+                    .statementProvider(svc -> statementProvider)
+                    .statementExecutor(svc -> statementExecutor)
+                    .referenceResolver(svc -> new JdbcReferenceResolver(svc.statementProvider()))
+                    .queryProviderGenerator(svc -> JdbcQueryProvider.create(svc, statementProvider, statementExecutor, schemaProvider, changeLog))
+                    .shutdownSignal(shutdownSubject)
+                    .decorate(
+                            LiveQueryProviderDecorator.create(),
+                            UpdateReferencesFirstQueryProviderDecorator.create(),
+                            decorator)
+                    .buildRepository(configBuilder.build())
+                    .onClose(repo -> {
+                        shutdownSubject.onComplete();
+                        connectionPool.close();
+                    });
+        }
+
+        @Override
+        public Builder retryCount(int value) {
+            configBuilder.retryCount(value);
+            return this;
+        }
+
+        @Override
+        public Builder debounceTimeoutMillis(int value) {
+            configBuilder.debounceTimeoutMillis(value);
+            return this;
+        }
+
+        @Override
+        public Builder retryInitialDurationMillis(int value) {
+            configBuilder.retryInitialDurationMillis(value);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.slimgears.rxrepo.annotations.Indexable;
+import com.slimgears.rxrepo.sql.SchemaProvider;
+import com.slimgears.util.autovalue.annotations.Key;
+import com.slimgears.util.autovalue.annotations.MetaClass;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+import com.slimgears.util.stream.Streams;
+import io.reactivex.Completable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.slimgears.rxrepo.jdbc.JdbcColumn.quote;
+import static com.slimgears.rxrepo.sql.StatementUtils.concat;
+
+// Each entity is stored in a table named after its class, with the flattened columns of its properties,
+// the stored version of the row, and the key columns as the primary key. Tables of entities have a change log table
+public class JdbcSchemaProvider implements SchemaProvider {
+    private final static Logger log = LoggerFactory.getLogger(JdbcSchemaProvider.class);
+    private final JdbcConnectionPool connectionPool;
+
+    private JdbcSchemaProvider(JdbcConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+
+    public static JdbcSchemaProvider create(JdbcConnectionPool connectionPool) {
+        return new JdbcSchemaProvider(connectionPool);
+    }
+
+    @Override
+    public String databaseName() {
+        try (JdbcConnectionPool.Lease lease = connectionPool.acquire()) {
+            return lease.connection().getCatalog();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public <T> Completable createOrUpdate(MetaClass<T> metaClass) {
+        return Completable.fromAction(() -> execute(Stream.of(
+                Stream.of(createTableStatement(metaClass)),
+                JdbcColumn.forMetaClass(metaClass).stream().map(c -> addColumnStatement(metaClass, c)),
+                indexStatements(metaClass),
+                changeLogStatements(metaClass))
+                .flatMap(s -> s)
+                .collect(Collectors.toList())));
+    }
+
+    @Override
+    public <T> String tableName(MetaClass<T> metaClass) {
+        return quote(metaClass.simpleName());
+    }
+
+    // Rows of all the tables created by the repository (recognized by the version column) are deleted
+    public Completable clear() {
+        return Completable.fromAction(() -> {
+            List<String> tables = new ArrayList<>();
+            try (JdbcConnectionPool.Lease lease = connectionPool.acquire();
+                 ResultSet resultSet = lease.connection().getMetaData().getColumns(null, null, "%", JdbcColumn.versionColumn)) {
+                while (resultSet.next()) {
+                    if (!JdbcColumn.versionColumn.equals(resultSet.getString("COLUMN_NAME"))) {
+                        continue;
+                    }
+                    String schema = resultSet.getString("TABLE_SCHEM");
+                    String table = quote(resultSet.getString("TABLE_NAME"));
+                    tables.add(schema != null ? quote(schema) + "." + table : table);
+                }
+            }
+            execute(tables.stream().distinct().map(table -> "delete from " + table).collect(Collectors.toList()));
+        });
+    }
+
+    private void execute(List<String> statements) throws SQLException {
+        try (JdbcConnectionPool.Lease lease = connectionPool.acquire();
+             Statement statement = lease.connection().createStatement()) {
+            for (String sql : statements) {
+                log.debug("Executing: {}", sql);
+                statement.execute(sql);
+            }
+        }
+    }
+
+    private <T> String createTableStatement(MetaClass<T> metaClass) {
+        Stream<String> columns = Stream.concat(
+                JdbcColumn.forMetaClass(metaClass).stream().map(JdbcSchemaProvider::toColumnDefinition),
+                Stream.of(quote(JdbcColumn.versionColumn) + " BIGINT DEFAULT 0 NOT NULL"));
+        Stream<String> primaryKey = metaClass instanceof MetaClassWithKey
+                ? Stream.of("primary key " + toColumnList(JdbcColumn.keyColumns((MetaClassWithKey<?, ?>)metaClass).stream()))
+                : Stream.empty();
+        return concat(
+                "create table if not exists",
+                tableName(metaClass),
+                Stream.concat(columns, primaryKey).collect(Collectors.joining(", ", "(", ")")));
+    }
+
+    private <T> String addColumnStatement(MetaClass<T> metaClass, JdbcColumn column) {
+        return concat("alter table", tableName(metaClass), "add column if not exists", toColumnDefinition(column));
+    }
+
+    private <T> Stream<String> indexStatements(MetaClass<T> metaClass) {
+        return Streams.fromIterable(metaClass.properties())
+                .filter(p -> p.hasAnnotation(Indexable.class) && !p.hasAnnotation(Key.class))
+                .map(p -> indexStatement(metaClass, p));
+    }
+
+    private <T> String indexStatement(MetaClass<T> metaClass, PropertyMeta<T, ?> propertyMeta) {
+        return concat(
+                propertyMeta.getAnnotation(Indexable.class).unique() ? "create unique index" : "create index",
+                "if not exists",
+                quote(metaClass.simpleName() + "_" + propertyMeta.name() + "_idx"),
+                "on",
+                tableName(metaClass),
+                toColumnList(JdbcColumn.forProperty(propertyMeta.name(), propertyMeta).stream()));
+    }
+
+    private <T> Stream<String> changeLogStatements(MetaClass<T> metaClass) {
+        return metaClass instanceof MetaClassWithKey
+                ? JdbcChangeLog.createStatements(metaClass).stream()
+                : Stream.empty();
+    }
+
+    private static String toColumnDefinition(JdbcColumn column) {
+        return quote(column.name()) + " " + column.typeName();
+    }
+
+    private static String toColumnList(Stream<JdbcColumn> columns) {
+        return columns.map(c -> quote(c.name())).collect(Collectors.joining(", ", "(", ")"));
+    }
+}
@@ -0,0 +1,254 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Strings;
+import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.annotations.Searchable;
+import com.slimgears.rxrepo.expressions.ConstantExpression;
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.expressions.PropertyExpression;
+import com.slimgears.rxrepo.expressions.internal.BooleanBinaryOperationExpression;
+import com.slimgears.rxrepo.sql.DefaultSqlExpressionGenerator;
+import com.slimgears.rxrepo.sql.SchemaProvider;
+import com.slimgears.rxrepo.util.ExpressionTextGenerator;
+import com.slimgears.rxrepo.util.PropertyMetas;
+import com.slimgears.util.autovalue.annotations.HasMetaClass;
+import com.slimgears.util.autovalue.annotations.HasMetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.MetaClass;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.MetaClasses;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+import com.slimgears.util.stream.Streams;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.slimgears.rxrepo.jdbc.JdbcColumn.quote;
+
+// Properties of the queried entity are mapped to its flattened columns. Properties of referenced entities
+// are resolved with correlated sub-queries on the referenced table, joined by the stored key columns
+public class JdbcSqlExpressionGenerator extends DefaultSqlExpressionGenerator {
+    private final static CharMatcher wildcardMatcher = CharMatcher.anyOf("*");
+    private final SchemaProvider schemaProvider;
+    private final ExpressionTextGenerator.Interceptor interceptor = ExpressionTextGenerator.Interceptor.builder()
+            .intercept(Expression.OperationType.Property, ExpressionTextGenerator.Interceptor.ofType(PropertyExpression.class, this::onVisitProperty))
+            .intercept(Expression.Type.SearchText, ExpressionTextGenerator.Interceptor.ofType(BooleanBinaryOperationExpression.class, this::onVisitSearchText))
+            .build();
+
+    static class SelectedColumn {
+        private final String expression;
+        private final String alias;
+
+        private SelectedColumn(String expression, String alias) {
+            this.expression = expression;
+            this.alias = alias;
+        }
+
+        String expression() {
+            return expression;
+        }
+
+        String alias() {
+            return alias;
+        }
+    }
+
+    // Value that is already converted to the representation of its column
+    static class ColumnValue {
+        private final Object value;
+
+        private ColumnValue(Object value) {
+            this.value = value;
+        }
+
+        static ColumnValue of(Object value) {
+            return new ColumnValue(value);
+        }
+    }
+
+    public JdbcSqlExpressionGenerator(SchemaProvider schemaProvider) {
+        this.schemaProvider = schemaProvider;
+    }
+
+    @Override
+    protected ExpressionTextGenerator.Builder createBuilder() {
+        return super.createBuilder()
+                .add(Expression.Type.Contains, "(%s like '%%' || %s || '%%')")
+                .add(Expression.Type.StartsWith, "(%s like %s || '%%')")
+                .add(Expression.Type.EndsWith, "(%s like '%%' || %s)")
+                .add(Expression.Type.Matches, "REGEXP_LIKE(%s, '^(?:' || %s || ')$')")
+                .add(Expression.Type.Length, "LENGTH(%s)")
+                .add(Expression.Type.Concat, "(%s || %s)")
+                .add(Expression.Type.AsString, "CAST(%s AS VARCHAR)")
+                .add(Expression.Type.Average, "AVG(CAST(%s AS DOUBLE PRECISION))")
+                .add(Expression.Type.Count, ExpressionTextGenerator.Reducer.fromUnary(arg -> arg.isEmpty() ? "COUNT(*)" : "COUNT(" + arg + ")"))
+                .add(Expression.OperationType.Property, this::reduceProperty);
+    }
+
+    @Override
+    protected ExpressionTextGenerator.Interceptor createInterceptor() {
+        return interceptor;
+    }
+
+    // Entities are compared by their keys, embedded objects by all of their columns
+    @Override
+    protected String toParam(Object value, List<Object> params) {
+        if (value instanceof ColumnValue) {
+            return super.toParam(((ColumnValue)value).value, params);
+        } else if (value instanceof Collection) {
+            return ((Collection<?>)value).isEmpty()
+                    ? "null"
+                    : ((Collection<?>)value).stream().map(v -> toParam(v, params)).collect(Collectors.joining(", "));
+        } else if (value instanceof HasMetaClassWithKey) {
+            HasMetaClassWithKey<?, ?> entity = (HasMetaClassWithKey<?, ?>)value;
+            return toParam(keyOf(entity.metaClass(), entity), params);
+        } else if (value instanceof HasMetaClass) {
+            return toRow(JdbcColumn.forMetaClass(((HasMetaClass<?>)value).metaClass())
+                    .stream()
+                    .map(column -> super.toParam(column.valueOf(value), params))
+                    .collect(Collectors.toList()));
+        }
+        return super.toParam(value, params);
+    }
+
+    // Columns of a property expression rooted at the queried entity, aliased by the property path
+    Optional<List<SelectedColumn>> columnsOf(ObjectExpression<?, ?> expression) {
+        LinkedList<PropertyMeta<?, ?>> path = new LinkedList<>();
+        ObjectExpression<?, ?> current = expression;
+        while (current instanceof PropertyExpression) {
+            PropertyExpression<?, ?, ?> propertyExpression = (PropertyExpression<?, ?, ?>)current;
+            path.addFirst(propertyExpression.property());
+            current = propertyExpression.target();
+        }
+        if (path.isEmpty() || current.type().operationType() != Expression.OperationType.Argument) {
+            return Optional.empty();
+        }
+        String tableName = schemaProvider.tableName(path.getFirst().declaringType());
+        return Optional.of(resolveColumns(new ArrayList<>(path), 0, "", "", null, tableName, 0));
+    }
+
+    private List<SelectedColumn> resolveColumns(List<PropertyMeta<?, ?>> path, int index, String columnPrefix, String aliasPrefix, String qualifier, String tableRef, int depth) {
+        PropertyMeta<?, ?> property = path.get(index);
+        String column = columnPrefix + property.name();
+        if (index == path.size() - 1) {
+            return JdbcColumn.forProperty(column, property)
+                    .stream()
+                    .map(c -> new SelectedColumn(qualify(qualifier, c.name()), aliasPrefix + c.name()))
+                    .collect(Collectors.toList());
+        }
+
+        if (!PropertyMetas.isReference(property) || isKeyOf(property, path.get(index + 1))) {
+            return resolveColumns(path, index + 1, column + ".", aliasPrefix, qualifier, tableRef, depth);
+        }
+
+        MetaClassWithKey<?, ?> referencedMeta = MetaClasses.forTokenWithKeyUnchecked(property.type());
+        String alias = "r" + (depth + 1);
+        List<JdbcColumn> referencedKey = JdbcColumn.keyColumns(referencedMeta);
+        List<JdbcColumn> referenceColumns = JdbcColumn.forProperty(column, property);
+        String condition = IntStream.range(0, referencedKey.size())
+                .mapToObj(i -> qualify(alias, referencedKey.get(i).name()) + " = " + qualify(tableRef, referenceColumns.get(i).name()))
+                .collect(Collectors.joining(" and "));
+        String from = " from " + schemaProvider.tableName(referencedMeta) + " " + alias + " where " + condition + ")";
+
+        return resolveColumns(path, index + 1, "", aliasPrefix + column + ".", alias, alias, depth + 1)
+                .stream()
+                .map(c -> new SelectedColumn("(select " + c.expression + from, c.alias))
+                .collect(Collectors.toList());
+    }
+
+    private static boolean isKeyOf(PropertyMeta<?, ?> referenceProperty, PropertyMeta<?, ?> property) {
+        MetaClassWithKey<?, ?> metaClass = MetaClasses.forTokenWithKeyUnchecked(referenceProperty.type());
+        return metaClass.keyProperty().name().equals(property.name());
+    }
+
+    private static String qualify(String qualifier, String column) {
+        return qualifier != null ? qualifier + "." + quote(column) : quote(column);
+    }
+
+    private static String toRow(List<String> items) {
+        return items.size() == 1 ? items.get(0) : "(" + String.join(", ", items) + ")";
+    }
+
+    private String onVisitProperty(Function<? super ObjectExpression<?, ?>, String> visitor, PropertyExpression<?, ?, ?> expression, Supplier<String> visitedResult) {
+        return columnsOf(expression)
+                .map(columns -> toRow(columns.stream().map(SelectedColumn::expression).collect(Collectors.toList())))
+                .orElseGet(visitedResult);
+    }
+
+    @SuppressWarnings("unchecked")
+    private String onVisitSearchText(Function<? super ObjectExpression<?, ?>, String> visitor, BooleanBinaryOperationExpression<?, ?, String> expression, Supplier<String> visitedResult) {
+        String searchText = ((ConstantExpression<?, String>)expression.right()).value();
+        String term = wildcardMatcher.trimFrom(Strings.nullToEmpty(searchText));
+        if (term.isEmpty()) {
+            return "(1 = 1)";
+        }
+
+        ObjectExpression<Object, Object> target = (ObjectExpression<Object, Object>)expression.left();
+        String text = searchableProperties(target, target.reflect().objectType(), new HashSet<>())
+                .map(visitor)
+                .map(field -> "COALESCE(CAST(" + field + " AS VARCHAR), '')")
+                .collect(Collectors.joining(" || ' ' || "));
+        if (text.isEmpty()) {
+            return "(1 = 0)";
+        }
+        return "(LOWER(" + text + ") like " + visitor.apply(ConstantExpression.of(searchTextToLikePattern(term))) + " escape '\\')";
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Stream<ObjectExpression<?, ?>> searchableProperties(ObjectExpression<Object, Object> target, TypeToken<?> type, Set<PropertyMeta<?, ?>> visitedProperties) {
+        if (!PropertyMetas.hasMetaClass(type)) {
+            return Stream.empty();
+        }
+        MetaClass<Object> metaClass = MetaClasses.forTokenUnchecked(type);
+        Stream<ObjectExpression<?, ?>> selfFields = Streams
+                .fromIterable(metaClass.properties())
+                .filter(p -> p.hasAnnotation(Searchable.class))
+                .filter(visitedProperties::add)
+                .map(p -> PropertyExpression.ofObject(target, (PropertyMeta<Object, Object>)p));
+        Stream<ObjectExpression<?, ?>> nestedFields = Streams
+                .fromIterable(metaClass.properties())
+                .filter(p -> PropertyMetas.isEmbedded(p) && !PropertyMetas.isReference(p))
+                .filter(visitedProperties::add)
+                .flatMap(p -> searchableProperties(PropertyExpression.ofObject(target, (PropertyMeta<Object, Object>)p), p.type(), visitedProperties));
+        return Stream.concat(selfFields.collect(Collectors.toList()).stream(), nestedFields.collect(Collectors.toList()).stream());
+    }
+
+    // Terms are matched as substrings of the lower-cased searchable text: whitespace matches any sequence
+    // of characters, '*' and '?' are wildcards
+    private static String searchTextToLikePattern(String term) {
+        String pattern = String.join("*", term.toLowerCase().split("\\s+"))
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_")
+                .replace("*", "%")
+                .replace("?", "_");
+        return "%" + pattern + "%";
+    }
+
+    private String reduceProperty(ObjectExpression<?, ?> expression, String... parts) {
+        List<String> path = Stream.of(parts)
+                .filter(part -> !Strings.isNullOrEmpty(part))
+                .collect(Collectors.toList());
+        if (path.isEmpty()) {
+            return "";
+        }
+        path.set(path.size() - 1, quote(path.get(path.size() - 1)));
+        return String.join(".", path);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object keyOf(MetaClassWithKey<?, ?> metaClass, Object entity) {
+        return ((MetaClassWithKey<Object, Object>)metaClass).keyOf(entity);
+    }
+}
@@ -1,52 +1,425 @@
 package com.slimgears.rxrepo.jdbc;
 
+import com.slimgears.rxrepo.expressions.PropertyExpression;
 import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
 import com.slimgears.rxrepo.sql.SqlStatement;
 import com.slimgears.rxrepo.sql.SqlStatementExecutor;
+import com.slimgears.rxrepo.sql.SqlStatementProvider;
 import com.slimgears.rxrepo.util.PropertyResolver;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class JdbcSqlStatementExecutor implements SqlStatementExecutor {
-    private final Connection connection;
+    private final static Logger log = LoggerFactory.getLogger(JdbcSqlStatementExecutor.class);
+    private final static int maxBatchSize = 1000;
+    private final static String uniqueViolationState = "23505";
+    private final static String serializationFailureState = "40001";
+    private final JdbcConnectionPool connectionPool;
+    private final SqlStatementProvider statementProvider;
+    private final int fetchSize;
 
-    public JdbcSqlStatementExecutor(Connection connection) {
-        this.connection = connection;
+    interface SqlCallable<T> {
+        T call() throws Exception;
     }
 
+    interface RowConsumer {
+        boolean accept(Map<String, Object> row) throws SQLException;
+    }
+
+    interface RowReader {
+        void read(SqlStatement statement, RowConsumer rowConsumer) throws Exception;
+    }
+
+    private JdbcSqlStatementExecutor(JdbcConnectionPool connectionPool, SqlStatementProvider statementProvider, int fetchSize) {
+        this.connectionPool = connectionPool;
+        this.statementProvider = statementProvider;
+        this.fetchSize = fetchSize;
+    }
+
+    public static JdbcSqlStatementExecutor create(JdbcConnectionPool connectionPool, SqlStatementProvider statementProvider, int fetchSize) {
+        return new JdbcSqlStatementExecutor(connectionPool, statementProvider, fetchSize);
+    }
+
+    // Rows are read from a cursor whose connection is not bound to the thread, so writes made by a subscriber
+    // while handling a row do not join the read, only reference loading shares the connection.
+    // Disposal from another thread cancels the running statement, disposal from a subscriber
+    // (e.g. after the first element) only stops reading
     @Override
     public Observable<PropertyResolver> executeQuery(SqlStatement statement) {
         return Observable.create(emitter -> {
-            PreparedStatement preparedStatement = JdbcHelper.prepareStatement(connection, statement);
-            JdbcHelper.toStream(preparedStatement.executeQuery());
+            Cursor cursor = openCursor(connectionPool.acquireDetached(), statement);
+            Thread readerThread = Thread.currentThread();
+            emitter.setCancellable(() -> {
+                if (Thread.currentThread() != readerThread) {
+                    cursor.cancel();
+                }
+            });
+            try {
+                PropertyResolver next;
+                while (!emitter.isDisposed() && (next = cursor.next()) != null) {
+                    emitter.onNext(next);
+                }
+            } catch (SQLException e) {
+                if (!emitter.isDisposed()) {
+                    throw toException(cursor.lease, e);
+                }
+            } finally {
+                cursor.close();
+            }
+            emitter.onComplete();
         });
     }
 
+    // Cursor is read on demand from whatever thread requests the next rows, so its connection is not bound to a thread
+    @Override
+    public Flowable<PropertyResolver> executeQueryFlowable(SqlStatement statement) {
+        return Flowable.generate(
+                () -> openCursor(connectionPool.acquireDetached(), statement),
+                (Cursor cursor, io.reactivex.Emitter<PropertyResolver> emitter) -> {
+                    try {
+                        PropertyResolver next = cursor.next();
+                        if (next != null) {
+                            emitter.onNext(next);
+                        } else {
+                            emitter.onComplete();
+                        }
+                    } catch (SQLException e) {
+                        emitter.onError(toException(cursor.lease, e));
+                    }
+                },
+                Cursor::close);
+    }
+
     @Override
     public Observable<PropertyResolver> executeCommandReturnEntries(SqlStatement statement) {
-        return notImplemented();
+        return Observable.defer(() -> {
+            List<PropertyResolver> entries = new ArrayList<>();
+            JdbcPropertyResolver.ReferenceLoader referenceLoader = referenceLoader();
+            execute(lease -> inTransaction(lease, () -> {
+                PreparedStatement preparedStatement = prepare(lease, statement);
+                try {
+                    if (preparedStatement.execute()) {
+                        try (ResultSet resultSet = preparedStatement.getResultSet()) {
+                            readRows(resultSet, row -> entries.add(JdbcPropertyResolver.create(row, referenceLoader)));
+                        }
+                    }
+                } finally {
+                    lease.releaseStatement(statement.statement(), preparedStatement);
+                }
+                return null;
+            }));
+            return Observable.fromIterable(entries);
+        });
     }
 
     @Override
     public Single<Integer> executeCommandReturnCount(SqlStatement statement) {
-        return notImplemented();
+        return Single.fromCallable(() -> execute(lease -> {
+            PreparedStatement preparedStatement = prepare(lease, statement);
+            try {
+                return preparedStatement.executeUpdate();
+            } finally {
+                lease.releaseStatement(statement.statement(), preparedStatement);
+            }
+        }));
     }
 
     @Override
     public Completable executeCommand(SqlStatement statement) {
-        return notImplemented();
+        return Completable.fromAction(() -> execute(lease -> {
+            PreparedStatement preparedStatement = prepare(lease, statement);
+            try {
+                return preparedStatement.execute();
+            } finally {
+                lease.releaseStatement(statement.statement(), preparedStatement);
+            }
+        }));
+    }
+
+    // Statements are executed in a single transaction, consecutive statements with the same text are sent as one batch
+    public Completable executeBatch(List<SqlStatement> statements) {
+        return Completable.fromAction(() -> execute(lease -> inTransaction(lease, () -> {
+            int start = 0;
+            while (start < statements.size()) {
+                String text = statements.get(start).statement();
+                int end = start;
+                while (end < statements.size() && end - start < maxBatchSize && statements.get(end).statement().equals(text)) {
+                    ++end;
+                }
+                executeBatch(lease, text, statements.subList(start, end));
+                start = end;
+            }
+            return null;
+        })));
+    }
+
+    // Statements executed by the work on the calling thread join the transaction, as they reuse the connection bound to it
+    <T> Single<T> executeInTransaction(SqlCallable<T> work) {
+        return Single.fromCallable(() -> execute(lease -> inTransaction(lease, work)));
     }
 
+    // Live queries are served by the change log of JdbcQueryProvider, as JDBC has no notion of change feeds
     @Override
     public Observable<Notification<PropertyResolver>> executeLiveQuery(SqlStatement statement) {
-        return notImplemented();
+        return Observable.error(new UnsupportedOperationException("Live queries are served by JdbcQueryProvider"));
+    }
+
+    private void executeBatch(JdbcConnectionPool.Lease lease, String text, List<SqlStatement> statements) throws SQLException {
+        log.trace("Executing batch of {}: {}", statements.size(), text);
+        PreparedStatement preparedStatement = lease.prepareStatement(text);
+        try {
+            for (SqlStatement statement : statements) {
+                JdbcHelper.setParams(preparedStatement, statement.args());
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+        } finally {
+            lease.releaseStatement(text, preparedStatement);
+        }
+    }
+
+    private boolean executeQuery(JdbcConnectionPool.Lease lease, SqlStatement statement, RowConsumer rowConsumer) throws SQLException {
+        PreparedStatement preparedStatement = prepare(lease, statement);
+        try {
+            preparedStatement.setFetchSize(fetchSize);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return readRows(resultSet, rowConsumer);
+            }
+        } finally {
+            lease.releaseStatement(statement.statement(), preparedStatement);
+        }
+    }
+
+    private static boolean readRows(ResultSet resultSet, RowConsumer rowConsumer) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        while (resultSet.next()) {
+            if (!rowConsumer.accept(toRow(resultSet, metaData))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<String, Object> toRow(ResultSet resultSet, ResultSetMetaData metaData) throws SQLException {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 1; i <= metaData.getColumnCount(); ++i) {
+            row.put(metaData.getColumnLabel(i), JdbcHelper.getColumnValue(resultSet, metaData.getColumnType(i), i));
+        }
+        return row;
+    }
+
+    // References are loaded once per query, on the connection of the current thread if it holds one
+    private JdbcPropertyResolver.ReferenceLoader referenceLoader() {
+        return referenceLoader(this::read);
     }
 
-    private static <T> T notImplemented() {
-        throw new UnsupportedOperationException("Not implemented yet");
+    private JdbcPropertyResolver.ReferenceLoader referenceLoader(RowReader rowReader) {
+        Map<List<Object>, Optional<Object>> references = new ConcurrentHashMap<>();
+        return new JdbcPropertyResolver.ReferenceLoader() {
+            @SuppressWarnings("unchecked")
+            @Override
+            public <K, S> S load(MetaClassWithKey<K, S> metaClass, K key) {
+                List<Object> cacheKey = Arrays.asList(metaClass, key);
+                Optional<Object> reference = references.get(cacheKey);
+                if (reference == null) {
+                    reference = Optional.ofNullable(loadReference(metaClass, key, this, rowReader));
+                    references.put(cacheKey, reference);
+                }
+                return (S)reference.orElse(null);
+            }
+        };
+    }
+
+    private <K, S> S loadReference(MetaClassWithKey<K, S> metaClass, K key, JdbcPropertyResolver.ReferenceLoader referenceLoader, RowReader rowReader) {
+        SqlStatement statement = statementProvider.forQuery(QueryInfo.<K, S, S>builder()
+                .metaClass(metaClass)
+                .predicate(PropertyExpression.ofObject(metaClass.keyProperty()).eq(key))
+                .limit(1L)
+                .build());
+        List<Map<String, Object>> rows = new ArrayList<>();
+        try {
+            rowReader.read(statement, rows::add);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        return rows.stream()
+                .findFirst()
+                .map(row -> JdbcPropertyResolver.create(row, referenceLoader).toObject(metaClass))
+                .orElse(null);
+    }
+
+    private void read(SqlStatement statement, RowConsumer rowConsumer) throws Exception {
+        execute(lease -> executeQuery(lease, statement, rowConsumer));
+    }
+
+    private <T> T execute(LeaseFunction<T> function) throws Exception {
+        try (JdbcConnectionPool.Lease lease = connectionPool.acquire()) {
+            try {
+                return function.apply(lease);
+            } catch (SQLException e) {
+                throw toException(lease, e);
+            }
+        }
+    }
+
+    interface LeaseFunction<T> {
+        T apply(JdbcConnectionPool.Lease lease) throws Exception;
+    }
+
+    // Only the outermost lease of the connection controls the transaction, nested statements join it
+    private static <T> T inTransaction(JdbcConnectionPool.Lease lease, SqlCallable<T> callable) throws Exception {
+        if (!lease.isOutermost()) {
+            return callable.call();
+        }
+        Connection connection = lease.connection();
+        connection.setAutoCommit(false);
+        try {
+            T result = callable.call();
+            connection.commit();
+            return result;
+        } catch (Exception e) {
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackException) {
+                e.addSuppressed(rollbackException);
+            }
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private static PreparedStatement prepare(JdbcConnectionPool.Lease lease, SqlStatement statement) throws SQLException {
+        log.trace("Executing statement: {} (args: {})", statement.statement(), statement.args());
+        PreparedStatement preparedStatement = lease.prepareStatement(statement.statement());
+        try {
+            JdbcHelper.setParams(preparedStatement, statement.args());
+            return preparedStatement;
+        } catch (SQLException | RuntimeException e) {
+            closeQuietly(preparedStatement);
+            throw e;
+        }
+    }
+
+    // Unique key violations and serialization failures are reported as concurrent modifications, so they are retried.
+    // Other constraint violations are not resolved by a retry, so they are rethrown as they are
+    private static Exception toException(JdbcConnectionPool.Lease lease, SQLException exception) {
+        String state = Optional.ofNullable(exception.getSQLState()).orElse("");
+        if (state.startsWith("08")) {
+            lease.markBroken();
+        }
+        if (state.equals(uniqueViolationState) || state.equals(serializationFailureState)) {
+            return new ConcurrentModificationException(exception.getMessage(), exception);
+        }
+        return exception;
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            log.trace("Could not close {}", closeable, e);
+        }
+    }
+
+    // Auto-commit is disabled for the lifetime of the cursor, as some drivers only honour the fetch size within a transaction
+    private Cursor openCursor(JdbcConnectionPool.Lease lease, SqlStatement statement) throws SQLException {
+        try {
+            lease.connection().setAutoCommit(false);
+            PreparedStatement preparedStatement = prepare(lease, statement);
+            try {
+                preparedStatement.setFetchSize(fetchSize);
+                return new Cursor(lease, statement.statement(), preparedStatement, preparedStatement.executeQuery());
+            } catch (SQLException | RuntimeException e) {
+                closeQuietly(preparedStatement);
+                throw e;
+            }
+        } catch (SQLException | RuntimeException e) {
+            lease.close();
+            throw e;
+        }
+    }
+
+    // References are read on the connection of the cursor while it is open, so the cursor never waits
+    // for a second connection while holding one. Reads of the rows and of the references are serialized
+    private class Cursor {
+        private final JdbcConnectionPool.Lease lease;
+        private final String sql;
+        private final PreparedStatement statement;
+        private final ResultSet resultSet;
+        private final ResultSetMetaData metaData;
+        private final JdbcPropertyResolver.ReferenceLoader referenceLoader;
+        private volatile boolean cancelled;
+        private boolean closed;
+
+        private Cursor(JdbcConnectionPool.Lease lease, String sql, PreparedStatement statement, ResultSet resultSet) throws SQLException {
+            this.lease = lease;
+            this.sql = sql;
+            this.statement = statement;
+            this.resultSet = resultSet;
+            this.metaData = resultSet.getMetaData();
+            this.referenceLoader = referenceLoader(this::readReferences);
+        }
+
+        private synchronized PropertyResolver next() throws SQLException {
+            return resultSet.next()
+                    ? JdbcPropertyResolver.create(toRow(resultSet, metaData), referenceLoader)
+                    : null;
+        }
+
+        private synchronized void readReferences(SqlStatement referenceStatement, RowConsumer rowConsumer) throws Exception {
+            if (closed) {
+                read(referenceStatement, rowConsumer);
+                return;
+            }
+            try {
+                executeQuery(lease, referenceStatement, rowConsumer);
+            } catch (SQLException e) {
+                throw toException(lease, e);
+            }
+        }
+
+        // Not synchronized, as it interrupts a running read. Cancelled statements are not reused
+        private void cancel() {
+            cancelled = true;
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
+                log.trace("Could not cancel statement: {}", sql, e);
+            }
+        }
+
+        private synchronized void close() {
+            closed = true;
+            closeQuietly(resultSet);
+            if (cancelled) {
+                closeQuietly(statement);
+            } else {
+                lease.releaseStatement(sql, statement);
+            }
+            lease.close();
+        }
     }
 }
@@ -0,0 +1,217 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.slimgears.rxrepo.expressions.ConstantExpression;
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.query.provider.DeleteInfo;
+import com.slimgears.rxrepo.query.provider.HasEntityMeta;
+import com.slimgears.rxrepo.query.provider.HasLimit;
+import com.slimgears.rxrepo.query.provider.HasMapping;
+import com.slimgears.rxrepo.query.provider.HasPagination;
+import com.slimgears.rxrepo.query.provider.HasPredicate;
+import com.slimgears.rxrepo.query.provider.HasProperties;
+import com.slimgears.rxrepo.query.provider.PropertyUpdateInfo;
+import com.slimgears.rxrepo.query.provider.SortingInfo;
+import com.slimgears.rxrepo.query.provider.UpdateInfo;
+import com.slimgears.rxrepo.sql.DefaultSqlStatementProvider;
+import com.slimgears.rxrepo.sql.ReferenceResolver;
+import com.slimgears.rxrepo.sql.SchemaProvider;
+import com.slimgears.rxrepo.sql.SqlAssignmentGenerator;
+import com.slimgears.rxrepo.sql.SqlStatement;
+import com.slimgears.rxrepo.util.PropertyResolver;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.slimgears.rxrepo.jdbc.JdbcColumn.quote;
+import static com.slimgears.rxrepo.sql.SqlStatement.of;
+import static com.slimgears.rxrepo.sql.StatementUtils.concat;
+
+public class JdbcSqlStatementProvider extends DefaultSqlStatementProvider {
+    static final String valueColumn = "__value";
+    private final JdbcSqlExpressionGenerator expressionGenerator;
+    private final SchemaProvider schemaProvider;
+
+    public JdbcSqlStatementProvider(JdbcSqlExpressionGenerator expressionGenerator,
+                                    SqlAssignmentGenerator assignmentGenerator,
+                                    SchemaProvider schemaProvider) {
+        super(expressionGenerator, assignmentGenerator, schemaProvider);
+        this.expressionGenerator = expressionGenerator;
+        this.schemaProvider = schemaProvider;
+    }
+
+    @Override
+    public <K, S> SqlStatement forUpdate(UpdateInfo<K, S> updateInfo) {
+        return templateStatement(Stream.concat(
+                Stream.of("update", updateInfo.metaClass(), updateInfo.limit(), updateInfo.predicate()),
+                updateInfo.propertyUpdates().stream().flatMap(pu -> Stream.of(pu.property(), pu.updater()))), () -> of(
+                "update",
+                schemaProvider.tableName(updateInfo.metaClass()),
+                "set",
+                Stream.concat(
+                        updateInfo.propertyUpdates().stream().map(this::toAssignment),
+                        Stream.of(versionIncrement(""))).collect(Collectors.joining(", ")),
+                limitedWhereClause(updateInfo)));
+    }
+
+    @Override
+    public <K, S> SqlStatement forDelete(DeleteInfo<K, S> deleteInfo) {
+        return templateStatement(
+                Stream.of("delete", deleteInfo.metaClass(), deleteInfo.limit(), deleteInfo.predicate()), () -> of(
+                "delete",
+                fromClause(deleteInfo),
+                limitedWhereClause(deleteInfo)));
+    }
+
+    @Override
+    public <K, S> SqlStatement forInsert(MetaClassWithKey<K, S> metaClass, PropertyResolver propertyResolver, ReferenceResolver referenceResolver) {
+        List<JdbcColumn> columns = JdbcColumn.forMetaClass(metaClass);
+        return SqlStatement.create(concat(
+                "insert into",
+                schemaProvider.tableName(metaClass),
+                toList(columns.stream().map(c -> quote(c.name()))),
+                "values",
+                toList(columns.stream().map(c -> "?"))),
+                valuesOf(columns, propertyResolver.toObject(metaClass)));
+    }
+
+    // Stored version is incremented on every write, so that concurrent read-modify-write cycles can be detected
+    @Override
+    public <K, S> SqlStatement forInsertOrUpdate(MetaClassWithKey<K, S> metaClass, PropertyResolver propertyResolver, ReferenceResolver referenceResolver) {
+        List<JdbcColumn> columns = JdbcColumn.forMetaClass(metaClass);
+        List<JdbcColumn> keyColumns = JdbcColumn.keyColumns(metaClass);
+        return SqlStatement.create(concat(
+                "merge into",
+                schemaProvider.tableName(metaClass),
+                "t using (select",
+                columns.stream()
+                        .map(c -> "cast(? as " + c.typeName() + ") as " + quote(c.name()))
+                        .collect(Collectors.joining(", ")),
+                ") s on (",
+                keyColumns.stream()
+                        .map(c -> "t." + quote(c.name()) + " = s." + quote(c.name()))
+                        .collect(Collectors.joining(" and ")),
+                ") when matched then update set",
+                Stream.concat(
+                        nonKeyColumns(metaClass).map(c -> quote(c.name()) + " = s." + quote(c.name())),
+                        Stream.of(versionIncrement("t."))).collect(Collectors.joining(", ")),
+                "when not matched then insert",
+                toList(columns.stream().map(c -> quote(c.name()))),
+                "values",
+                toList(columns.stream().map(c -> "s." + quote(c.name())))),
+                valuesOf(columns, propertyResolver.toObject(metaClass)));
+    }
+
+    @Override
+    public <K, S> SqlStatement forUpdate(MetaClassWithKey<K, S> metaClass, PropertyResolver propertyResolver, ReferenceResolver referenceResolver) {
+        return forUpdate(metaClass, propertyResolver.toObject(metaClass), null);
+    }
+
+    // Updates the entity only if its stored version is still the given one
+    <K, S> SqlStatement forUpdate(MetaClassWithKey<K, S> metaClass, S entity, Long version) {
+        List<JdbcColumn> columns = nonKeyColumns(metaClass).collect(Collectors.toList());
+        List<JdbcColumn> keyColumns = JdbcColumn.keyColumns(metaClass);
+        Object key = metaClass.keyOf(entity);
+        return SqlStatement.create(concat(
+                "update",
+                schemaProvider.tableName(metaClass),
+                "set",
+                Stream.concat(
+                        columns.stream().map(c -> quote(c.name()) + " = ?"),
+                        Stream.of(versionIncrement(""))).collect(Collectors.joining(", ")),
+                "where",
+                keyColumns.stream().map(c -> quote(c.name()) + " = ?").collect(Collectors.joining(" and ")),
+                version != null ? "and " + quote(JdbcColumn.versionColumn) + " = ?" : ""),
+                Stream.of(
+                        columns.stream().map(c -> c.valueOf(entity)),
+                        keyColumns.stream().map(c -> c.valueOf(key)),
+                        Stream.of(version).filter(v -> v != null))
+                        .flatMap(s -> s)
+                        .toArray());
+    }
+
+    // Rows are deleted rather than tables dropped, so that the schema known to the schema provider remains valid
+    @Override
+    public <K, S> SqlStatement forDrop(MetaClassWithKey<K, S> metaClass) {
+        return SqlStatement.create(concat("delete from", schemaProvider.tableName(metaClass)));
+    }
+
+    @Override
+    protected <K, S, T, Q extends HasMapping<S, T> & HasEntityMeta<K, S> & HasProperties<T>> String selectClause(Q queryInfo) {
+        String selectOperator = Optional.ofNullable(queryInfo.distinct()).orElse(false) ? "select distinct" : "select";
+        ObjectExpression<S, T> mapping = queryInfo.mapping();
+        if (mapping == null || mapping.type().operationType() == Expression.OperationType.Argument) {
+            return concat(selectOperator, "*");
+        }
+        return concat(selectOperator, expressionGenerator.columnsOf(mapping)
+                .map(columns -> columns.stream()
+                        .map(c -> c.expression() + " as " + quote(c.alias()))
+                        .collect(Collectors.joining(", ")))
+                .orElseGet(() -> expressionGenerator.toSqlExpression(mapping) + " as " + quote(valueColumn)));
+    }
+
+    @Override
+    protected <Q extends HasPagination> String skipClause(Q statement) {
+        return Optional.ofNullable(statement.skip())
+                .map(count -> "offset " + count)
+                .orElse("");
+    }
+
+    @Override
+    protected String toOrder(SortingInfo<?, ?, ?> sortingInfo) {
+        String direction = sortingInfo.ascending() ? " asc" : " desc";
+        return expressionGenerator.columnsOf(sortingInfo.property())
+                .map(columns -> columns.stream()
+                        .map(c -> c.expression() + direction)
+                        .collect(Collectors.joining(", ")))
+                .orElseGet(() -> super.toOrder(sortingInfo));
+    }
+
+    // Limited updates and deletes are applied to the keys selected by a limited sub-query
+    private <K, S, Q extends HasEntityMeta<K, S> & HasPredicate<S> & HasLimit> String limitedWhereClause(Q statement) {
+        if (statement.limit() == null) {
+            return whereClause(statement);
+        }
+        String keyRow = toRow(JdbcColumn.keyColumns(statement.metaClass()).stream().map(c -> quote(c.name())));
+        return concat("where", keyRow, "in (select", keyRow, fromClause(statement), whereClause(statement), limitClause(statement), ")");
+    }
+
+    // Constant values are converted to the column representation, other updaters are rendered as expressions
+    private String toAssignment(PropertyUpdateInfo<?, ?, ?> propertyUpdate) {
+        List<JdbcColumn> columns = JdbcColumn.forProperty(propertyUpdate.property().path(), propertyUpdate.property().property());
+        if (propertyUpdate.updater() instanceof ConstantExpression) {
+            Object value = ((ConstantExpression<?, ?>)propertyUpdate.updater()).value();
+            return columns.stream()
+                    .map(c -> quote(c.name()) + " = " + expressionGenerator.toSqlExpression(ConstantExpression.of(JdbcSqlExpressionGenerator.ColumnValue.of(c.valueOf(value)))))
+                    .collect(Collectors.joining(", "));
+        }
+        return toRow(columns.stream().map(c -> quote(c.name()))) + " = " + expressionGenerator.toSqlExpression(propertyUpdate.updater());
+    }
+
+    private static <K, S> Stream<JdbcColumn> nonKeyColumns(MetaClassWithKey<K, S> metaClass) {
+        String keyName = metaClass.keyProperty().name();
+        return JdbcColumn.forMetaClass(metaClass)
+                .stream()
+                .filter(c -> !c.name().equals(keyName) && !c.name().startsWith(keyName + "."));
+    }
+
+    private static Object[] valuesOf(List<JdbcColumn> columns, Object entity) {
+        return columns.stream().map(c -> c.valueOf(entity)).toArray();
+    }
+
+    private static String versionIncrement(String qualifier) {
+        return quote(JdbcColumn.versionColumn) + " = " + qualifier + quote(JdbcColumn.versionColumn) + " + 1";
+    }
+
+    private static String toList(Stream<String> items) {
+        return items.collect(Collectors.joining(", ", "(", ")"));
+    }
+
+    private static String toRow(Stream<String> items) {
+        List<String> list = items.collect(Collectors.toList());
+        return list.size() == 1 ? list.get(0) : "(" + String.join(", ", list) + ")";
+    }
+}
@@ -0,0 +1,52 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.encoding.MetaContext;
+import com.slimgears.rxrepo.encoding.MetaContexts;
+import com.slimgears.rxrepo.encoding.adapter.JacksonAdapter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+// Values that have no column representation (collections, maps, recursive embedded objects) are stored
+// as JSON written by the meta codecs, the same codecs that map objects to documents in other backends.
+// Decoding is driven by the declared type only, so no class is resolved from the stored data
+class JdbcValueCodec {
+    private final static JsonFactory jsonFactory = new JsonFactory();
+    private final static MetaContext context = MetaContexts.createDefault();
+
+    static <T> byte[] encode(T value, TypeToken<T> type) {
+        if (value == null) {
+            return null;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JsonGenerator generator = jsonFactory.createGenerator(bytes)) {
+            context.codecProvider().resolve(type).encode(context.ofWriter(JacksonAdapter.writer(generator)), value);
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("Could not encode value of " + type, e);
+        }
+        return bytes.toByteArray();
+    }
+
+    // Values of statement parameters have no declared type, so they are encoded as their class
+    @SuppressWarnings("unchecked")
+    static byte[] encode(Object value) {
+        return value != null
+                ? encode(value, (TypeToken<Object>)TypeToken.of(value.getClass()))
+                : null;
+    }
+
+    static <T> T decode(byte[] bytes, TypeToken<T> type) {
+        if (bytes == null) {
+            return null;
+        }
+        try (JsonParser parser = jsonFactory.createParser(bytes)) {
+            return context.read(JacksonAdapter.reader(parser), type);
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("Could not decode value of " + type, e);
+        }
+    }
+}
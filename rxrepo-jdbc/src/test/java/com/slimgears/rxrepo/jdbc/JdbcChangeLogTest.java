@@ -0,0 +1,263 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.sql.DefaultSqlAssignmentGenerator;
+import com.slimgears.rxrepo.sql.SqlStatement;
+import com.slimgears.rxrepo.test.Inventory;
+import com.slimgears.rxrepo.test.UniqueId;
+import io.reactivex.Observable;
+import io.reactivex.exceptions.MissingBackpressureException;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import static com.slimgears.rxrepo.jdbc.JdbcColumn.quote;
+
+public class JdbcChangeLogTest {
+    private static final String dbUrl = "jdbc:h2:mem:";
+    private static final Duration minPollInterval = Duration.ofMillis(100);
+    private static final Duration maxPollInterval = Duration.ofMillis(800);
+    @Rule public final TestName testNameRule = new TestName();
+    private String url;
+    private JdbcConnectionPool connectionPool;
+    private JdbcSqlStatementExecutor statementExecutor;
+    private TestScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        url = dbUrl + testNameRule.getMethodName() + ";DB_CLOSE_DELAY=-1";
+        connectionPool = JdbcConnectionPool.create(() -> DriverManager.getConnection(url), 4, 16, Duration.ofSeconds(10));
+        JdbcSchemaProvider schemaProvider = JdbcSchemaProvider.create(connectionPool);
+        JdbcSqlExpressionGenerator expressionGenerator = new JdbcSqlExpressionGenerator(schemaProvider);
+        JdbcSqlStatementProvider statementProvider = new JdbcSqlStatementProvider(
+                expressionGenerator,
+                new DefaultSqlAssignmentGenerator(expressionGenerator),
+                schemaProvider);
+        statementExecutor = JdbcSqlStatementExecutor.create(connectionPool, statementProvider, 100);
+        schemaProvider.createOrUpdate(Inventory.metaClass).blockingAwait();
+        scheduler = new TestScheduler();
+    }
+
+    @After
+    public void tearDown() {
+        statementExecutor.executeCommand(SqlStatement.create("drop all objects")).blockingAwait();
+        connectionPool.close();
+    }
+
+    @Test
+    public void testGapIsPolledAgainUntilFilled() {
+        TestObserver<Notification<Inventory>> observer = createPoller(Duration.ofSeconds(30)).notifications().test();
+
+        append(1, inventory(1));
+        append(3, inventory(3));
+        scheduler.advanceTimeBy(minPollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        observer.assertValueCount(2);
+
+        append(2, inventory(2));
+        scheduler.advanceTimeBy(minPollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        observer.assertValueCount(3)
+                .assertValueAt(2, n -> idOf(n) == 2);
+        observer.dispose();
+    }
+
+    @Test
+    public void testExpiredGapIsReportedForResync() throws InterruptedException {
+        TestObserver<Notification<Inventory>> observer = createPoller(Duration.ofMillis(200)).notifications().test();
+
+        append(1, inventory(1));
+        append(3, inventory(3));
+        scheduler.advanceTimeBy(minPollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        observer.assertValueCount(2).assertNoErrors();
+
+        Thread.sleep(300);
+        scheduler.advanceTimeBy(maxPollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        observer.assertError(MissingBackpressureException.class);
+    }
+
+    @Test
+    public void testGapPrecedingSubscriptionIsGivenUpWithoutError() throws InterruptedException {
+        append(1, inventory(1));
+        append(3, inventory(3));
+        TestObserver<Notification<Inventory>> observer = createPoller(Duration.ofMillis(200)).notifications().test();
+
+        Thread.sleep(300);
+        scheduler.advanceTimeBy(maxPollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        append(4, inventory(4));
+        scheduler.advanceTimeBy(maxPollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        observer.assertNoErrors()
+                .assertValueCount(1)
+                .assertValueAt(0, n -> idOf(n) == 4);
+        observer.dispose();
+    }
+
+    // Bulk insert takes more sequence numbers than a batch, and commits after a later change
+    @Test
+    public void testConcurrentBulkInsertLargerThanBatchIsDelivered() throws SQLException {
+        TestObserver<Notification<Inventory>> observer = createPoller(Duration.ofSeconds(30)).notifications().test();
+
+        try (Connection connection = DriverManager.getConnection(url)) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "insert into " + quote("Inventory__changes") + " (" + quote("__seq") + ", " + quote("__new") + ") values (?, ?)")) {
+                for (int i = 1; i <= 150; ++i) {
+                    statement.setLong(1, i);
+                    statement.setBytes(2, JdbcValueCodec.encode(inventory(i), Inventory.metaClass.asType()));
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+
+            append(151, inventory(151));
+            scheduler.advanceTimeBy(minPollInterval.toMillis(), TimeUnit.MILLISECONDS);
+            observer.assertValueCount(1);
+
+            connection.commit();
+        }
+
+        scheduler.advanceTimeBy(maxPollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        observer.assertNoErrors()
+                .assertValueCount(151)
+                .assertValueAt(0, n -> idOf(n) == 151)
+                .assertValueAt(1, n -> idOf(n) == 1)
+                .assertValueAt(150, n -> idOf(n) == 150);
+        observer.dispose();
+    }
+
+    // Polls of the idle log are made at 100, 300, 700, 1500 and then every 800 milliseconds
+    @Test
+    public void testPollIntervalBacksOffWhileIdleAndResetsOnChanges() {
+        TestObserver<Notification<Inventory>> observer = createPoller(Duration.ofSeconds(30)).notifications().test();
+
+        scheduler.advanceTimeTo(1500, TimeUnit.MILLISECONDS);
+        append(1, inventory(1));
+        scheduler.advanceTimeBy(799, TimeUnit.MILLISECONDS);
+        observer.assertNoValues();
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        observer.assertValueCount(1);
+
+        append(2, inventory(2));
+        scheduler.advanceTimeBy(minPollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        observer.assertValueCount(2);
+        observer.dispose();
+    }
+
+    @Test
+    public void testEntriesOlderThanRetentionArePruned() throws InterruptedException {
+        JdbcChangeLog changeLog = JdbcChangeLog.create(statementExecutor, Duration.ofMinutes(10), minPollInterval, maxPollInterval, 100);
+        long now = System.currentTimeMillis();
+        append(1, inventory(1), new Timestamp(now - TimeUnit.HOURS.toMillis(1)));
+        append(2, inventory(2), new Timestamp(now));
+
+        changeLog.onCommitted(Inventory.metaClass);
+        awaitEntryCount(1);
+
+        // Next pruning is not due before half of the retention period has passed
+        append(3, inventory(3), new Timestamp(now - TimeUnit.HOURS.toMillis(1)));
+        changeLog.onCommitted(Inventory.metaClass);
+        Thread.sleep(200);
+        Assert.assertEquals(2, entryCount());
+    }
+
+    @Test
+    public void testPollerIsSharedByLiveQueriesOfTable() {
+        JdbcChangeLog changeLog = JdbcChangeLog.create(statementExecutor, Duration.ofMinutes(10), minPollInterval, maxPollInterval, 100);
+        Observable<Notification<Inventory>> notifications = changeLog.notifications(Inventory.metaClass);
+        Assert.assertSame(notifications, changeLog.notifications(Inventory.metaClass));
+
+        TestObserver<Notification<Inventory>> firstObserver = notifications.test();
+        TestObserver<Notification<Inventory>> secondObserver = changeLog.notifications(Inventory.metaClass).test();
+        append(1, inventory(1));
+        changeLog.onCommitted(Inventory.metaClass);
+
+        firstObserver.awaitCount(1).assertValueCount(1);
+        secondObserver.awaitCount(1).assertValueCount(1);
+        firstObserver.dispose();
+        secondObserver.dispose();
+    }
+
+    @Test
+    public void testEncodedValuesAreDecodedAsDeclaredType() throws IOException {
+        Inventory inventory = inventory(1).toBuilder().inventory(inventory(2)).build();
+        Assert.assertEquals(inventory, JdbcValueCodec.decode(JdbcValueCodec.encode(inventory, Inventory.metaClass.asType()), Inventory.metaClass.asType()));
+
+        TypeToken<ImmutableList<Inventory>> listType = new TypeToken<ImmutableList<Inventory>>() {};
+        ImmutableList<Inventory> inventories = ImmutableList.of(inventory, inventory(3));
+        Assert.assertEquals(inventories, JdbcValueCodec.decode(JdbcValueCodec.encode(inventories, listType), listType));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream stream = new ObjectOutputStream(bytes)) {
+            stream.writeObject(inventories);
+        }
+        try {
+            JdbcValueCodec.decode(bytes.toByteArray(), listType);
+            Assert.fail("Decoding of java serialized value is expected to fail");
+        } catch (IllegalArgumentException e) {
+            Assert.assertNotNull(e.getCause());
+        }
+    }
+
+    private JdbcChangeLogPoller<Inventory> createPoller(Duration gapTimeout) {
+        return JdbcChangeLogPoller.create(Inventory.metaClass, statementExecutor, scheduler, minPollInterval, maxPollInterval, 100, gapTimeout);
+    }
+
+    private void append(long sequence, Inventory inventory) {
+        statementExecutor.executeCommand(SqlStatement.create(
+                "insert into " + quote("Inventory__changes") + " (" + quote("__seq") + ", " + quote("__new") + ") values (?, ?)",
+                sequence,
+                JdbcValueCodec.encode(inventory, Inventory.metaClass.asType())))
+                .blockingAwait();
+    }
+
+    private void append(long sequence, Inventory inventory, Timestamp time) {
+        statementExecutor.executeCommand(SqlStatement.create(
+                "insert into " + quote("Inventory__changes") + " (" + quote("__seq") + ", " + quote("__new") + ", " + quote("__time") + ") values (?, ?, ?)",
+                sequence,
+                JdbcValueCodec.encode(inventory, Inventory.metaClass.asType()),
+                time))
+                .blockingAwait();
+    }
+
+    private long entryCount() {
+        return statementExecutor
+                .executeQuery(SqlStatement.create("select " + quote("__seq") + " from " + quote("Inventory__changes")))
+                .count()
+                .blockingGet();
+    }
+
+    private void awaitEntryCount(long count) throws InterruptedException {
+        for (int i = 0; i < 50 && entryCount() != count; ++i) {
+            Thread.sleep(100);
+        }
+        Assert.assertEquals(count, entryCount());
+    }
+
+    private static Inventory inventory(int id) {
+        return Inventory.builder()
+                .id(UniqueId.inventoryId(id))
+                .name("Inventory " + id)
+                .build();
+    }
+
+    private static int idOf(Notification<Inventory> notification) {
+        return Objects.requireNonNull(notification.newValue()).id().id();
+    }
+}
@@ -0,0 +1,83 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.slimgears.rxrepo.query.EntitySet;
+import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.test.AbstractRepositoryTest;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+public class JdbcQueryProviderTest extends AbstractRepositoryTest {
+    private static final String dbUrl = "jdbc:h2:mem:";
+
+    @Override
+    protected Repository createRepository() {
+        return JdbcRepository
+                .builder()
+                .url(dbUrl + testNameRule.getMethodName() + ";DB_CLOSE_DELAY=-1")
+                .debounceTimeoutMillis(1000)
+                .build();
+    }
+
+    @Test
+    public void testCursorResolvesReferencesWithSingleConnection() {
+        Repository repository = JdbcRepository
+                .builder()
+                .url(dbUrl + testNameRule.getMethodName() + "_single;DB_CLOSE_DELAY=-1")
+                .poolSize(1)
+                .acquireTimeout(Duration.ofSeconds(5))
+                .build();
+        try {
+            EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+            products.update(Products.createMany(20)).ignoreElement().blockingAwait();
+
+            products.findAllFlowable()
+                    .test()
+                    .awaitDone(10, TimeUnit.SECONDS)
+                    .assertNoErrors()
+                    .assertValueCount(20)
+                    .assertValueAt(0, p -> Objects.nonNull(p.inventory()));
+        } finally {
+            repository.clearAndClose();
+        }
+    }
+
+    @Test
+    public void testWritesOfQuerySubscriberAreNotPartOfRead() {
+        Repository repository = JdbcRepository
+                .builder()
+                .url(dbUrl + testNameRule.getMethodName() + "_subscriber;DB_CLOSE_DELAY=-1")
+                .build();
+        try {
+            EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+            products.update(Products.createMany(3)).ignoreElement().blockingAwait();
+
+            // The subscriber runs on the reading thread, its update has to be visible on other connections right away
+            products.query()
+                    .retrieve()
+                    .take(1)
+                    .doOnNext(product -> {
+                        products.update(product.toBuilder().name("Updated").build()).blockingGet();
+                        String name = Single.defer(() -> products.find(product.key()).toSingle())
+                                .subscribeOn(Schedulers.newThread())
+                                .map(Product::name)
+                                .blockingGet();
+                        Assert.assertEquals("Updated", name);
+                    })
+                    .test()
+                    .awaitDone(10, TimeUnit.SECONDS)
+                    .assertNoErrors()
+                    .assertValueCount(1);
+        } finally {
+            repository.clearAndClose();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.slimgears.rxrepo.mem;
+
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+class HashMemoryIndex<K, S, V> extends MemoryIndex<K, S, V> {
+    private final Map<V, Set<K>> keysByValue = new ConcurrentHashMap<>();
+
+    private HashMemoryIndex(PropertyMeta<S, ?> property, Function<Object, V> valueMapper) {
+        super(property, valueMapper);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, S, V> HashMemoryIndex<K, S, V> create(PropertyMeta<S, V> property) {
+        return new HashMemoryIndex<>(property, value -> (V)value);
+    }
+
+    // Values are indexed by their string representation (@Indexable(asString = true))
+    static <K, S> HashMemoryIndex<K, S, String> createAsString(PropertyMeta<S, ?> property) {
+        return new HashMemoryIndex<>(property, String::valueOf);
+    }
+
+    @Override
+    protected Map<V, Set<K>> keysByValue() {
+        return keysByValue;
+    }
+}
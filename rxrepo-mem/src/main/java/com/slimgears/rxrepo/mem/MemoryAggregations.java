@@ -0,0 +1,108 @@
+package com.slimgears.rxrepo.mem;
+
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.util.GenericMath;
+
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+@SuppressWarnings("unchecked")
+class MemoryAggregations {
+    static <T, R> Optional<Collector<T, ?, R>> collector(Expression.Type type) {
+        switch (type) {
+            case Count: return Optional.of((Collector<T, ?, R>)Collectors.counting());
+            case Min: return Optional.of((Collector<T, ?, R>)Collectors.collectingAndThen(Collectors.minBy(comparator()), m -> m.orElse(null)));
+            case Max: return Optional.of((Collector<T, ?, R>)Collectors.collectingAndThen(Collectors.maxBy(comparator()), m -> m.orElse(null)));
+            case Sum: return Optional.of((Collector<T, ?, R>)numeric(NumberAccumulator::sum));
+            case Average: return Optional.of((Collector<T, ?, R>)numeric(NumberAccumulator::average));
+            default: return Optional.empty();
+        }
+    }
+
+    private static <T, R> Collector<T, NumberAccumulator, R> numeric(java.util.function.Function<NumberAccumulator, R> finisher) {
+        return Collector.of(
+                NumberAccumulator::new,
+                (acc, val) -> acc.add((Number)val),
+                NumberAccumulator::merge,
+                finisher,
+                Collector.Characteristics.UNORDERED);
+    }
+
+    private static <T> Comparator<T> comparator() {
+        return (left, right) -> left instanceof Comparable && right instanceof Comparable
+                ? ((Comparable<T>)left).compareTo(right)
+                : left.toString().compareTo(right.toString());
+    }
+
+    private static class NumberAccumulator {
+        private Class<?> numberClass;
+        private long count;
+        private long longSum;
+        private double doubleSum;
+        private Number genericSum;
+
+        void add(Number value) {
+            if (numberClass == null) {
+                numberClass = value.getClass();
+            }
+            ++count;
+            if (isIntegral()) {
+                longSum += value.longValue();
+            } else if (isFloatingPoint()) {
+                doubleSum += value.doubleValue();
+            } else {
+                genericSum = genericSum != null ? GenericMath.add(genericSum, value) : value;
+            }
+        }
+
+        NumberAccumulator merge(NumberAccumulator other) {
+            if (numberClass == null) {
+                numberClass = other.numberClass;
+            }
+            count += other.count;
+            longSum += other.longSum;
+            doubleSum += other.doubleSum;
+            genericSum = genericSum != null && other.genericSum != null
+                    ? GenericMath.add(genericSum, other.genericSum)
+                    : Optional.ofNullable(genericSum).orElse(other.genericSum);
+            return this;
+        }
+
+        Number sum() {
+            if (count == 0) {
+                return null;
+            } else if (numberClass == Integer.class) {
+                return (int)longSum;
+            } else if (numberClass == Short.class) {
+                return (short)longSum;
+            } else if (numberClass == Long.class) {
+                return longSum;
+            } else if (numberClass == Float.class) {
+                return (float)doubleSum;
+            } else if (numberClass == Double.class) {
+                return doubleSum;
+            }
+            return genericSum;
+        }
+
+        Double average() {
+            if (count == 0) {
+                return 0.0;
+            }
+            double total = isIntegral()
+                    ? longSum
+                    : isFloatingPoint() ? doubleSum : genericSum.doubleValue();
+            return total / count;
+        }
+
+        private boolean isIntegral() {
+            return numberClass == Integer.class || numberClass == Short.class || numberClass == Long.class;
+        }
+
+        private boolean isFloatingPoint() {
+            return numberClass == Float.class || numberClass == Double.class;
+        }
+    }
+}
@@ -4,21 +4,24 @@ import com.google.common.collect.ImmutableList;
 import com.slimgears.rxrepo.encoding.MetaObjectResolver;
 import com.slimgears.rxrepo.expressions.*;
 import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.Notifications;
 import com.slimgears.rxrepo.query.provider.*;
 import com.slimgears.rxrepo.util.Expressions;
 import com.slimgears.rxrepo.util.PropertyExpressions;
 import com.slimgears.rxrepo.util.PropertyMetas;
+import com.slimgears.rxrepo.util.TopKTransformer;
 import com.slimgears.util.autovalue.annotations.*;
 import com.slimgears.util.stream.Lazy;
+import com.slimgears.util.reflect.TypeTokens;
 import com.slimgears.util.stream.Streams;
 import io.reactivex.Observable;
 import io.reactivex.*;
+import io.reactivex.disposables.Disposable;
 import io.reactivex.functions.Consumer;
 import io.reactivex.functions.Function;
 import io.reactivex.functions.Predicate;
 import io.reactivex.schedulers.Schedulers;
-import io.reactivex.subjects.PublishSubject;
-import io.reactivex.subjects.Subject;
+import io.reactivex.subjects.UnicastSubject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,24 +29,41 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoCloseable {
     private final static Logger log = LoggerFactory.getLogger(MemoryEntityQueryProvider.class);
     private final MetaClassWithKey<K, S> metaClass;
     private final MetaObjectResolver objectResolver;
+    private final int parallelScanThreshold;
     private final Map<K, AtomicReference<S>> objects = new ConcurrentHashMap<>();
-    private final Subject<Notification<S>> notificationSubject = PublishSubject.create();
+    private final MemoryIndexes<K, S> indexes;
     private final Lazy<List<PropertyMeta<S, ?>>> referenceProperties;
     private final Lazy<ExecutorService> notificationExecutor = Lazy.of(Executors::newSingleThreadExecutor);
     private final Lazy<Scheduler> notificationScheduler = Lazy.of(() -> Schedulers.from(notificationExecutor.get()));
+    private final Lazy<NotificationBus<S>> notificationBus;
+    private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
 
     private MemoryEntityQueryProvider(MetaClassWithKey<K, S> metaClass,
-                                      MetaObjectResolver objectResolver) {
+                                      MetaObjectResolver objectResolver,
+                                      int parallelScanThreshold,
+                                      int notificationBufferSize,
+                                      NotificationOverflowPolicy overflowPolicy) {
         this.metaClass = metaClass;
         this.objectResolver = objectResolver;
+        this.parallelScanThreshold = parallelScanThreshold;
+        this.indexes = MemoryIndexes.create(metaClass);
+        this.notificationBus = Lazy.of(() -> NotificationBus.create(
+                notificationBufferSize,
+                overflowPolicy,
+                metaClass::keyOf,
+                notificationScheduler.get()));
         this.referenceProperties = Lazy.of(() -> Streams
                 .fromIterable(metaClass.properties())
                 .filter(PropertyMetas::isReference)
@@ -52,8 +72,11 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
 
     static <K, S> MemoryEntityQueryProvider<K, S> create(
             MetaClassWithKey<K, S> metaClass,
-            MetaObjectResolver objectResolver) {
-        return new MemoryEntityQueryProvider<>(metaClass, objectResolver);
+            MetaObjectResolver objectResolver,
+            int parallelScanThreshold,
+            int notificationBufferSize,
+            NotificationOverflowPolicy overflowPolicy) {
+        return new MemoryEntityQueryProvider<>(metaClass, objectResolver, parallelScanThreshold, notificationBufferSize, overflowPolicy);
     }
 
     @Override
@@ -68,29 +91,166 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
             S oldValue = referenceResolver.get().get();
             return entityUpdater
                     .apply(Optional.ofNullable(referenceResolver.get().get()).map(Maybe::just).orElseGet(Maybe::empty))
-                    .flatMap(e -> referenceResolver.get().compareAndSet(oldValue, e)
+                    .flatMap(e -> compareAndSet(key, referenceResolver.get(), oldValue, e)
                             ? (e != null ? Maybe.just(e): Maybe.empty())
-                            : Maybe.error(new ConcurrentModificationException("Concurrent modification of " + metaClass.simpleName() + " detected")))
-                    .doOnSuccess(e -> {
-                        if (!Objects.equals(oldValue, e)) {
-                            Notification<S> notification = Notification.ofModified(oldValue, e);
-                            notificationSubject.onNext(notification);
-                            log.debug("Published notification: {}", notification);
+                            : Maybe.error(new ConcurrentModificationException("Concurrent modification of " + metaClass.simpleName() + " detected")));
+        });
+    }
+
+    private boolean reserveNotification() {
+        AtomicBoolean reserved = new AtomicBoolean();
+        notificationBus.ifExists(bus -> reserved.set(bus.reserve()));
+        return reserved.get();
+    }
+
+    private void releaseNotification(boolean reserved) {
+        if (reserved) {
+            notificationBus.ifExists(NotificationBus::release);
+        }
+    }
+
+    private void publish(Notification<S> notification, boolean reserved) {
+        notificationBus.ifExists(bus -> bus.publish(notification, reserved));
+    }
+
+    NotificationStats notificationStats() {
+        AtomicReference<NotificationStats> stats = new AtomicReference<>(NotificationStats.create(0, 0, 0, 0, 0));
+        notificationBus.ifExists(bus -> stats.set(bus.stats()));
+        return stats.get();
+    }
+
+    // Modifications are published under the snapshot read lock, so that a snapshot taken under the write lock
+    // together with the notification bus position forms an exact watermark.
+    // Room for the notification is reserved before the lock is taken, see NotificationBus.reserve()
+    private boolean compareAndSet(K key, AtomicReference<S> reference, S oldValue, S newValue) {
+        boolean reserved = reserveNotification();
+        snapshotLock.readLock().lock();
+        try {
+            synchronized (reference) {
+                if (!reference.compareAndSet(oldValue, newValue)) {
+                    return false;
+                }
+                indexes.update(key, oldValue, newValue);
+            }
+            if (!Objects.equals(oldValue, newValue)) {
+                Notification<S> notification = Notification.ofModified(oldValue, newValue);
+                publish(notification, reserved);
+                reserved = false;
+                log.debug("Published notification: {}", notification);
+            }
+            return true;
+        } finally {
+            snapshotLock.readLock().unlock();
+            releaseNotification(reserved);
+        }
+    }
+
+    private Optional<S> remove(K key) {
+        boolean reserved = reserveNotification();
+        snapshotLock.readLock().lock();
+        try {
+            Optional<S> removed = Optional
+                    .ofNullable(objects.remove(key))
+                    .map(reference -> {
+                        synchronized (reference) {
+                            S oldValue = reference.getAndSet(null);
+                            indexes.update(key, oldValue, null);
+                            return oldValue;
                         }
                     });
-        });
+            if (removed.isPresent()) {
+                publish(Notification.ofDeleted(removed.get()), reserved);
+                reserved = false;
+            }
+            return removed;
+        } finally {
+            snapshotLock.readLock().unlock();
+            releaseNotification(reserved);
+        }
+    }
+
+    private Observable<S> candidates(Optional<MemoryIndexes.Plan<K>> plan) {
+        return plan
+                .map(p -> Observable.fromIterable(p.keys())
+                        .doOnSubscribe(d -> log.trace("Using index plan for {} (ordered: {})", metaClass.simpleName(), p.isOrdered()))
+                        .flatMapMaybe(this::find))
+                .orElseGet(() -> Observable.fromIterable(objects.values())
+                        .flatMapMaybe(val -> Maybe.fromCallable(val::get)));
+    }
+
+    private Stream<S> candidateStream(Optional<MemoryIndexes.Plan<K>> plan) {
+        return plan
+                .map(p -> Streams.fromIterable(p.keys()).map(objects::get))
+                .orElseGet(() -> objects.size() >= parallelScanThreshold
+                        ? objects.values().parallelStream()
+                        : objects.values().stream())
+                .filter(Objects::nonNull)
+                .map(AtomicReference::get)
+                .filter(Objects::nonNull);
+    }
+
+    private Observable<S> filteredCandidates(QueryInfo<K, S, ?> query, Optional<MemoryIndexes.Plan<K>> plan) {
+        boolean scanAll = !plan.isPresent() && (!query.sorting().isEmpty() || query.limit() == null);
+        if (!scanAll || objects.size() < parallelScanThreshold) {
+            return candidates(plan).filter(Expressions.compileRxPredicate(query.predicate()));
+        }
+        java.util.function.Predicate<S> predicate = Expressions.compilePredicate(query.predicate());
+        return Observable.defer(() -> Observable.fromIterable(candidateStream(plan)
+                .filter(predicate)
+                .collect(Collectors.toList())));
     }
 
     @Override
     public <T> Observable<T> query(QueryInfo<K, S, T> query) {
-        Predicate<S> predicate = Expressions.compileRxPredicate(query.predicate());
+        Optional<MemoryIndexes.Plan<K>> plan = indexes.plan(query.predicate(), query.sorting());
+        return query(query, filteredCandidates(query, plan), plan);
+    }
+
+    @Override
+    public Single<Map<K, S>> findAll(Iterable<K> keys) {
+        return Observable.fromIterable(keys)
+                .concatMapMaybe(this::find)
+                .concatMapSingle(this::applyReferences)
+                .toMap(metaClass::keyOf);
+    }
+
+    @Override
+    public Observable<List<Notification<S>>> queryAndObserve(QueryInfo<K, S, S> query, SnapshotChunking chunking) {
+        return Observable.defer(() -> {
+            Optional<MemoryIndexes.Plan<K>> plan = indexes.plan(query.predicate(), query.sorting());
+            UnicastSubject<Notification<S>> changes = UnicastSubject.create();
+            List<S> candidates;
+            Disposable subscription;
+            snapshotLock.writeLock().lock();
+            try {
+                subscription = liveQuery(query)
+                        .compose(Notifications.filter(query.predicate()))
+                        .subscribe(changes::onNext, changes::onError, changes::onComplete);
+                candidates = filteredCandidates(query, plan).toList().blockingGet();
+            } finally {
+                snapshotLock.writeLock().unlock();
+            }
+            return query(query, Observable.fromIterable(candidates), plan)
+                    .compose(chunking.<S>chunks())
+                    .filter(chunk -> !chunk.isEmpty())
+                    .map(chunk -> chunk.stream().map(Notification::ofCreated).collect(Collectors.toList()))
+                    .concatWith(Observable.just(Collections.<Notification<S>>emptyList()))
+                    .concatWith(changes.map(Collections::singletonList))
+                    .doFinally(subscription::dispose);
+        });
+    }
+
+    private <T> Observable<T> query(QueryInfo<K, S, T> query, Observable<S> candidates, Optional<MemoryIndexes.Plan<K>> plan) {
         Function<S, T> mapper = Expressions.compileRx(query.mapping());
-        return Observable.fromIterable(objects.values())
-                .flatMapMaybe(val -> Maybe.fromCallable(val::get))
-                .filter(predicate)
-                .compose(ob -> Optional.ofNullable(query.sorting()).map(SortingInfos::toComparator).map(ob::sorted).orElse(ob))
-                .compose(ob -> Optional.ofNullable(query.skip()).map(ob::skip).orElse(ob))
-                .compose(ob -> Optional.ofNullable(query.limit()).map(ob::take).orElse(ob))
+        boolean ordered = plan.map(MemoryIndexes.Plan::isOrdered).orElse(false);
+        return candidates
+                .compose(ob -> Optional.ofNullable(query.sorting())
+                        .filter(s -> !s.isEmpty() && !ordered)
+                        .map(SortingInfos::toComparator)
+                        .<Observable<S>>map(comparator -> ob.compose(TopKTransformer.create(comparator, query.skip(), query.limit())))
+                        .orElseGet(() -> ob
+                                .compose(o -> Optional.ofNullable(query.skip()).map(o::skip).orElse(o))
+                                .compose(o -> Optional.ofNullable(query.limit()).map(o::take).orElse(o))))
                 .doOnNext(val -> log.trace("Object without references: {}", val))
                 .flatMapSingle(this::applyReferences)
                 .doOnNext(val -> log.trace("Object with references: {}", val))
@@ -162,10 +322,10 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
     @SuppressWarnings({"unchecked", "rawtypes"})
     @Override
     public <T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
-        return notificationSubject
+        return notificationBus.get()
+                .observe()
                 .doOnSubscribe(d -> log.debug("Subscribed!!!"))
                 .doOnNext(n -> log.debug("Notification: {}", n))
-                .observeOn(notificationScheduler.get())
                 .compose(src -> Optional.ofNullable(query.mapping())
                         .map(Expressions::compile)
                         .map(m -> src.map(nn -> nn.map(m)))
@@ -174,9 +334,47 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
 
     @Override
     public <T, R> Maybe<R> aggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
-        return query(query).toList()
+        Expression.Type type = aggregator.apply(CollectionExpression
+                .indirectArg(TypeTokens.ofParameterized(Collection.class, query.objectType())))
+                .type();
+        return MemoryAggregations.<T, R>collector(type)
+                .filter(c -> canAggregateInPlace(query, type))
+                .map(collector -> Maybe.fromCallable(() -> scan(query).collect(collector)))
+                .orElseGet(() -> aggregateList(query, aggregator));
+    }
+
+    private boolean canAggregateInPlace(QueryInfo<K, S, ?> query, Expression.Type type) {
+        return query.skip() == null
+                && query.limit() == null
+                && !Optional.ofNullable(query.distinct()).orElse(false)
+                && (type == Expression.Type.Count || referenceProperties.get().isEmpty());
+    }
+
+    private <T> Stream<T> scan(QueryInfo<K, S, T> query) {
+        java.util.function.Predicate<S> predicate = Expressions.compilePredicate(query.predicate());
+        java.util.function.Function<S, T> mapper = Expressions.compile(query.mapping());
+        return candidateStream(indexes.plan(query.predicate(), ImmutableList.of()))
+                .filter(predicate)
+                .map(mapper)
+                .filter(Objects::nonNull);
+    }
+
+    // Mapping is applied here rather than by the query, so that null mapped values are skipped as by the scan
+    private <T, R> Maybe<R> aggregateList(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
+        java.util.function.Function<S, T> mapper = Expressions.compile(query.mapping());
+        QueryInfo<K, S, S> sourceQuery = QueryInfo.<K, S, S>builder()
+                .metaClass(query.metaClass())
+                .predicate(query.predicate())
+                .sorting(query.sorting())
+                .skip(query.skip())
+                .limit(query.limit())
+                .build();
+        return query(sourceQuery).toList()
                 .toMaybe()
-                .flatMap(list -> {
+                .flatMap(entities -> {
+                    Stream<T> values = entities.stream().map(mapper).filter(Objects::nonNull);
+                    List<T> list = (Optional.ofNullable(query.distinct()).orElse(false) ? values.distinct() : values)
+                            .collect(Collectors.toList());
                     CollectionExpression<T, T, Collection<T>> collection = ConstantExpression.of(list);
                     UnaryOperationExpression<T, Collection<T>, R> aggregated = aggregator.apply(collection);
                     java.util.function.Function<T, R> aggFunc = Expressions.compile(aggregated);
@@ -195,28 +393,21 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
     @Override
     public Single<Integer> delete(DeleteInfo<K, S> delete) {
         Predicate<S> predicate = Expressions.compileRxPredicate(delete.predicate());
-        return Observable
-                .fromIterable(objects.values())
-                .map(AtomicReference::get)
+        return candidates(indexes.plan(delete.predicate(), ImmutableList.of()))
                 .filter(predicate)
                 .compose(ob -> Optional.ofNullable(delete.limit()).map(ob::take).orElse(ob))
                 .map(metaClass::keyOf)
-                .filter(key -> Optional
-                        .ofNullable(objects.remove(key))
-                        .map(AtomicReference::get)
-                        .map(e -> {
-                            notificationSubject.onNext(Notification.ofDeleted(e));
-                            return true;
-                        })
-                        .orElse(false)
-                )
+                .filter(key -> remove(key).isPresent())
                 .count()
                 .map(Long::intValue);
     }
 
     @Override
     public Completable drop() {
-        return Completable.fromAction(objects::clear);
+        return Completable.fromAction(() -> {
+            objects.clear();
+            indexes.clear();
+        });
     }
 
     @SuppressWarnings("unchecked")
@@ -249,11 +440,12 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
     }
 
     Maybe<S> find(K key) {
-        return Maybe.fromCallable(() -> objects.get(key)).map(AtomicReference::get);
+        return Maybe.fromCallable(() -> Optional.ofNullable(objects.get(key)).map(AtomicReference::get).orElse(null));
     }
 
     @Override
     public void close() {
+        notificationBus.ifExists(NotificationBus::close);
         notificationScheduler.ifExists(Scheduler::shutdown);
         notificationExecutor.ifExists(ExecutorService::shutdown);
     }
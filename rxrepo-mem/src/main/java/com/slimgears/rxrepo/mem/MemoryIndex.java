@@ -0,0 +1,89 @@
+package com.slimgears.rxrepo.mem;
+
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+abstract class MemoryIndex<K, S, V> {
+    private final PropertyMeta<S, ?> property;
+    private final Function<Object, V> valueMapper;
+    private final Set<K> nullKeys = ConcurrentHashMap.newKeySet();
+
+    MemoryIndex(PropertyMeta<S, ?> property, Function<Object, V> valueMapper) {
+        this.property = property;
+        this.valueMapper = valueMapper;
+    }
+
+    PropertyMeta<S, ?> property() {
+        return property;
+    }
+
+    void update(K key, @Nullable S oldEntity, @Nullable S newEntity) {
+        V oldValue = valueOf(oldEntity);
+        V newValue = valueOf(newEntity);
+        if (oldEntity != null && newEntity != null && Objects.equals(oldValue, newValue)) {
+            return;
+        }
+        if (oldEntity != null) {
+            if (oldValue != null) {
+                removeKey(keysByValue(), oldValue, key);
+            } else {
+                nullKeys.remove(key);
+            }
+        }
+        if (newEntity != null) {
+            if (newValue != null) {
+                addKey(keysByValue(), newValue, key);
+            } else {
+                nullKeys.add(key);
+            }
+        }
+    }
+
+    Collection<K> keysOf(@Nullable Object value) {
+        return value != null
+                ? keysByValue().getOrDefault(valueMapper.apply(value), Collections.emptySet())
+                : nullKeys;
+    }
+
+    Collection<K> nullKeys() {
+        return nullKeys;
+    }
+
+    void clear() {
+        keysByValue().clear();
+        nullKeys.clear();
+    }
+
+    protected abstract Map<V, Set<K>> keysByValue();
+
+    private V valueOf(@Nullable S entity) {
+        return Optional.ofNullable(entity)
+                .map(property::getValue)
+                .map(valueMapper)
+                .orElse(null);
+    }
+
+    private static <K, V> void addKey(Map<V, Set<K>> map, V value, K key) {
+        map.compute(value, (v, keys) -> {
+            keys = keys != null ? keys : ConcurrentHashMap.newKeySet();
+            keys.add(key);
+            return keys;
+        });
+    }
+
+    private static <K, V> void removeKey(Map<V, Set<K>> map, V value, K key) {
+        map.computeIfPresent(value, (v, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+}
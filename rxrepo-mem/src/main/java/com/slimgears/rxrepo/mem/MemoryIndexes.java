@@ -0,0 +1,383 @@
+package com.slimgears.rxrepo.mem;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.slimgears.rxrepo.annotations.Indexable;
+import com.slimgears.rxrepo.expressions.BinaryOperationExpression;
+import com.slimgears.rxrepo.expressions.ConstantExpression;
+import com.slimgears.rxrepo.expressions.DelegateExpression;
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.expressions.PropertyExpression;
+import com.slimgears.rxrepo.expressions.UnaryOperationExpression;
+import com.slimgears.rxrepo.query.provider.SortingInfo;
+import com.slimgears.util.autovalue.annotations.Key;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+import com.slimgears.util.stream.Streams;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+class MemoryIndexes<K, S> {
+    private final MetaClassWithKey<K, S> metaClass;
+    private final ImmutableMap<String, HashMemoryIndex<K, S, ?>> hashIndexes;
+    private final ImmutableMap<String, SortedMemoryIndex<K, S, ?>> sortedIndexes;
+    private final ImmutableList<MemoryIndex<K, S, ?>> allIndexes;
+    private final Optional<TrigramSearchIndex<K, S>> searchIndex;
+
+    private MemoryIndexes(MetaClassWithKey<K, S> metaClass) {
+        this.metaClass = metaClass;
+        ImmutableList<PropertyMeta<S, ?>> indexedProperties = Streams
+                .fromIterable(metaClass.properties())
+                .filter(p -> p.hasAnnotation(Indexable.class) && !p.hasAnnotation(Key.class))
+                .collect(ImmutableList.toImmutableList());
+        this.hashIndexes = indexedProperties
+                .stream()
+                .collect(ImmutableMap.toImmutableMap(PropertyMeta::name, MemoryIndexes::hashIndexOf));
+        // Ordering of string representation differs from ordering of values, so asString properties are not range indexed
+        this.sortedIndexes = indexedProperties
+                .stream()
+                .filter(p -> !p.getAnnotation(Indexable.class).asString())
+                .filter(p -> p.type().wrap().isSubtypeOf(Comparable.class))
+                .collect(ImmutableMap.toImmutableMap(PropertyMeta::name, SortedMemoryIndex::create));
+        this.allIndexes = ImmutableList.<MemoryIndex<K, S, ?>>builder()
+                .addAll(hashIndexes.values())
+                .addAll(sortedIndexes.values())
+                .build();
+        this.searchIndex = TrigramSearchIndex.create(metaClass);
+    }
+
+    static <K, S> MemoryIndexes<K, S> create(MetaClassWithKey<K, S> metaClass) {
+        return new MemoryIndexes<>(metaClass);
+    }
+
+    private static <K, S> HashMemoryIndex<K, S, ?> hashIndexOf(PropertyMeta<S, ?> property) {
+        return property.getAnnotation(Indexable.class).asString()
+                ? HashMemoryIndex.createAsString(property)
+                : HashMemoryIndex.create(property);
+    }
+
+    void update(K key, @Nullable S oldEntity, @Nullable S newEntity) {
+        allIndexes.forEach(index -> index.update(key, oldEntity, newEntity));
+        searchIndex.ifPresent(index -> index.update(key, oldEntity, newEntity));
+    }
+
+    void clear() {
+        allIndexes.forEach(MemoryIndex::clear);
+        searchIndex.ifPresent(TrigramSearchIndex::clear);
+    }
+
+    Optional<Plan<K>> plan(@Nullable ObjectExpression<S, Boolean> predicate, List<SortingInfo<S, ?, ? extends Comparable<?>>> sorting) {
+        Optional<Access<K>> access = Optional.ofNullable(predicate).flatMap(p -> plan(p, false));
+        Optional<SortingInfo<S, ?, ? extends Comparable<?>>> singleSorting = Optional.of(sorting)
+                .filter(s -> s.size() == 1)
+                .map(s -> s.get(0));
+
+        Optional<Plan<K>> orderedPlan = singleSorting.flatMap(si -> access
+                .map(a -> a.orderedKeys(si.property().property(), si.ascending()))
+                .orElseGet(() -> propertyOf(si.property())
+                        .map(p -> sortedIndexes.get(p.name()))
+                        .map(index -> () -> index.ordered(si.ascending())))
+                .map(keys -> new Plan<>(keys, true)));
+
+        return orderedPlan.isPresent()
+                ? orderedPlan
+                : access.map(a -> new Plan<>(a::keys, false));
+    }
+
+    private Optional<Access<K>> plan(ObjectExpression<S, ?> expression, boolean negated) {
+        Expression.Type type = expression.type();
+        if (type == Expression.Type.Not) {
+            return plan(((UnaryOperationExpression<S, ?, ?>)expression).operand(), !negated);
+        }
+        if ((type == Expression.Type.And && !negated) || (type == Expression.Type.Or && negated)) {
+            List<Access<K>> accesses = new ArrayList<>();
+            collectConjunction(expression, negated, accesses);
+            return planConjunction(accesses);
+        }
+        if ((type == Expression.Type.Or && !negated) || (type == Expression.Type.And && negated)) {
+            BinaryOperationExpression<S, ?, ?, ?> binary = (BinaryOperationExpression<S, ?, ?, ?>)expression;
+            Optional<Access<K>> left = plan(binary.left(), negated);
+            Optional<Access<K>> right = plan(binary.right(), negated);
+            return left.isPresent() && right.isPresent()
+                    ? Optional.of(new UnionAccess<>(left.get(), right.get()))
+                    : Optional.empty();
+        }
+        return planTerm(expression, negated);
+    }
+
+    private void collectConjunction(ObjectExpression<S, ?> expression, boolean negated, List<Access<K>> accesses) {
+        Expression.Type type = expression.type();
+        if (type == Expression.Type.Not) {
+            collectConjunction(((UnaryOperationExpression<S, ?, ?>)expression).operand(), !negated, accesses);
+        } else if ((type == Expression.Type.And && !negated) || (type == Expression.Type.Or && negated)) {
+            BinaryOperationExpression<S, ?, ?, ?> binary = (BinaryOperationExpression<S, ?, ?, ?>)expression;
+            collectConjunction(binary.left(), negated, accesses);
+            collectConjunction(binary.right(), negated, accesses);
+        } else {
+            plan(expression, negated).ifPresent(accesses::add);
+        }
+    }
+
+    private Optional<Access<K>> planConjunction(List<Access<K>> accesses) {
+        Map<String, RangeAccess<?>> ranges = new LinkedHashMap<>();
+        List<Access<K>> candidates = new ArrayList<>();
+        for (Access<K> access : accesses) {
+            if (access instanceof RangeAccess) {
+                RangeAccess<?> range = (RangeAccess<?>)access;
+                ranges.merge(range.index.property().name(), range, RangeAccess::intersect);
+            } else {
+                candidates.add(access);
+            }
+        }
+        candidates.addAll(ranges.values());
+        return candidates.stream().min(Comparator.comparingLong(Access::estimate));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Optional<Access<K>> planTerm(ObjectExpression<S, ?> expression, boolean negated) {
+        Expression.Type type = expression.type();
+        if (type == Expression.Type.IsNull && !negated) {
+            return propertyOf(((UnaryOperationExpression<S, ?, ?>)expression).operand())
+                    .map(p -> hashIndexes.get(p.name()))
+                    .map(index -> new LookupAccess<>(Collections.singletonList(index.nullKeys())));
+        }
+
+        if (!(expression instanceof BinaryOperationExpression)) {
+            return Optional.empty();
+        }
+
+        BinaryOperationExpression<S, ?, ?, ?> binary = (BinaryOperationExpression<S, ?, ?, ?>)expression;
+        if (type == Expression.Type.SearchText) {
+            return negated ? Optional.empty() : planSearch(binary);
+        }
+
+        Optional<PropertyMeta<S, ?>> leftProperty = propertyOf(binary.left());
+        Optional<PropertyMeta<S, ?>> property = leftProperty.isPresent() ? leftProperty : propertyOf(binary.right());
+        ObjectExpression<S, ?> operand = leftProperty.isPresent() ? binary.right() : binary.left();
+        if (!property.isPresent() || operand.type().operationType() != Expression.OperationType.Constant) {
+            return Optional.empty();
+        }
+
+        PropertyMeta<S, ?> propertyMeta = property.get();
+        Object value = ((ConstantExpression<S, ?>)operand).value();
+        if (type == Expression.Type.Equals && !negated && value != null) {
+            return lookup(propertyMeta, Collections.singletonList(value));
+        }
+        if (type == Expression.Type.ValueIn && !negated && leftProperty.isPresent() && value instanceof Collection) {
+            return lookup(propertyMeta, (Collection<Object>)value);
+        }
+        if ((type == Expression.Type.GreaterThan || type == Expression.Type.LessThan) && value != null) {
+            SortedMemoryIndex<K, S, Object> index = (SortedMemoryIndex<K, S, Object>)sortedIndexes.get(propertyMeta.name());
+            if (index == null) {
+                return Optional.empty();
+            }
+            boolean propertyGreater = (type == Expression.Type.GreaterThan) == leftProperty.isPresent();
+            // Negated comparisons (e.g. greaterOrEqual) also match entities with null values
+            if (propertyGreater) {
+                return Optional.of(negated
+                        ? new RangeAccess<>(index, null, true, value, true, true)
+                        : new RangeAccess<>(index, value, false, null, true, false));
+            } else {
+                return Optional.of(negated
+                        ? new RangeAccess<>(index, value, true, null, true, true)
+                        : new RangeAccess<>(index, null, true, value, false, false));
+            }
+        }
+        return Optional.empty();
+    }
+
+    private Optional<Access<K>> planSearch(BinaryOperationExpression<S, ?, ?, ?> expression) {
+        ObjectExpression<S, ?> target = expression.left();
+        while (target instanceof DelegateExpression) {
+            target = ((DelegateExpression<S, ?>)target).delegate();
+        }
+        if (target.type().operationType() != Expression.OperationType.Argument
+                || expression.right().type().operationType() != Expression.OperationType.Constant) {
+            return Optional.empty();
+        }
+        Object searchExpr = ((ConstantExpression<S, ?>)expression.right()).value();
+        return searchIndex
+                .filter(index -> searchExpr instanceof String)
+                .flatMap(index -> index.candidates((String)searchExpr))
+                .map(keys -> new LookupAccess<>(Collections.singletonList(keys)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Optional<Access<K>> lookup(PropertyMeta<S, ?> property, Collection<Object> values) {
+        if (isKeyProperty(property)) {
+            return Optional.of(new LookupAccess<>(Collections.singletonList((Collection<K>)values)));
+        }
+        return Optional.ofNullable((MemoryIndex<K, S, Object>)hashIndexes.get(property.name()))
+                .map(index -> new LookupAccess<>(values
+                        .stream()
+                        .map(index::keysOf)
+                        .collect(ImmutableList.toImmutableList())));
+    }
+
+    private boolean isKeyProperty(PropertyMeta<S, ?> property) {
+        return Objects.equals(property.name(), metaClass.keyProperty().name());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Optional<PropertyMeta<S, ?>> propertyOf(ObjectExpression<S, ?> expression) {
+        if (expression.type().operationType() != Expression.OperationType.Property) {
+            return Optional.empty();
+        }
+        PropertyExpression<S, ?, ?> propertyExpression = (PropertyExpression<S, ?, ?>)expression;
+        if (propertyExpression.target().type().operationType() != Expression.OperationType.Argument) {
+            return Optional.empty();
+        }
+        PropertyMeta<S, ?> property = (PropertyMeta<S, ?>)propertyExpression.property();
+        return isKeyProperty(property) || hashIndexes.containsKey(property.name())
+                ? Optional.of(property)
+                : Optional.empty();
+    }
+
+    static class Plan<K> {
+        private final Supplier<Stream<K>> keys;
+        private final boolean ordered;
+
+        private Plan(Supplier<Stream<K>> keys, boolean ordered) {
+            this.keys = keys;
+            this.ordered = ordered;
+        }
+
+        Iterable<K> keys() {
+            return () -> keys.get().iterator();
+        }
+
+        boolean isOrdered() {
+            return ordered;
+        }
+    }
+
+    private static abstract class Access<K> {
+        abstract long estimate();
+        abstract Stream<K> keys();
+
+        Optional<Supplier<Stream<K>>> orderedKeys(PropertyMeta<?, ?> property, boolean ascending) {
+            return Optional.empty();
+        }
+    }
+
+    private static class LookupAccess<K> extends Access<K> {
+        private final List<Collection<K>> keySets;
+
+        private LookupAccess(List<Collection<K>> keySets) {
+            this.keySets = keySets;
+        }
+
+        @Override
+        long estimate() {
+            return keySets.stream().mapToLong(Collection::size).sum();
+        }
+
+        @Override
+        Stream<K> keys() {
+            Stream<K> keys = keySets.stream().flatMap(Collection::stream);
+            return keySets.size() > 1 ? keys.distinct() : keys;
+        }
+    }
+
+    private static class UnionAccess<K> extends Access<K> {
+        private final Access<K> first;
+        private final Access<K> second;
+
+        private UnionAccess(Access<K> first, Access<K> second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        long estimate() {
+            long estimate = first.estimate() + second.estimate();
+            return estimate >= 0 ? estimate : Long.MAX_VALUE;
+        }
+
+        @Override
+        Stream<K> keys() {
+            return Stream.concat(first.keys(), second.keys()).distinct();
+        }
+    }
+
+    private class RangeAccess<V> extends Access<K> {
+        private final SortedMemoryIndex<K, S, V> index;
+        private final V from;
+        private final boolean fromInclusive;
+        private final V to;
+        private final boolean toInclusive;
+        private final boolean includeNulls;
+
+        private RangeAccess(SortedMemoryIndex<K, S, V> index, @Nullable V from, boolean fromInclusive, @Nullable V to, boolean toInclusive, boolean includeNulls) {
+            this.index = index;
+            this.from = from;
+            this.fromInclusive = fromInclusive;
+            this.to = to;
+            this.toInclusive = toInclusive;
+            this.includeNulls = includeNulls;
+        }
+
+        @Override
+        long estimate() {
+            return Long.MAX_VALUE / 2;
+        }
+
+        @Override
+        Stream<K> keys() {
+            return index.range(from, fromInclusive, to, toInclusive, includeNulls, true);
+        }
+
+        @Override
+        Optional<Supplier<Stream<K>>> orderedKeys(PropertyMeta<?, ?> property, boolean ascending) {
+            return Objects.equals(property.name(), index.property().name())
+                    ? Optional.of(() -> index.range(from, fromInclusive, to, toInclusive, includeNulls, ascending))
+                    : Optional.empty();
+        }
+
+        @SuppressWarnings("unchecked")
+        private RangeAccess<?> intersect(RangeAccess<?> other) {
+            RangeAccess<V> range = (RangeAccess<V>)other;
+            V newFrom = from;
+            boolean newFromInclusive = fromInclusive;
+            int fromComparison = compare(range.from, from, true);
+            if (fromComparison > 0 || (fromComparison == 0 && !range.fromInclusive)) {
+                newFrom = range.from;
+                newFromInclusive = range.fromInclusive;
+            }
+
+            V newTo = to;
+            boolean newToInclusive = toInclusive;
+            int toComparison = compare(range.to, to, false);
+            if (toComparison < 0 || (toComparison == 0 && !range.toInclusive)) {
+                newTo = range.to;
+                newToInclusive = range.toInclusive;
+            }
+
+            return new RangeAccess<>(index, newFrom, newFromInclusive, newTo, newToInclusive, includeNulls && range.includeNulls);
+        }
+
+        // Missing bound is treated as -infinity for lower bounds and +infinity for upper bounds
+        @SuppressWarnings("unchecked")
+        private int compare(@Nullable V first, @Nullable V second, boolean lowerBound) {
+            if (first == null || second == null) {
+                if (first == second) {
+                    return 0;
+                }
+                return (first == null) == lowerBound ? -1 : 1;
+            }
+            return ((Comparable<V>)first).compareTo(second);
+        }
+    }
+}
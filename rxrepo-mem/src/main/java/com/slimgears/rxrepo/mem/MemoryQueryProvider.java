@@ -1,5 +1,6 @@
 package com.slimgears.rxrepo.mem;
 
+import com.google.common.collect.ImmutableMap;
 import com.slimgears.rxrepo.encoding.MetaObjectResolver;
 import com.slimgears.rxrepo.query.provider.AbstractEntityQueryProviderAdapter;
 import com.slimgears.rxrepo.query.provider.EntityQueryProvider;
@@ -11,14 +12,40 @@ import io.reactivex.Maybe;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public class MemoryQueryProvider extends AbstractEntityQueryProviderAdapter implements MetaObjectResolver {
-    private final List<AutoCloseable> closeableList = Collections.synchronizedList(new ArrayList<>());
+    private final List<MemoryEntityQueryProvider<?, ?>> providers = Collections.synchronizedList(new ArrayList<>());
+    private final int parallelScanThreshold;
+    private final int notificationBufferSize;
+    private final NotificationOverflowPolicy overflowPolicy;
+
+    public MemoryQueryProvider() {
+        this(MemoryRepository.defaultParallelScanThreshold);
+    }
+
+    public MemoryQueryProvider(int parallelScanThreshold) {
+        this(parallelScanThreshold, MemoryRepository.defaultNotificationBufferSize, MemoryRepository.defaultOverflowPolicy);
+    }
+
+    public MemoryQueryProvider(int parallelScanThreshold, int notificationBufferSize, NotificationOverflowPolicy overflowPolicy) {
+        this.parallelScanThreshold = parallelScanThreshold;
+        this.notificationBufferSize = notificationBufferSize;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public Map<String, NotificationStats> notificationStats() {
+        synchronized (providers) {
+            return providers.stream().collect(ImmutableMap.toImmutableMap(
+                    p -> p.metaClass().simpleName(),
+                    MemoryEntityQueryProvider::notificationStats));
+        }
+    }
 
     @Override
     protected <K, S> EntityQueryProvider<K, S> createProvider(MetaClassWithKey<K, S> metaClass) {
-        MemoryEntityQueryProvider<K, S> provider = MemoryEntityQueryProvider.create(metaClass, this);
-        closeableList.add(provider);
+        MemoryEntityQueryProvider<K, S> provider = MemoryEntityQueryProvider.create(metaClass, this, parallelScanThreshold, notificationBufferSize, overflowPolicy);
+        providers.add(provider);
         return provider;
     }
 
@@ -34,7 +61,7 @@ public class MemoryQueryProvider extends AbstractEntityQueryProviderAdapter impl
 
     @Override
     public void close() {
-        closeableList.stream()
+        providers.stream()
                 .map(Safe::ofClosable)
                 .forEach(Safe.Closeable::close);
     }
@@ -7,13 +7,63 @@ import com.slimgears.rxrepo.query.decorator.UpdateReferencesFirstQueryProviderDe
 import com.slimgears.rxrepo.query.provider.QueryProvider;
 
 public class MemoryRepository {
+    static final int defaultParallelScanThreshold = 10000;
+    static final int defaultNotificationBufferSize = 8192;
+    static final NotificationOverflowPolicy defaultOverflowPolicy = NotificationOverflowPolicy.Coalesce;
+
     public static Repository create(QueryProvider.Decorator... decorators) {
-        return Repository
-                .fromProvider(
-                        new MemoryQueryProvider(),
-                        SchedulingQueryProviderDecorator.createDefault(),
-                        LiveQueryProviderDecorator.create(),
-                        UpdateReferencesFirstQueryProviderDecorator.create(),
-                        QueryProvider.Decorator.of(decorators));
+        return builder().decorate(decorators).build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private int parallelScanThreshold = defaultParallelScanThreshold;
+        private int notificationBufferSize = defaultNotificationBufferSize;
+        private NotificationOverflowPolicy overflowPolicy = defaultOverflowPolicy;
+        private QueryProvider.Decorator decorator = QueryProvider.Decorator.identity();
+
+        private Builder() {
+        }
+
+        public Builder parallelScanThreshold(int parallelScanThreshold) {
+            this.parallelScanThreshold = parallelScanThreshold;
+            return this;
+        }
+
+        public Builder notificationBufferSize(int notificationBufferSize) {
+            this.notificationBufferSize = notificationBufferSize;
+            return this;
+        }
+
+        public Builder overflowPolicy(NotificationOverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        public Builder decorate(QueryProvider.Decorator... decorators) {
+            decorator = QueryProvider.Decorator.of(this.decorator, QueryProvider.Decorator.of(decorators));
+            return this;
+        }
+
+        public MemoryQueryProvider createProvider() {
+            return new MemoryQueryProvider(parallelScanThreshold, notificationBufferSize, overflowPolicy);
+        }
+
+        public Repository build() {
+            return build(createProvider());
+        }
+
+        public Repository build(MemoryQueryProvider provider) {
+            return Repository
+                    .fromProvider(
+                            provider,
+                            SchedulingQueryProviderDecorator.createDefault(),
+                            LiveQueryProviderDecorator.create(),
+                            UpdateReferencesFirstQueryProviderDecorator.create(),
+                            decorator);
+        }
     }
 }
@@ -0,0 +1,237 @@
+package com.slimgears.rxrepo.mem;
+
+import com.slimgears.rxrepo.query.Notification;
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.Scheduler;
+import io.reactivex.exceptions.MissingBackpressureException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+class NotificationBus<S> implements AutoCloseable {
+    private final static Logger log = LoggerFactory.getLogger(NotificationBus.class);
+    private final static int maxBatchSize = 256;
+    private final static ThreadLocal<Boolean> draining = ThreadLocal.withInitial(() -> false);
+    private final Object[] ring;
+    private final int mask;
+    private final NotificationOverflowPolicy overflowPolicy;
+    private final Function<S, ?> keyOf;
+    private final Scheduler scheduler;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private volatile long published;
+    private long reserved;
+    private long coalesced;
+    private long dropped;
+
+    private NotificationBus(int capacity, NotificationOverflowPolicy overflowPolicy, Function<S, ?> keyOf, Scheduler scheduler) {
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        this.ring = new Object[size];
+        this.mask = size - 1;
+        this.overflowPolicy = overflowPolicy;
+        this.keyOf = keyOf;
+        this.scheduler = scheduler;
+    }
+
+    static <S> NotificationBus<S> create(int capacity, NotificationOverflowPolicy overflowPolicy, Function<S, ?> keyOf, Scheduler scheduler) {
+        return new NotificationBus<>(capacity, overflowPolicy, keyOf, scheduler);
+    }
+
+    // Under Block policy a producer reserves room for its notification, waiting for the lagging subscribers,
+    // before it takes any lock its subscribers may need: a producer waiting while holding the snapshot lock
+    // would stall a subscriber taking a snapshot, and the subscriber would never catch up.
+    // Producers running on a delivery thread do not wait, their notifications are coalesced if there is no room
+    boolean reserve() {
+        if (overflowPolicy != NotificationOverflowPolicy.Block || draining.get()) {
+            return false;
+        }
+        synchronized (this) {
+            while (subscribers.stream().anyMatch(subscriber -> published + reserved - subscriber.sequence >= ring.length)) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            ++reserved;
+            return true;
+        }
+    }
+
+    synchronized void release() {
+        --reserved;
+        notifyAll();
+    }
+
+    void publish(Notification<S> notification) {
+        publish(notification, false);
+    }
+
+    void publish(Notification<S> notification, boolean reserved) {
+        synchronized (this) {
+            if (reserved) {
+                --this.reserved;
+            }
+            ensureCapacity();
+            ring[(int)(published & mask)] = notification;
+            published++;
+        }
+        subscribers.forEach(Subscriber::schedule);
+    }
+
+    Observable<Notification<S>> observe() {
+        return Observable
+                .<List<Notification<S>>>create(emitter -> {
+                    Subscriber subscriber = new Subscriber(emitter, scheduler.createWorker());
+                    synchronized (this) {
+                        subscriber.sequence = published;
+                        subscribers.add(subscriber);
+                    }
+                    emitter.setCancellable(() -> remove(subscriber));
+                })
+                .concatMapIterable(batch -> batch);
+    }
+
+    synchronized NotificationStats stats() {
+        long maxLag = subscribers.stream().mapToLong(Subscriber::lag).max().orElse(0);
+        return NotificationStats.create(published, subscribers.size(), maxLag, coalesced, dropped);
+    }
+
+    @Override
+    public synchronized void close() {
+        subscribers.forEach(subscriber -> subscriber.worker.dispose());
+        subscribers.clear();
+        notifyAll();
+    }
+
+    private synchronized void remove(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+        subscriber.worker.dispose();
+        notifyAll();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Notification<S> slot(long sequence) {
+        return (Notification<S>)ring[(int)(sequence & mask)];
+    }
+
+    private boolean isFull(Subscriber subscriber) {
+        return published - subscriber.sequence >= ring.length;
+    }
+
+    // Publishing never blocks: room for a reserved notification is already there, and the one published
+    // without a reservation is coalesced under Block policy
+    private void ensureCapacity() {
+        for (Subscriber subscriber = fullSubscriber(); subscriber != null; subscriber = fullSubscriber()) {
+            if (overflowPolicy == NotificationOverflowPolicy.DropOldest) {
+                dropOldest(subscriber);
+            } else {
+                coalesce(subscriber);
+            }
+        }
+    }
+
+    private Subscriber fullSubscriber() {
+        return subscribers.stream().filter(this::isFull).findFirst().orElse(null);
+    }
+
+    private void coalesce(Subscriber subscriber) {
+        log.debug("Subscriber lags {} notifications behind, coalescing", published - subscriber.sequence);
+        coalesced += published - subscriber.sequence;
+        for (; subscriber.sequence < published; ++subscriber.sequence) {
+            subscriber.coalesce(slot(subscriber.sequence));
+        }
+    }
+
+    private void dropOldest(Subscriber subscriber) {
+        long skipped = published - subscriber.sequence - ring.length + 1;
+        log.warn("Subscriber lags {} notifications behind, dropping {} oldest", published - subscriber.sequence, skipped);
+        dropped += skipped;
+        subscriber.sequence += skipped;
+        subscriber.resync = true;
+    }
+
+    private class Subscriber {
+        private final ObservableEmitter<List<Notification<S>>> emitter;
+        private final Scheduler.Worker worker;
+        private final AtomicInteger wip = new AtomicInteger();
+        private final Map<Object, Notification<S>> pending = new LinkedHashMap<>();
+        private long sequence;
+        private boolean resync;
+
+        private Subscriber(ObservableEmitter<List<Notification<S>>> emitter, Scheduler.Worker worker) {
+            this.emitter = emitter;
+            this.worker = worker;
+        }
+
+        void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                worker.schedule(this::drain);
+            }
+        }
+
+        long lag() {
+            return published - sequence + pending.size();
+        }
+
+        void coalesce(Notification<S> notification) {
+            Object key = keyOf.apply(notification.newValue() != null ? notification.newValue() : notification.oldValue());
+            pending.merge(key, notification, (first, last) -> Notification.ofModified(first.oldValue(), last.newValue()));
+        }
+
+        private void drain() {
+            draining.set(true);
+            try {
+                int missed = 1;
+                do {
+                    drainAvailable();
+                    missed = wip.addAndGet(-missed);
+                } while (missed != 0);
+            } finally {
+                draining.set(false);
+            }
+        }
+
+        private void drainAvailable() {
+            while (!emitter.isDisposed()) {
+                List<Notification<S>> batch;
+                boolean overflow;
+                synchronized (NotificationBus.this) {
+                    overflow = resync;
+                    batch = overflow ? null : nextBatch();
+                    NotificationBus.this.notifyAll();
+                }
+                if (overflow) {
+                    emitter.tryOnError(new MissingBackpressureException("Live query subscriber fell behind, notifications were dropped; resubscribe to resync"));
+                    return;
+                }
+                if (batch.isEmpty()) {
+                    return;
+                }
+                emitter.onNext(batch);
+            }
+        }
+
+        private List<Notification<S>> nextBatch() {
+            long end = Math.min(published, sequence + maxBatchSize);
+            List<Notification<S>> batch = new ArrayList<>(pending.size() + (int)(end - sequence));
+            pending.values()
+                    .stream()
+                    .filter(n -> n.oldValue() != null || n.newValue() != null)
+                    .forEach(batch::add);
+            pending.clear();
+            for (; sequence < end; ++sequence) {
+                batch.add(slot(sequence));
+            }
+            return batch;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.slimgears.rxrepo.mem;
+
+public enum NotificationOverflowPolicy {
+    Block,
+    Coalesce,
+    DropOldest
+}
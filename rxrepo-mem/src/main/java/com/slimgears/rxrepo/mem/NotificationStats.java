@@ -0,0 +1,52 @@
+package com.slimgears.rxrepo.mem;
+
+public class NotificationStats {
+    private final long published;
+    private final int subscribers;
+    private final long maxLag;
+    private final long coalesced;
+    private final long dropped;
+
+    private NotificationStats(long published, int subscribers, long maxLag, long coalesced, long dropped) {
+        this.published = published;
+        this.subscribers = subscribers;
+        this.maxLag = maxLag;
+        this.coalesced = coalesced;
+        this.dropped = dropped;
+    }
+
+    static NotificationStats create(long published, int subscribers, long maxLag, long coalesced, long dropped) {
+        return new NotificationStats(published, subscribers, maxLag, coalesced, dropped);
+    }
+
+    public long published() {
+        return published;
+    }
+
+    public int subscribers() {
+        return subscribers;
+    }
+
+    public long maxLag() {
+        return maxLag;
+    }
+
+    public long coalesced() {
+        return coalesced;
+    }
+
+    public long dropped() {
+        return dropped;
+    }
+
+    @Override
+    public String toString() {
+        return "NotificationStats{" +
+                "published=" + published +
+                ", subscribers=" + subscribers +
+                ", maxLag=" + maxLag +
+                ", coalesced=" + coalesced +
+                ", dropped=" + dropped +
+                '}';
+    }
+}
@@ -0,0 +1,55 @@
+package com.slimgears.rxrepo.mem;
+
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+class SortedMemoryIndex<K, S, V> extends MemoryIndex<K, S, V> {
+    private final ConcurrentNavigableMap<V, Set<K>> keysByValue = new ConcurrentSkipListMap<>();
+
+    @SuppressWarnings("unchecked")
+    private SortedMemoryIndex(PropertyMeta<S, V> property) {
+        super(property, value -> (V)value);
+    }
+
+    static <K, S, V> SortedMemoryIndex<K, S, V> create(PropertyMeta<S, V> property) {
+        return new SortedMemoryIndex<>(property);
+    }
+
+    @Override
+    protected Map<V, Set<K>> keysByValue() {
+        return keysByValue;
+    }
+
+    // Nulls go last in ascending order and first in descending order, same as Expressions.compileComparator
+    Stream<K> range(@Nullable V from, boolean fromInclusive, @Nullable V to, boolean toInclusive, boolean includeNulls, boolean ascending) {
+        NavigableMap<V, Set<K>> range = keysByValue;
+        if (from != null) {
+            range = range.tailMap(from, fromInclusive);
+        }
+        if (to != null) {
+            range = range.headMap(to, toInclusive);
+        }
+        if (!ascending) {
+            range = range.descendingMap();
+        }
+        Stream<K> keys = range.values().stream().flatMap(Collection::stream);
+        if (!includeNulls) {
+            return keys;
+        }
+        return ascending
+                ? Stream.concat(keys, nullKeys().stream())
+                : Stream.concat(nullKeys().stream(), keys);
+    }
+
+    Stream<K> ordered(boolean ascending) {
+        return range(null, true, null, true, true, ascending);
+    }
+}
@@ -0,0 +1,107 @@
+package com.slimgears.rxrepo.mem;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Sets;
+import com.slimgears.rxrepo.encoding.MetaClassSearchableFields;
+import com.slimgears.util.autovalue.annotations.MetaClass;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+class TrigramSearchIndex<K, S> {
+    private final static int gramLength = 3;
+    private final static CharMatcher fragmentMatcher = CharMatcher.javaLetterOrDigit();
+    private final static CharMatcher supportedMatcher = fragmentMatcher
+            .or(CharMatcher.whitespace())
+            .or(CharMatcher.anyOf("*?-_@.,:;'\"/#"));
+    private final Function<Object, String> searchableText;
+    private final Map<String, Set<K>> keysByGram = new ConcurrentHashMap<>();
+
+    private TrigramSearchIndex(Function<Object, String> searchableText) {
+        this.searchableText = searchableText;
+    }
+
+    static <K, S> Optional<TrigramSearchIndex<K, S>> create(MetaClass<S> metaClass) {
+        return MetaClassSearchableFields
+                .searchableTextFromEntity(metaClass)
+                .map(TrigramSearchIndex::new);
+    }
+
+    void update(K key, @Nullable S oldEntity, @Nullable S newEntity) {
+        Set<String> oldGrams = gramsOf(oldEntity);
+        Set<String> newGrams = gramsOf(newEntity);
+        Sets.difference(oldGrams, newGrams).forEach(gram -> keysByGram.computeIfPresent(gram, (g, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        }));
+        Sets.difference(newGrams, oldGrams).forEach(gram -> keysByGram.compute(gram, (g, keys) -> {
+            keys = keys != null ? keys : ConcurrentHashMap.newKeySet();
+            keys.add(key);
+            return keys;
+        }));
+    }
+
+    void clear() {
+        keysByGram.clear();
+    }
+
+    // Returns a superset of keys matching the search expression, or empty if the expression
+    // contains no fragment long enough to be looked up
+    Optional<Collection<K>> candidates(@Nullable String searchExpr) {
+        if (searchExpr == null || !supportedMatcher.matchesAllOf(searchExpr)) {
+            return Optional.empty();
+        }
+        Set<String> grams = new HashSet<>();
+        for (String fragment : Splitter.on(fragmentMatcher.negate()).omitEmptyStrings().split(fold(searchExpr))) {
+            addGrams(fragment, grams);
+        }
+        if (grams.isEmpty()) {
+            return Optional.empty();
+        }
+
+        List<Set<K>> keySets = grams.stream()
+                .map(gram -> keysByGram.getOrDefault(gram, Collections.emptySet()))
+                .sorted(Comparator.comparingInt(Set::size))
+                .collect(Collectors.toList());
+        Set<K> smallest = keySets.get(0);
+        List<Set<K>> others = keySets.subList(1, keySets.size());
+        return Optional.of(smallest.stream()
+                .filter(key -> others.stream().allMatch(keys -> keys.contains(key)))
+                .collect(Collectors.toSet()));
+    }
+
+    private Set<String> gramsOf(@Nullable S entity) {
+        if (entity == null) {
+            return Collections.emptySet();
+        }
+        Set<String> grams = new HashSet<>();
+        addGrams(fold(searchableText.apply(entity)), grams);
+        return grams;
+    }
+
+    // Folds case the same way as String.regionMatches(true, ...), so that every case-insensitive match is found
+    private static String fold(String text) {
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; ++i) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        }
+        return new String(chars);
+    }
+
+    private static void addGrams(String text, Set<String> grams) {
+        for (int i = 0; i + gramLength <= text.length(); ++i) {
+            grams.add(text.substring(i, i + gramLength));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.slimgears.rxrepo.mem;
+
+import com.slimgears.rxrepo.query.EntitySet;
+import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.query.decorator.ResultCacheQueryProviderDecorator;
+import com.slimgears.rxrepo.test.AbstractRepositoryTest;
+import com.slimgears.rxrepo.test.Inventory;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
+import io.reactivex.Maybe;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CachedMemoryQueryProviderTest extends AbstractRepositoryTest {
+    @Override
+    protected Repository createRepository() {
+        return MemoryRepository.builder()
+                .decorate(ResultCacheQueryProviderDecorator.create(10000))
+                .build();
+    }
+
+    @Test
+    public void testRepeatedQueriesAreServedFromCache() {
+        CountingQueryProviderDecorator backend = CountingQueryProviderDecorator.create();
+        Repository repository = createCountingRepository(backend);
+        try {
+            EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+            products.update(Products.createMany(10)).ignoreElement().blockingAwait();
+            int queries = backend.queries();
+            int aggregations = backend.aggregations();
+
+            Assert.assertEquals(10, products.query().retrieve().toList().blockingGet().size());
+            Assert.assertEquals(10, products.query().retrieve().toList().blockingGet().size());
+            Assert.assertEquals(Long.valueOf(10), products.query().count().blockingGet());
+            Assert.assertEquals(Long.valueOf(10), products.query().count().blockingGet());
+
+            Assert.assertEquals(queries + 1, backend.queries());
+            Assert.assertEquals(aggregations + 1, backend.aggregations());
+        } finally {
+            repository.clearAndClose();
+        }
+    }
+
+    // Prices of created products 0..9 are 100, 102, 106, 112, 120, 130, 142, 107, 172, 127
+    @Test
+    public void testOnlyChangesMatchingPredicateInvalidateCachedResult() {
+        CountingQueryProviderDecorator backend = CountingQueryProviderDecorator.create();
+        Repository repository = createCountingRepository(backend);
+        try {
+            EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+            products.update(Products.createMany(10)).ignoreElement().blockingAwait();
+            int queries = backend.queries();
+
+            Assert.assertEquals(5, expensiveProductCount(products));
+            Assert.assertEquals(queries + 1, backend.queries());
+
+            updatePrice(products, UniqueId.productId(0), 101);
+            Assert.assertEquals(5, expensiveProductCount(products));
+            Assert.assertEquals(queries + 1, backend.queries());
+
+            updatePrice(products, UniqueId.productId(4), 110);
+            Assert.assertEquals(4, expensiveProductCount(products));
+            Assert.assertEquals(queries + 2, backend.queries());
+        } finally {
+            repository.clearAndClose();
+        }
+    }
+
+    @Test
+    public void testChangeOfReferencedEntityInvalidatesCachedResult() {
+        CountingQueryProviderDecorator backend = CountingQueryProviderDecorator.create();
+        Repository repository = createCountingRepository(backend);
+        try {
+            EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+            EntitySet<UniqueId, Inventory> inventories = repository.entities(Inventory.metaClass);
+            products.update(Products.createMany(10)).ignoreElement().blockingAwait();
+            int queries = backend.queries();
+
+            products.query().retrieve().toList().blockingGet();
+            products.query().retrieve().toList().blockingGet();
+            Assert.assertEquals(queries + 1, backend.queries());
+
+            inventories.update(UniqueId.inventoryId(0), inventory -> inventory
+                    .map(i -> i.toBuilder().name("Inventory 0 - updated").build()))
+                    .blockingGet();
+            Assert.assertTrue(products.query().retrieve().toList().blockingGet()
+                    .stream()
+                    .anyMatch(p -> p.inventory() != null && p.inventory().name().equals("Inventory 0 - updated")));
+            Assert.assertEquals(queries + 2, backend.queries());
+        } finally {
+            repository.clearAndClose();
+        }
+    }
+
+    private static Repository createCountingRepository(CountingQueryProviderDecorator backend) {
+        return MemoryRepository.builder()
+                .decorate(backend, ResultCacheQueryProviderDecorator.create(10000))
+                .build();
+    }
+
+    private static int expensiveProductCount(EntitySet<UniqueId, Product> products) {
+        return products.query()
+                .where(Product.$.price.greaterThan(115))
+                .retrieve()
+                .toList()
+                .blockingGet()
+                .size();
+    }
+
+    private static void updatePrice(EntitySet<UniqueId, Product> products, UniqueId key, int price) {
+        products.update(key, product -> product.map(p -> p.toBuilder().price(price).build()))
+                .switchIfEmpty(Maybe.error(new AssertionError("Product " + key + " not found")))
+                .blockingGet();
+    }
+}
@@ -0,0 +1,68 @@
+package com.slimgears.rxrepo.mem;
+
+import com.slimgears.rxrepo.expressions.Aggregator;
+import com.slimgears.rxrepo.query.decorator.AbstractQueryProviderDecorator;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.subjects.CompletableSubject;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Counts queries and aggregations reaching the decorated provider. Executions started while held
+// wait until the returned gate is completed
+class CountingQueryProviderDecorator implements QueryProvider.Decorator {
+    private final AtomicInteger queries = new AtomicInteger();
+    private final AtomicInteger aggregations = new AtomicInteger();
+    private final AtomicInteger cancellations = new AtomicInteger();
+    private volatile Completable gate = Completable.complete();
+
+    static CountingQueryProviderDecorator create() {
+        return new CountingQueryProviderDecorator();
+    }
+
+    int queries() {
+        return queries.get();
+    }
+
+    int aggregations() {
+        return aggregations.get();
+    }
+
+    int cancellations() {
+        return cancellations.get();
+    }
+
+    CompletableSubject hold() {
+        CompletableSubject subject = CompletableSubject.create();
+        gate = subject;
+        return subject;
+    }
+
+    @Override
+    public QueryProvider apply(QueryProvider queryProvider) {
+        return new AbstractQueryProviderDecorator(queryProvider) {
+            @Override
+            public <K, S, T> Observable<T> query(QueryInfo<K, S, T> query) {
+                return Observable
+                        .defer(() -> {
+                            queries.incrementAndGet();
+                            return gate.andThen(super.query(query));
+                        })
+                        .doOnDispose(cancellations::incrementAndGet);
+            }
+
+            @Override
+            public <K, S, T, R> Maybe<R> aggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
+                return Maybe
+                        .defer(() -> {
+                            aggregations.incrementAndGet();
+                            return gate.andThen(super.aggregate(query, aggregator));
+                        })
+                        .doOnDispose(cancellations::incrementAndGet);
+            }
+        };
+    }
+}
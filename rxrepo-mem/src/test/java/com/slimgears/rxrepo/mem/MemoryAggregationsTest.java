@@ -0,0 +1,69 @@
+package com.slimgears.rxrepo.mem;
+
+import com.slimgears.rxrepo.expressions.Aggregator;
+import com.slimgears.rxrepo.query.EntitySet;
+import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+// Values mapped to null are skipped by the aggregations, the same way as by the aggregate functions of SQL
+public class MemoryAggregationsTest {
+    private Repository repository;
+    private EntitySet<UniqueId, Product> products;
+
+    @Before
+    public void setUp() {
+        repository = MemoryRepository.create();
+        products = repository.entities(Product.metaClass);
+        List<Product> productList = StreamSupport.stream(Products.createMany(10).spliterator(), false)
+                .map(p -> p.key().id() % 2 == 0 ? p.toBuilder().name(null).build() : p)
+                .collect(Collectors.toList());
+        products.update(productList).ignoreElement().blockingAwait();
+    }
+
+    @After
+    public void tearDown() {
+        repository.clearAndClose();
+    }
+
+    @Test
+    public void testCountSkipsNullValues() {
+        Assert.assertEquals(Long.valueOf(5), products.query()
+                .select(Product.$.name)
+                .aggregate(Aggregator.count())
+                .blockingGet());
+        Assert.assertEquals(Long.valueOf(10), products.query().count().blockingGet());
+    }
+
+    @Test
+    public void testMinMaxSkipNullValues() {
+        Assert.assertEquals("Product 1", products.query()
+                .select(Product.$.name)
+                .aggregate(Aggregator.min())
+                .blockingGet());
+        Assert.assertEquals("Product 9", products.query()
+                .select(Product.$.name)
+                .aggregate(Aggregator.max())
+                .blockingGet());
+    }
+
+    @Test
+    public void testAggregationOfNullValuesOnlyIsEmpty() {
+        products.query()
+                .where(Product.$.name.isNull())
+                .select(Product.$.name)
+                .aggregate(Aggregator.max())
+                .test()
+                .assertNoValues()
+                .assertComplete();
+    }
+}
@@ -0,0 +1,136 @@
+package com.slimgears.rxrepo.mem;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.query.EntitySet;
+import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.query.provider.SortingInfo;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.ProductPrototype;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
+import com.slimgears.rxrepo.util.Expressions;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+public class MemoryIndexesTest {
+    private final MemoryIndexes<UniqueId, Product> indexes = MemoryIndexes.create(Product.metaClass);
+    private List<Product> products;
+
+    @Before
+    public void setUp() {
+        products = StreamSupport.stream(Products.createMany(100).spliterator(), false)
+                .map(p -> p.key().id() % 10 == 0 ? p.toBuilder().type(null).build() : p)
+                .collect(Collectors.toList());
+        products.forEach(p -> indexes.update(p.key(), null, p));
+    }
+
+    @Test
+    public void testEqualityIsServedByHashIndex() {
+        assertPlanned(Product.$.price.eq(105));
+    }
+
+    @Test
+    public void testInIsServedByHashIndex() {
+        assertPlanned(Product.$.price.in(105, 110, 1000));
+    }
+
+    @Test
+    public void testRangeIsServedBySortedIndex() {
+        assertPlanned(Product.$.price.greaterThan(110));
+        assertPlanned(Product.$.price.lessOrEqual(105));
+        assertPlanned(Product.$.price.betweenInclusive(103, 112));
+    }
+
+    @Test
+    public void testNegatedPredicatesAreServedByIndex() {
+        assertPlanned(Product.$.price.greaterThan(110).not());
+        assertPlanned(Product.$.price.lessThan(103).or(Product.$.price.greaterThan(120)).not());
+    }
+
+    @Test
+    public void testAsStringPropertyIsServedByHashIndex() {
+        assertPlanned(Product.$.type.eq(ProductPrototype.Type.ComputeHardware));
+        assertPlanned(Product.$.type.isNull());
+    }
+
+    @Test
+    public void testUpdatedEntityIsReindexed() {
+        Product product = products.get(1);
+        Product updated = product.toBuilder().price(1000).type(ProductPrototype.Type.ComputerSoftware).build();
+        indexes.update(product.key(), product, updated);
+        products.set(1, updated);
+
+        assertPlanned(Product.$.price.eq(1000));
+        assertPlanned(Product.$.price.eq(product.price()));
+        assertPlanned(Product.$.type.eq(ProductPrototype.Type.ComputerSoftware));
+    }
+
+    @Test
+    public void testPlannerFallsBackToScanForNonIndexedTerms() {
+        Assert.assertFalse(indexes.plan(Product.$.name.eq("Product 5"), ImmutableList.of()).isPresent());
+        Assert.assertFalse(indexes.plan(Product.$.price.eq(105).or(Product.$.name.eq("Product 5")), ImmutableList.of()).isPresent());
+        Assert.assertFalse(indexes.plan(Product.$.price.eq(105).not(), ImmutableList.of()).isPresent());
+
+        // Conjunction is served by its indexed term, the rest of the predicate is applied to the candidates
+        Assert.assertTrue(indexes.plan(Product.$.price.eq(105).and(Product.$.name.eq("Product 5")), ImmutableList.of()).isPresent());
+    }
+
+    @Test
+    public void testOrderingIsServedBySortedIndex() {
+        Optional<MemoryIndexes.Plan<UniqueId>> plan = indexes.plan(
+                null,
+                ImmutableList.<SortingInfo<Product, ?, ? extends Comparable<?>>>of(SortingInfo.create(Product.$.price, false)));
+        Assert.assertTrue(plan.isPresent());
+        Assert.assertTrue(plan.get().isOrdered());
+
+        List<Integer> prices = StreamSupport.stream(plan.get().keys().spliterator(), false)
+                .map(key -> products.stream().filter(p -> p.key().equals(key)).findFirst().orElseThrow(AssertionError::new))
+                .map(Product::price)
+                .collect(Collectors.toList());
+        Assert.assertEquals(
+                products.stream().map(Product::price).sorted((a, b) -> Integer.compare(b, a)).collect(Collectors.toList()),
+                prices);
+    }
+
+    @Test
+    public void testIndexedQueriesOfRepository() {
+        Repository repository = MemoryRepository.create();
+        try {
+            EntitySet<UniqueId, Product> productSet = repository.entities(Product.metaClass);
+            productSet.update(products).ignoreElement().blockingAwait();
+
+            Assert.assertEquals(
+                    products.stream().filter(p -> p.price() > 110).count(),
+                    (long)productSet.query().where(Product.$.price.greaterThan(110)).count().blockingGet());
+            Assert.assertEquals(
+                    products.stream().filter(p -> p.type() == ProductPrototype.Type.ComputeHardware).count(),
+                    (long)productSet.query().where(Product.$.type.eq(ProductPrototype.Type.ComputeHardware)).count().blockingGet());
+        } finally {
+            repository.clearAndClose();
+        }
+    }
+
+    // Index access is expected to yield exactly the keys of the entities matching the predicate
+    private void assertPlanned(ObjectExpression<Product, Boolean> predicate) {
+        Optional<MemoryIndexes.Plan<UniqueId>> plan = indexes.plan(predicate, ImmutableList.of());
+        Assert.assertTrue(plan.isPresent());
+
+        Predicate<Product> compiled = Expressions.compilePredicate(predicate);
+        Set<UniqueId> expected = products.stream()
+                .filter(compiled)
+                .map(Product::key)
+                .collect(Collectors.toSet());
+        Set<UniqueId> planned = StreamSupport.stream(plan.get().keys().spliterator(), false)
+                .collect(Collectors.toSet());
+        Assert.assertEquals(expected, planned);
+    }
+}
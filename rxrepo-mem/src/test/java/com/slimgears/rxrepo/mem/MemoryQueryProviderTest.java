@@ -1,11 +1,55 @@
 package com.slimgears.rxrepo.mem;
 
+import com.slimgears.rxrepo.query.EntitySet;
+import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.query.decorator.AbstractQueryProviderDecorator;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
 import com.slimgears.rxrepo.test.AbstractRepositoryTest;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
+import io.reactivex.Flowable;
+import io.reactivex.subscribers.TestSubscriber;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class MemoryQueryProviderTest extends AbstractRepositoryTest {
     @Override
     protected Repository createRepository() {
         return MemoryRepository.create();
     }
+
+    @Test
+    public void testObserveFlowableIsServedByProviderFlowable() {
+        AtomicInteger flowableQueries = new AtomicInteger();
+        Repository repository = MemoryRepository.builder()
+                .decorate(provider -> new AbstractQueryProviderDecorator(provider) {
+                    @Override
+                    public <K, S, T> Flowable<Notification<T>> liveQueryFlowable(QueryInfo<K, S, T> query) {
+                        flowableQueries.incrementAndGet();
+                        return super.liveQueryFlowable(query);
+                    }
+                })
+                .build();
+        try {
+            EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+            TestSubscriber<Notification<Product>> subscriber = products.observeFlowable().test(0);
+            Assert.assertEquals(1, flowableQueries.get());
+
+            products.update(Products.createMany(3)).ignoreElement().blockingAwait();
+            subscriber.assertNoValues();
+
+            subscriber.request(2);
+            subscriber.awaitCount(2).assertValueCount(2);
+            subscriber.request(1);
+            subscriber.awaitCount(3).assertValueCount(3);
+            subscriber.dispose();
+        } finally {
+            repository.clearAndClose();
+        }
+    }
 }
@@ -0,0 +1,89 @@
+package com.slimgears.rxrepo.mem;
+
+import com.slimgears.rxrepo.query.Notification;
+import io.reactivex.exceptions.MissingBackpressureException;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class NotificationBusTest {
+    private final TestScheduler scheduler = new TestScheduler();
+
+    @Test
+    public void testStalledSubscriberIsCoalesced() {
+        NotificationBus<String> bus = NotificationBus.create(4, NotificationOverflowPolicy.Coalesce, s -> s.substring(0, 1), scheduler);
+        TestObserver<Notification<String>> observer = bus.observe().test();
+
+        publishAll(bus);
+        Assert.assertEquals(4, bus.stats().maxLag());
+
+        scheduler.triggerActions();
+        observer.assertValues(
+                Notification.ofCreated("a2"),
+                Notification.ofModified("a2", "a3"),
+                Notification.ofCreated("c1"));
+        Assert.assertEquals(4, bus.stats().coalesced());
+        Assert.assertEquals(0, bus.stats().maxLag());
+    }
+
+    @Test
+    public void testStalledSubscriberIsSignaledOnDrop() {
+        NotificationBus<String> bus = NotificationBus.create(4, NotificationOverflowPolicy.DropOldest, s -> s.substring(0, 1), scheduler);
+        TestObserver<Notification<String>> observer = bus.observe().test();
+
+        publishAll(bus);
+        scheduler.triggerActions();
+
+        observer.assertError(MissingBackpressureException.class);
+        Assert.assertEquals(2, bus.stats().dropped());
+    }
+
+    @Test
+    public void testBlockedProducerWaitsForRoomBeforePublishing() throws Exception {
+        NotificationBus<String> bus = NotificationBus.create(4, NotificationOverflowPolicy.Block, s -> s.substring(0, 1), scheduler);
+        TestObserver<Notification<String>> observer = bus.observe().test();
+        for (int i = 0; i < 4; ++i) {
+            Assert.assertTrue(bus.reserve());
+            bus.publish(Notification.ofCreated("a" + i), true);
+        }
+
+        CompletableFuture<Boolean> reservation = CompletableFuture.supplyAsync(bus::reserve);
+        try {
+            reservation.get(100, TimeUnit.MILLISECONDS);
+            Assert.fail("Reservation is expected to wait for the subscriber");
+        } catch (TimeoutException e) {
+            // expected
+        }
+
+        scheduler.triggerActions();
+        Assert.assertTrue(reservation.get(10, TimeUnit.SECONDS));
+        observer.assertValueCount(4);
+        Assert.assertEquals(0, bus.stats().coalesced());
+    }
+
+    @Test
+    public void testPublishingWithoutReservationDoesNotBlock() {
+        NotificationBus<String> bus = NotificationBus.create(4, NotificationOverflowPolicy.Block, s -> s.substring(0, 1), scheduler);
+        TestObserver<Notification<String>> observer = bus.observe().test();
+
+        publishAll(bus);
+        Assert.assertEquals(4, bus.stats().coalesced());
+
+        scheduler.triggerActions();
+        observer.assertValueCount(3);
+    }
+
+    private static void publishAll(NotificationBus<String> bus) {
+        bus.publish(Notification.ofCreated("a1"));
+        bus.publish(Notification.ofModified("a1", "a2"));
+        bus.publish(Notification.ofCreated("b1"));
+        bus.publish(Notification.ofDeleted("b1"));
+        bus.publish(Notification.ofModified("a2", "a3"));
+        bus.publish(Notification.ofCreated("c1"));
+    }
+}
@@ -0,0 +1,13 @@
+package com.slimgears.rxrepo.mem;
+
+import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.test.AbstractRepositoryTest;
+
+public class ParallelMemoryQueryProviderTest extends AbstractRepositoryTest {
+    @Override
+    protected Repository createRepository() {
+        return MemoryRepository.builder()
+                .parallelScanThreshold(0)
+                .build();
+    }
+}
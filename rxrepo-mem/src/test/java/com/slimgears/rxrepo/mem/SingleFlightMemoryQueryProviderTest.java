@@ -0,0 +1,126 @@
+package com.slimgears.rxrepo.mem;
+
+import com.slimgears.rxrepo.query.EntitySet;
+import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.query.decorator.AbstractQueryProviderDecorator;
+import com.slimgears.rxrepo.query.decorator.SingleFlightQueryProviderDecorator;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.test.AbstractRepositoryTest;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.CompletableSubject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class SingleFlightMemoryQueryProviderTest extends AbstractRepositoryTest {
+    @Override
+    protected Repository createRepository() {
+        return MemoryRepository.builder()
+                .decorate(SingleFlightQueryProviderDecorator.create())
+                .build();
+    }
+
+    @Test
+    public void testQueryAfterWriteDoesNotJoinEarlierExecution() {
+        CompletableSubject read = CompletableSubject.create();
+        CompletableSubject gate = CompletableSubject.create();
+        Repository repository = MemoryRepository.builder()
+                .decorate(
+                        provider -> new AbstractQueryProviderDecorator(provider) {
+                            @Override
+                            public <K, S, T> Observable<T> query(QueryInfo<K, S, T> query) {
+                                return super.query(query)
+                                        .toList()
+                                        .doOnSuccess(items -> read.onComplete())
+                                        .flatMapObservable(items -> gate.andThen(Observable.fromIterable(items)));
+                            }
+                        },
+                        SingleFlightQueryProviderDecorator.create())
+                .build();
+        try {
+            EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+            products.update(Products.createOne(1)).ignoreElement().blockingAwait();
+
+            TestObserver<Product> beforeWrite = products.query().retrieve().test();
+            Assert.assertTrue(read.blockingAwait(10, TimeUnit.SECONDS));
+            products.update(Products.createOne(2)).ignoreElement().blockingAwait();
+            TestObserver<Product> afterWrite = products.query().retrieve().test();
+
+            gate.onComplete();
+            beforeWrite.awaitDone(10, TimeUnit.SECONDS).assertValueCount(1);
+            afterWrite.awaitDone(10, TimeUnit.SECONDS).assertValueCount(2);
+        } finally {
+            repository.clearAndClose();
+        }
+    }
+
+    @Test
+    public void testConcurrentIdenticalQueriesShareOneExecution() {
+        CountingQueryProviderDecorator backend = CountingQueryProviderDecorator.create();
+        Repository repository = MemoryRepository.builder()
+                .decorate(backend, SingleFlightQueryProviderDecorator.create())
+                .build();
+        try {
+            EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+            products.update(Products.createMany(3)).ignoreElement().blockingAwait();
+            int queries = backend.queries();
+            int aggregations = backend.aggregations();
+
+            CompletableSubject gate = backend.hold();
+            TestObserver<Product> firstQuery = products.query().retrieve().test();
+            TestObserver<Product> secondQuery = products.query().retrieve().test();
+            TestObserver<Long> firstCount = products.query().count().test();
+            TestObserver<Long> secondCount = products.query().count().test();
+            gate.onComplete();
+
+            firstQuery.awaitDone(10, TimeUnit.SECONDS).assertNoErrors().assertValueCount(3);
+            secondQuery.awaitDone(10, TimeUnit.SECONDS).assertNoErrors().assertValueCount(3);
+            firstCount.awaitDone(10, TimeUnit.SECONDS).assertNoErrors().assertValue(3L);
+            secondCount.awaitDone(10, TimeUnit.SECONDS).assertNoErrors().assertValue(3L);
+            Assert.assertEquals(queries + 1, backend.queries());
+            Assert.assertEquals(aggregations + 1, backend.aggregations());
+        } finally {
+            repository.clearAndClose();
+        }
+    }
+
+    @Test
+    public void testSharedExecutionIsCancelledWhenAllCallersAreDisposed() {
+        CountingQueryProviderDecorator backend = CountingQueryProviderDecorator.create();
+        Repository repository = MemoryRepository.builder()
+                .decorate(backend, SingleFlightQueryProviderDecorator.create())
+                .build();
+        try {
+            EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+            products.update(Products.createMany(3)).ignoreElement().blockingAwait();
+            int queries = backend.queries();
+
+            CompletableSubject gate = backend.hold();
+            TestObserver<Product> disposedCaller = products.query().retrieve().test();
+            TestObserver<Product> remainingCaller = products.query().retrieve().test();
+            disposedCaller.dispose();
+            Assert.assertEquals(0, backend.cancellations());
+
+            gate.onComplete();
+            remainingCaller.awaitDone(10, TimeUnit.SECONDS).assertNoErrors().assertValueCount(3);
+            Assert.assertEquals(queries + 1, backend.queries());
+            Assert.assertEquals(0, backend.cancellations());
+
+            backend.hold();
+            TestObserver<Product> firstCaller = products.query().retrieve().test();
+            TestObserver<Product> secondCaller = products.query().retrieve().test();
+            firstCaller.dispose();
+            Assert.assertEquals(0, backend.cancellations());
+            secondCaller.dispose();
+            Assert.assertEquals(1, backend.cancellations());
+            Assert.assertEquals(queries + 2, backend.queries());
+        } finally {
+            repository.clearAndClose();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.slimgears.rxrepo.mongodb;
+
+import com.slimgears.rxrepo.encoding.MetaObjectResolver;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.generic.ScopedInstance;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+// Resolves the references of a batch of documents together: the documents are decoded once with
+// the reference keys only collected, the keys are looked up with a single query per referenced class,
+// and the documents holding references are decoded again against the objects found
+class BatchReferenceResolver implements MetaObjectResolver {
+    private final ScopedInstance<Batch> currentBatch = ScopedInstance.create();
+    private final MetaObjectResolver resolver;
+
+    private BatchReferenceResolver(MetaObjectResolver resolver) {
+        this.resolver = resolver;
+    }
+
+    static BatchReferenceResolver create(MetaObjectResolver resolver) {
+        return new BatchReferenceResolver(resolver);
+    }
+
+    @Override
+    public <K, S> Maybe<S> resolve(MetaClassWithKey<K, S> metaClass, K key) {
+        return resolveAll(metaClass, Collections.singleton(key))
+                .flatMapMaybe(objects -> Optional
+                        .ofNullable(objects.get(key))
+                        .map(Maybe::just)
+                        .orElseGet(Maybe::empty));
+    }
+
+    @Override
+    public <K, S> Single<Map<K, S>> resolveAll(MetaClassWithKey<K, S> metaClass, Collection<K> keys) {
+        return Optional.ofNullable(currentBatch.current())
+                .map(batch -> batch.resolveAll(metaClass, keys))
+                .orElseGet(() -> resolver.resolveAll(metaClass, keys));
+    }
+
+    <D, T> Single<List<T>> decodeAll(List<D> documents, Function<D, T> decoder) {
+        Batch batch = new Batch();
+        List<T> objects = new ArrayList<>(documents.size());
+        List<Integer> pending = new ArrayList<>();
+        for (D document : documents) {
+            int requests = batch.requests;
+            T object = null;
+            try {
+                object = currentBatch.withScope(batch, () -> decoder.apply(document));
+            } catch (RuntimeException e) {
+                // Required references left unset fail the first pass, the document is decoded again once they are found
+                if (batch.requests == requests) {
+                    throw e;
+                }
+            }
+            if (batch.requests != requests) {
+                pending.add(objects.size());
+            }
+            objects.add(object);
+        }
+
+        if (pending.isEmpty()) {
+            return Single.just(objects);
+        }
+
+        return batch.prefetch()
+                .andThen(Single.fromCallable(() -> {
+                    pending.forEach(i -> objects.set(i, currentBatch.withScope(batch, () -> decoder.apply(documents.get(i)))));
+                    return objects;
+                }));
+    }
+
+    private class Batch {
+        private final Map<MetaClassWithKey<?, ?>, Set<Object>> keys = new LinkedHashMap<>();
+        private final Map<MetaClassWithKey<?, ?>, Map<?, ?>> objects = new HashMap<>();
+        private boolean prefetched;
+        private int requests;
+
+        @SuppressWarnings("unchecked")
+        private <K, S> Single<Map<K, S>> resolveAll(MetaClassWithKey<K, S> metaClass, Collection<K> keys) {
+            if (prefetched) {
+                return Optional.ofNullable((Map<K, S>)objects.get(metaClass))
+                        .map(Single::just)
+                        .orElseGet(() -> resolver.resolveAll(metaClass, keys));
+            }
+            ++requests;
+            this.keys.computeIfAbsent(metaClass, mc -> new LinkedHashSet<>()).addAll(keys);
+            return Single.just(Collections.emptyMap());
+        }
+
+        @SuppressWarnings("unchecked")
+        private Completable prefetch() {
+            return Observable.fromIterable(keys.entrySet())
+                    .concatMapCompletable(entry -> resolver
+                            .resolveAll((MetaClassWithKey<Object, Object>)entry.getKey(), entry.getValue())
+                            .doOnSuccess(found -> objects.put(entry.getKey(), found))
+                            .ignoreElement())
+                    .doOnComplete(() -> prefetched = true);
+        }
+    }
+}
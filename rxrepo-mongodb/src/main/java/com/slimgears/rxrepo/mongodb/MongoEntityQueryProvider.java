@@ -11,6 +11,7 @@ import com.mongodb.client.model.changestream.OperationType;
 import com.mongodb.client.result.DeleteResult;
 import com.mongodb.client.result.UpdateResult;
 import com.mongodb.reactivestreams.client.AggregatePublisher;
+import com.mongodb.reactivestreams.client.ChangeStreamPublisher;
 import com.mongodb.reactivestreams.client.MongoCollection;
 import com.mongodb.reactivestreams.client.MongoDatabase;
 import com.slimgears.rxrepo.encoding.MetaClassFieldMapper;
@@ -20,11 +21,14 @@ import com.slimgears.rxrepo.expressions.CollectionExpression;
 import com.slimgears.rxrepo.expressions.Expression;
 import com.slimgears.rxrepo.expressions.ObjectExpression;
 import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.Notifications;
 import com.slimgears.rxrepo.query.provider.DeleteInfo;
 import com.slimgears.rxrepo.query.provider.EntityQueryProvider;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.SnapshotChunking;
 import com.slimgears.rxrepo.query.provider.UpdateInfo;
 import com.slimgears.rxrepo.util.Expressions;
+import com.slimgears.rxrepo.util.LiveSnapshots;
 import com.slimgears.rxrepo.util.PropertyMetas;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import com.slimgears.util.reflect.TypeTokens;
@@ -32,6 +36,7 @@ import com.slimgears.util.stream.Lazy;
 import com.slimgears.util.stream.Optionals;
 import com.slimgears.util.stream.Streams;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
@@ -52,20 +57,26 @@ import java.util.stream.Collectors;
 
 class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S> {
     private final static Logger log = LoggerFactory.getLogger(MongoEntityQueryProvider.class);
+    private final static int queryBatchSize = 256;
+    private final static int findAllChunkSize = 1000;
     private final MetaClassWithKey<K, S> metaClass;
+    private final MongoDatabase database;
     private final Lazy<MongoCollection<Document>> objectCollection;
     private final Lazy<MongoCollection<Document>> notificationCollection;
     private final Lazy<Codec<S>> codec;
     private final Lazy<Codec<Document>> docCodec;
     private final CodecRegistry codecRegistry;
     private final MetaClassFieldMapper fieldMapper;
+    private final BatchReferenceResolver referenceResolver;
 
-    MongoEntityQueryProvider(MetaClassWithKey<K, S> metaClass, MongoDatabase database, MetaClassFieldMapper fieldMapper) {
+    MongoEntityQueryProvider(MetaClassWithKey<K, S> metaClass, MongoDatabase database, MetaClassFieldMapper fieldMapper, BatchReferenceResolver referenceResolver) {
         this.metaClass = metaClass;
+        this.database = database;
         this.codecRegistry = database.getCodecRegistry();
         this.codec = Lazy.of(() -> codecRegistry.get(metaClass.asClass()));
         this.docCodec = Lazy.of(() -> codecRegistry.get(Document.class));
         this.fieldMapper = fieldMapper;
+        this.referenceResolver = referenceResolver;
         this.objectCollection = Lazy.of(() -> database.getCollection(metaClass.simpleName()));
         this.notificationCollection = Lazy.of(() -> database.getCollection(metaClass.simpleName() + ".updates"));
     }
@@ -80,6 +91,21 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S> {
                 .firstElement();
     }
 
+    @Override
+    public Single<Map<K, S>> findAll(Iterable<K> keys) {
+        return Observable.fromIterable(keys)
+                .distinct()
+                .buffer(findAllChunkSize)
+                .concatMap(chunk -> Observable.fromPublisher(objectCollection.get()
+                        .aggregate(MongoPipeline.builder()
+                                .lookupAndUnwindReferences(metaClass)
+                                .match(MongoPipeline.filterForKeys(chunk))
+                                .build())
+                        .batchSize(queryBatchSize)))
+                .compose(documents -> objectsFromDocuments(documents, this::objectFromDocument))
+                .toMap(metaClass::keyOf);
+    }
+
     @Override
     public Completable insert(Iterable<S> entities) {
         List<Document> documents = Streams
@@ -154,7 +180,27 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S> {
     public <T> Observable<T> query(QueryInfo<K, S, T> query) {
         return queryDocuments(query)
                 .doOnNext(doc -> log.debug("Retrieved document: {}", doc))
-                .map(doc -> objectFromDocument(doc, query.objectType()));
+                .compose(documents -> objectsFromDocuments(documents, doc -> objectFromDocument(doc, query.objectType())));
+    }
+
+    @Override
+    public <T> Flowable<T> queryFlowable(QueryInfo<K, S, T> query) {
+        return Flowable
+                .fromPublisher(objectCollection.get()
+                        .aggregate(MongoPipeline.aggregationPipeline(query))
+                        .batchSize(queryBatchSize))
+                .doOnNext(doc -> log.debug("Retrieved document: {}", doc))
+                .buffer(queryBatchSize)
+                .concatMapSingle(documents -> referenceResolver.decodeAll(documents, doc -> objectFromDocument(doc, query.objectType())))
+                .concatMapIterable(objects -> objects);
+    }
+
+    // References are resolved once per buffered batch of documents, rather than once per document
+    private <T> Observable<T> objectsFromDocuments(Observable<Document> documents, java.util.function.Function<Document, T> decoder) {
+        return documents
+                .buffer(queryBatchSize)
+                .concatMapSingle(batch -> referenceResolver.decodeAll(batch, decoder))
+                .concatMapIterable(objects -> objects);
     }
 
     @SuppressWarnings("unchecked")
@@ -187,22 +233,65 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S> {
     @Override
     public <T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
         java.util.function.Function<S, T> mapper = Expressions.compile(query.mapping());
+        return documentChanges(Optional.empty())
+                .map(n -> n.map(this::objectFromDocument))
+                .map(n -> n.map(mapper));
+    }
+
+    // Change streams are started at the cluster time read before the snapshot, so no change in between is lost,
+    // and the ones already reflected in the snapshot are recognized by the document version.
+    // Change batches emptied by the predicate are dropped, so the only empty batch is the one terminating the snapshot
+    @Override
+    public Observable<List<Notification<S>>> queryAndObserve(QueryInfo<K, S, S> query, SnapshotChunking chunking) {
+        return clusterTime()
+                .flatMapObservable(time -> LiveSnapshots.queryAndObserve(
+                        documentChanges(time),
+                        queryDocuments(query),
+                        chunking,
+                        doc -> doc.get("_id"),
+                        this::versionOf))
+                .concatMapMaybe(batch -> referenceResolver
+                        .decodeAll(batch, n -> n.map(this::objectFromDocument))
+                        .flatMapObservable(Observable::fromIterable)
+                        .compose(Notifications.filter(query.predicate()))
+                        .toList()
+                        .filter(notifications -> batch.isEmpty() || !notifications.isEmpty()));
+    }
 
-        Observable<Notification<S>> modifications = Observable.fromPublisher(notificationCollection.get().watch())
+    private Single<Optional<BsonTimestamp>> clusterTime() {
+        return Observable
+                .fromPublisher(database.runCommand(new Document("isMaster", 1)))
+                .firstElement()
+                .map(doc -> Optional.ofNullable(doc.get("operationTime", BsonTimestamp.class)))
+                .toSingle(Optional.empty());
+    }
+
+    private Long versionOf(Document document) {
+        return Optional
+                .ofNullable(document.get(fieldMapper.versionField()))
+                .flatMap(Optionals.ofType(Number.class))
+                .map(Number::longValue)
+                .orElse(null);
+    }
+
+    private Observable<Notification<Document>> documentChanges(Optional<BsonTimestamp> startAt) {
+        Observable<Notification<Document>> modifications = Observable.fromPublisher(watch(notificationCollection.get(), startAt))
                 .map(ChangeStreamDocument::getFullDocument)
                 .doOnNext(d -> log.trace("New update: {}", d.toJson()))
-                .map(this::notificationFromDocument)
+                .map(d -> Notification.ofModified(d.get("oldValue", Document.class), d.get("newValue", Document.class)))
                 .filter(n -> !Objects.equals(n.oldValue(), n.newValue()));
 
-        Observable<Notification<S>> insertions = Observable
-                .fromPublisher(objectCollection
-                        .get()
-                        .watch())
+        Observable<Notification<Document>> insertions = Observable
+                .fromPublisher(watch(objectCollection.get(), startAt))
                 .doOnNext(d -> log.trace("Change detected: {}", d))
                 .flatMapMaybe(this::notificationFromChangeDocument);
 
-        return modifications.mergeWith(insertions)
-                .map(n -> n.map(mapper));
+        return modifications.mergeWith(insertions);
+    }
+
+    private static ChangeStreamPublisher<Document> watch(MongoCollection<Document> collection, Optional<BsonTimestamp> startAt) {
+        ChangeStreamPublisher<Document> publisher = collection.watch();
+        return startAt.map(publisher::startAtOperationTime).orElse(publisher);
     }
 
     private Completable publish(Document oldDoc, Document newDoc) {
@@ -280,38 +369,9 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S> {
                         .anyMatch(ErrorCategory.DUPLICATE_KEY::equals));
     }
 
-    private Notification<S> notificationFromDocument(Document document) {
-        return Notification.ofModified(
-                toObject(document.get("oldValue"), metaClass.asType()),
-                toObject(document.get("newValue"), metaClass.asType()));
-    }
-
-    private <T> T toObject(Object object, TypeToken<T> type) {
-        if (object instanceof Document) {
-            return objectFromDocument((Document)object, type);
-        }
-
-        if (type.getRawType().isInstance(object)) {
-            return TypeTokens.asClass(type).cast(object);
-        }
-
-        Codec<T> codec = codecRegistry.get(TypeTokens.asClass(type));
-        BsonDocument bson = toBson(new Document().append("value", object));
-        BsonReader reader = bson.asBsonReader();
-        reader.readStartDocument();
-        reader.readName();
-        T res = codec.decode(reader, DecoderContext.builder().build());
-        reader.readEndDocument();
-        return res;
-    }
-
-    private Maybe<Notification<S>> notificationFromChangeDocument(ChangeStreamDocument<Document> changeDoc) {
+    private Maybe<Notification<Document>> notificationFromChangeDocument(ChangeStreamDocument<Document> changeDoc) {
         if (changeDoc.getOperationType() == OperationType.INSERT) {
-            S object = Optional
-                    .ofNullable(changeDoc.getFullDocument())
-                    .map(this::objectFromDocument)
-                    .orElse(null);
-            return Maybe.just(Notification.ofCreated(object));
+            return Maybe.just(Notification.ofCreated(changeDoc.getFullDocument()));
         } else if (changeDoc.getOperationType() == OperationType.DELETE) {
             Object key = Optional.of(changeDoc.getDocumentKey())
                     .map(doc -> doc.get("_id"))
@@ -325,7 +385,6 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S> {
                             .limit(1L)
                             .build()))
                     .firstElement()
-                    .map(this::objectFromDocument)
                     .map(Notification::ofDeleted);
         }
         return Maybe.empty();
@@ -145,6 +145,10 @@ public class MongoPipeline {
         return filterForField("_id", key);
     }
 
+    static <K> Document filterForKeys(Collection<K> keys) {
+        return filterForField("_id", new Document("$in", keys));
+    }
+
     static <T> Document filterForField(String field, T value) {
         return new Document(field, value);
     }
@@ -7,28 +7,35 @@ import com.mongodb.reactivestreams.client.MongoClients;
 import com.mongodb.reactivestreams.client.MongoDatabase;
 import com.slimgears.rxrepo.encoding.MetaObjectResolver;
 import com.slimgears.rxrepo.encoding.codecs.MetaClassCodec;
-import com.slimgears.rxrepo.expressions.ObjectExpression;
-import com.slimgears.rxrepo.expressions.PropertyExpression;
 import com.slimgears.rxrepo.mongodb.adapter.MongoFieldMapper;
 import com.slimgears.rxrepo.mongodb.adapter.StandardCodecs;
 import com.slimgears.rxrepo.query.provider.AbstractEntityQueryProviderAdapter;
 import com.slimgears.rxrepo.query.provider.EntityQueryProvider;
-import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.util.KeyBatcher;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Completable;
 import io.reactivex.Maybe;
+import io.reactivex.Single;
 
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class MongoQueryProvider extends AbstractEntityQueryProviderAdapter {
+    private final static int resolveBatchSize = 256;
+    private final static Duration resolveBatchWindow = Duration.ofMillis(1);
     private final MongoClient client;
     private final MongoDatabase database;
+    private final BatchReferenceResolver referenceResolver;
     private final AtomicBoolean isClosed = new AtomicBoolean(false);
 
     MongoQueryProvider(String connectionString, String dbName, int maxConnections) {
-        MetaObjectResolver objectResolver = new ObjectResolver();
+        this.referenceResolver = BatchReferenceResolver.create(new ObjectResolver());
         this.client = MetaClassCodec.withResolver(
-                objectResolver,
+                referenceResolver,
                 () -> MongoClients.create(MongoClientSettings
                         .builder()
                         .applyToConnectionPoolSettings(b -> b.maxSize(maxConnections))
@@ -46,7 +53,7 @@ public class MongoQueryProvider extends AbstractEntityQueryProviderAdapter {
 
     @Override
     protected <K, S> EntityQueryProvider<K, S> createProvider(MetaClassWithKey<K, S> metaClass) {
-        return new MongoEntityQueryProvider<>(metaClass, database, MongoFieldMapper.instance);
+        return new MongoEntityQueryProvider<>(metaClass, database, MongoFieldMapper.instance, referenceResolver);
     }
 
     @Override
@@ -54,19 +61,33 @@ public class MongoQueryProvider extends AbstractEntityQueryProviderAdapter {
         return Completable.fromPublisher(database.drop());
     }
 
+    // References decoded concurrently are resolved with a single query per referenced class
     private class ObjectResolver implements MetaObjectResolver {
+        private final Map<MetaClassWithKey<?, ?>, KeyBatcher<?, ?>> batchers = new ConcurrentHashMap<>();
+
         @Override
         public <K, S> Maybe<S> resolve(MetaClassWithKey<K, S> metaClass, K key) {
             if (isClosed.get()) {
                 return Maybe.empty();
             }
-            return entities(metaClass)
-                    .query(QueryInfo.<K, S, S>builder()
-                            .metaClass(metaClass)
-                            .predicate(PropertyExpression.ofObject(ObjectExpression.arg(metaClass.asType()), metaClass.keyProperty()).eq(key))
-                            .limit(1L)
-                            .build())
-                    .firstElement();
+            return batcherOf(metaClass).find(key);
+        }
+
+        @Override
+        public <K, S> Single<Map<K, S>> resolveAll(MetaClassWithKey<K, S> metaClass, Collection<K> keys) {
+            if (isClosed.get()) {
+                return Single.just(Collections.emptyMap());
+            }
+            return batcherOf(metaClass).findAll(keys);
+        }
+
+        @SuppressWarnings("unchecked")
+        private <K, S> KeyBatcher<K, S> batcherOf(MetaClassWithKey<K, S> metaClass) {
+            return (KeyBatcher<K, S>)batchers.computeIfAbsent(metaClass, mc -> KeyBatcher.forEntities(
+                    metaClass,
+                    query -> entities(metaClass).query(query),
+                    resolveBatchSize,
+                    resolveBatchWindow));
         }
     }
 }
@@ -1,13 +1,27 @@
 package com.slimgears.rxrepo.mongodb;
 
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import com.slimgears.rxrepo.query.EntitySet;
 import com.slimgears.rxrepo.query.Repository;
 import com.slimgears.rxrepo.query.decorator.SchedulingQueryProviderDecorator;
 import com.slimgears.rxrepo.test.AbstractRepositoryTest;
+import com.slimgears.rxrepo.test.Inventory;
+import com.slimgears.rxrepo.test.UniqueId;
 import com.slimgears.util.test.logging.LogLevel;
 import com.slimgears.util.test.logging.UseLogLevel;
 import com.slimgears.util.test.logging.UseLogLevels;
+import io.reactivex.Single;
+import org.bson.Document;
 import org.junit.AfterClass;
+import org.junit.Assert;
 import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @UseLogLevels(
         @UseLogLevel(logger = "org.mongodb.driver", value = LogLevel.INFO)
@@ -35,4 +49,61 @@ public class MongoQueryProviderTest extends AbstractRepositoryTest {
                 .decorate(SchedulingQueryProviderDecorator.createDefault())
                 .build();
     }
+
+    @Test
+    public void testReferencesOfQueriedObjectsAreResolvedInBatch() {
+        int referencedCount = 5;
+        int referencingCount = 200;
+        String dbName = "reference-batching";
+        Repository repository = MongoRepository.builder()
+                .port(MongoTestUtils.port)
+                .dbName(dbName)
+                .build();
+        MongoClient client = MongoClients.create(MongoTestUtils.connectionString);
+        try {
+            EntitySet<UniqueId, Inventory> inventories = repository.entities(Inventory.metaClass);
+            List<Inventory> roots = IntStream.range(0, referencedCount)
+                    .mapToObj(i -> Inventory.builder()
+                            .id(UniqueId.inventoryId(i))
+                            .name("Root " + i)
+                            .build())
+                    .collect(Collectors.toList());
+            List<Inventory> parents = IntStream.range(0, referencedCount)
+                    .mapToObj(i -> Inventory.builder()
+                            .id(UniqueId.inventoryId(1000 + i))
+                            .name("Parent " + i)
+                            .inventory(roots.get(i))
+                            .build())
+                    .collect(Collectors.toList());
+            List<Inventory> children = IntStream.range(0, referencingCount)
+                    .mapToObj(i -> Inventory.builder()
+                            .id(UniqueId.inventoryId(2000 + i))
+                            .name("Child " + i)
+                            .inventory(parents.get(i % referencedCount))
+                            .build())
+                    .collect(Collectors.toList());
+            inventories.update(roots).blockingGet();
+            inventories.update(parents).blockingGet();
+            inventories.update(children).blockingGet();
+
+            // Children are looked up with their parents, roots are left as references to resolve
+            MongoDatabase database = client.getDatabase(dbName);
+            Single.fromPublisher(database.runCommand(new Document("profile", 2))).blockingGet();
+            List<Inventory> retrieved = inventories.query().retrieve().toList().blockingGet();
+            Single.fromPublisher(database.runCommand(new Document("profile", 0))).blockingGet();
+
+            Assert.assertEquals(2 * referencedCount + referencingCount, retrieved.size());
+            Assert.assertTrue(retrieved.stream()
+                    .filter(inventory -> inventory.name().startsWith("Child"))
+                    .allMatch(inventory -> inventory.inventory().inventory() != null));
+
+            long queries = Single.fromPublisher(database.getCollection("system.profile")
+                    .countDocuments(new Document("command.aggregate", Inventory.metaClass.simpleName())))
+                    .blockingGet();
+            Assert.assertEquals("One query for the objects and one for the referenced roots", 2, queries);
+        } finally {
+            client.close();
+            repository.clearAndClose();
+        }
+    }
 }
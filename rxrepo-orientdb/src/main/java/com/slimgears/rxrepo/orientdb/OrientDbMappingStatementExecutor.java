@@ -5,6 +5,7 @@ import com.slimgears.rxrepo.sql.SqlStatement;
 import com.slimgears.rxrepo.sql.SqlStatementExecutor;
 import com.slimgears.rxrepo.util.PropertyResolver;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 
@@ -26,6 +27,11 @@ public class OrientDbMappingStatementExecutor implements SqlStatementExecutor {
         return underlyingExecutor.executeQuery(toOrientDb(statement));
     }
 
+    @Override
+    public Flowable<PropertyResolver> executeQueryFlowable(SqlStatement statement) {
+        return underlyingExecutor.executeQueryFlowable(toOrientDb(statement));
+    }
+
     @Override
     public Observable<PropertyResolver> executeCommandReturnEntries(SqlStatement statement) {
         return underlyingExecutor.executeCommandReturnEntries(toOrientDb(statement));
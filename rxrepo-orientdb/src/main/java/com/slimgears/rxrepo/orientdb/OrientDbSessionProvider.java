@@ -9,9 +9,13 @@ import java.util.function.Supplier;
 
 class OrientDbSessionProvider {
     private final RecurrentThreadLocal<ODatabaseDocument> databaseSessionProvider;
+    private final Supplier<ODatabaseDocument> sessionSupplier;
+    private final Consumer<ODatabaseDocument> onRelease;
 
     private OrientDbSessionProvider(Supplier<ODatabaseDocument> databaseSessionProvider,
                                     Consumer<ODatabaseDocument> onRelease) {
+        this.sessionSupplier = databaseSessionProvider;
+        this.onRelease = onRelease;
         this.databaseSessionProvider = RecurrentThreadLocal
                 .of(databaseSessionProvider)
                 .onRelease(onRelease);
@@ -42,6 +46,18 @@ class OrientDbSessionProvider {
         }
     }
 
+    // Sessions that outlive a single call (e.g. cursors read on demand) are not bound to the current thread
+    ODatabaseDocument openDetachedSession() {
+        ODatabaseDocument dbSession = sessionSupplier.get();
+        dbSession.activateOnCurrentThread();
+        return dbSession;
+    }
+
+    void releaseDetachedSession(ODatabaseDocument dbSession) {
+        dbSession.activateOnCurrentThread();
+        onRelease.accept(dbSession);
+    }
+
     void withSession(Consumer<ODatabaseDocument> func) {
         this.<Void>withSession(session -> {
             func.accept(session);
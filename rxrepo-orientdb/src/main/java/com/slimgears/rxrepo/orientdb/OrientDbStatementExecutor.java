@@ -12,6 +12,8 @@ import com.slimgears.rxrepo.sql.SqlStatementExecutor;
 import com.slimgears.rxrepo.util.PropertyResolver;
 import com.slimgears.util.generic.MoreStrings;
 import io.reactivex.Completable;
+import io.reactivex.Emitter;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 import org.slf4j.Logger;
@@ -46,6 +48,16 @@ class OrientDbStatementExecutor implements SqlStatementExecutor {
                 });
     }
 
+    @Override
+    public Flowable<PropertyResolver> executeQueryFlowable(SqlStatement statement) {
+        return Flowable
+                .generate(
+                        () -> QueryCursor.open(sessionProvider, statement),
+                        QueryCursor::next,
+                        QueryCursor::close)
+                .map(res -> OResultPropertyResolver.create(sessionProvider, res));
+    }
+
     @Override
     public Observable<PropertyResolver> executeCommandReturnEntries(SqlStatement statement) {
         return toObservable(
@@ -105,16 +117,59 @@ class OrientDbStatementExecutor implements SqlStatementExecutor {
         return Observable.<OResult>create(
                 emitter -> sessionProvider.withSession(dbSession -> {
                     long id = operationCounter.incrementAndGet();
-                    OResultSet resultSet = resultSetSupplier.apply(dbSession);
-                    resultSet.stream()
-                            .peek(res -> log.trace("[{}] Received: {}", id, res))
-                            .forEach(emitter::onNext);
-                    resultSet.close();
+                    try (OResultSet resultSet = resultSetSupplier.apply(dbSession)) {
+                        while (!emitter.isDisposed() && resultSet.hasNext()) {
+                            OResult res = resultSet.next();
+                            log.trace("[{}] Received: {}", id, res);
+                            emitter.onNext(res);
+                        }
+                    }
                     emitter.onComplete();
                 }))
                 .map(res -> OResultPropertyResolver.create(sessionProvider, res));
     }
 
+    private static class QueryCursor {
+        private final OrientDbSessionProvider sessionProvider;
+        private final ODatabaseDocument dbSession;
+        private final OResultSet resultSet;
+
+        private QueryCursor(OrientDbSessionProvider sessionProvider, ODatabaseDocument dbSession, OResultSet resultSet) {
+            this.sessionProvider = sessionProvider;
+            this.dbSession = dbSession;
+            this.resultSet = resultSet;
+        }
+
+        static QueryCursor open(OrientDbSessionProvider sessionProvider, SqlStatement statement) {
+            ODatabaseDocument dbSession = sessionProvider.openDetachedSession();
+            try {
+                log.trace("[{}] Querying on demand: {}", operationCounter.incrementAndGet(), statement.statement());
+                return new QueryCursor(sessionProvider, dbSession, dbSession.query(statement.statement(), statement.args()));
+            } catch (Throwable e) {
+                sessionProvider.releaseDetachedSession(dbSession);
+                throw e;
+            }
+        }
+
+        void next(Emitter<OResult> emitter) {
+            dbSession.activateOnCurrentThread();
+            if (resultSet.hasNext()) {
+                emitter.onNext(resultSet.next());
+            } else {
+                emitter.onComplete();
+            }
+        }
+
+        void close() {
+            try {
+                dbSession.activateOnCurrentThread();
+                resultSet.close();
+            } finally {
+                sessionProvider.releaseDetachedSession(dbSession);
+            }
+        }
+    }
+
     private void logStatement(String title, SqlStatement statement) {
         log.trace("[{}] {}: {}", operationCounter.get(), title, lazy(() -> toString(statement)));
     }
@@ -110,11 +110,13 @@ public class DefaultSqlExpressionGenerator implements SqlExpressionGenerator {
         return ExpressionTextGenerator.Reducer.fromFormat(format).andThen(str -> str.replaceAll("' \\+ '", ""));
     }
 
-    private static ExpressionTextGenerator.Interceptor paramsInterceptor(List<Object> params) {
-        return ExpressionTextGenerator.Interceptor.ofType(ConstantExpression.class, (visitor, expression, visitSupplier) -> {
-            params.add(expression.value());
-            return "?";
-        });
+    private ExpressionTextGenerator.Interceptor paramsInterceptor(List<Object> params) {
+        return ExpressionTextGenerator.Interceptor.ofType(ConstantExpression.class, (visitor, expression, visitSupplier) -> toParam(expression.value(), params));
+    }
+
+    protected String toParam(Object value, List<Object> params) {
+        params.add(value);
+        return "?";
     }
 
     protected String reduce(ObjectExpression<?, ?> expression, String... parts) {
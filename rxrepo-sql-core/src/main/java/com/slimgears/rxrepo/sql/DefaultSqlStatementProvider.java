@@ -1,10 +1,15 @@
 package com.slimgears.rxrepo.sql;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.Sets;
 import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.expressions.Expression;
 import com.slimgears.rxrepo.expressions.ObjectExpression;
 import com.slimgears.rxrepo.expressions.PropertyExpression;
 import com.slimgears.rxrepo.query.provider.*;
+import com.slimgears.rxrepo.util.ExpressionShape;
 import com.slimgears.rxrepo.util.PropertyExpressions;
 import com.slimgears.rxrepo.util.PropertyResolver;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
@@ -17,6 +22,7 @@ import org.slf4j.LoggerFactory;
 import java.util.*;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.slimgears.rxrepo.sql.SqlStatement.of;
 import static com.slimgears.rxrepo.sql.StatementUtils.concat;
@@ -24,10 +30,15 @@ import static com.slimgears.util.generic.LazyString.lazy;
 
 public class DefaultSqlStatementProvider implements SqlStatementProvider {
     private final static Logger log = LoggerFactory.getLogger(DefaultSqlStatementProvider.class);
+    private final static int templateCacheSize = 4096;
 
     private final SqlExpressionGenerator sqlExpressionGenerator;
     private final SqlAssignmentGenerator sqlAssignmentGenerator;
     private final SchemaProvider schemaProvider;
+    private final Cache<List<Object>, SqlStatementTemplate> templates = CacheBuilder.newBuilder()
+            .maximumSize(templateCacheSize)
+            .recordStats()
+            .build();
 
     public DefaultSqlStatementProvider(SqlExpressionGenerator sqlExpressionGenerator,
                                        SqlAssignmentGenerator sqlAssignmentGenerator,
@@ -37,9 +48,17 @@ public class DefaultSqlStatementProvider implements SqlStatementProvider {
         this.schemaProvider = schemaProvider;
     }
 
+    public CacheStats templateCacheStats() {
+        return templates.stats();
+    }
+
     @Override
     public <K, S, T> SqlStatement forQuery(QueryInfo<K, S, T> queryInfo) {
-        return statement(() -> of(
+        return templateStatement(Stream.of(
+                Stream.of("query", queryInfo.metaClass(), queryInfo.distinct(), queryInfo.limit(), queryInfo.skip(), queryInfo.predicate(), queryInfo.mapping()),
+                queryInfo.properties().stream(),
+                queryInfo.sorting().stream().flatMap(si -> Stream.of(si.property(), si.ascending())))
+                .flatMap(parts -> parts), () -> of(
                 selectClause(queryInfo),
                 fromClause(queryInfo),
                 whereClause(queryInfo),
@@ -50,7 +69,8 @@ public class DefaultSqlStatementProvider implements SqlStatementProvider {
 
     @Override
     public <K, S, T, R> SqlStatement forAggregation(QueryInfo<K, S, T> queryInfo, ObjectExpression<T, R> aggregation, String projectedName) {
-        return statement(() -> of(
+        return templateStatement(
+                Stream.of("aggregation", queryInfo.metaClass(), queryInfo.predicate(), queryInfo.mapping(), aggregation, projectedName), () -> of(
                 selectClause(queryInfo, aggregation, projectedName),
                 fromClause(queryInfo),
                 whereClause(queryInfo)));
@@ -58,7 +78,9 @@ public class DefaultSqlStatementProvider implements SqlStatementProvider {
 
     @Override
     public <K, S> SqlStatement forUpdate(UpdateInfo<K, S> updateInfo) {
-        return statement(() -> of(
+        return templateStatement(Stream.concat(
+                Stream.of("update", updateInfo.metaClass(), updateInfo.limit(), updateInfo.predicate()),
+                updateInfo.propertyUpdates().stream().flatMap(pu -> Stream.of(pu.property(), pu.updater()))), () -> of(
                 "update",
                 schemaProvider.tableName(updateInfo.metaClass()),
                 "set",
@@ -72,7 +94,8 @@ public class DefaultSqlStatementProvider implements SqlStatementProvider {
 
     @Override
     public <K, S> SqlStatement forDelete(DeleteInfo<K, S> deleteInfo) {
-        return statement(() -> of(
+        return templateStatement(
+                Stream.of("delete", deleteInfo.metaClass(), deleteInfo.limit(), deleteInfo.predicate()), () -> of(
                 "delete",
                 fromClause(deleteInfo),
                 whereClause(deleteInfo),
@@ -131,14 +154,40 @@ public class DefaultSqlStatementProvider implements SqlStatementProvider {
                 ));
     }
 
-    private SqlStatement statement(Supplier<SqlStatement> statementSupplier) {
+    // Statements are cached per shape: expressions contribute their structure with the constants lifted out,
+    // everything else (including the types of the constants, which may affect the generated text) is a part of the key
+    protected SqlStatement templateStatement(Stream<Object> shapeParts, Supplier<SqlStatement> statementSupplier) {
+        List<Object> key = new ArrayList<>();
+        List<Object> constants = new ArrayList<>();
+        shapeParts.forEach(part -> {
+            if (part instanceof Expression) {
+                ExpressionShape shape = ExpressionShape.of((Expression)part);
+                key.add(shape.key());
+                constants.addAll(Arrays.asList(shape.parameters()));
+            } else {
+                key.add(part);
+            }
+        });
+        constants.forEach(constant -> key.add(constant != null ? constant.getClass() : null));
+
+        SqlStatementTemplate template = templates.getIfPresent(key);
+        if (template != null) {
+            return template.bind(constants);
+        }
+
+        SqlStatement statement = statement(statementSupplier);
+        SqlStatementTemplate.of(statement, constants).ifPresent(t -> templates.put(key, t));
+        return statement;
+    }
+
+    protected SqlStatement statement(Supplier<SqlStatement> statementSupplier) {
         List<Object> params = new ArrayList<>();
         SqlStatement statement = sqlExpressionGenerator.withParams(params, statementSupplier::get);
         return statement.withArgs(params.toArray());
     }
 
     @SuppressWarnings("unchecked")
-    private <K, S, T, Q extends HasMapping<S, T> & HasEntityMeta<K, S> & HasProperties<T>> String selectClause(Q queryInfo) {
+    protected <K, S, T, Q extends HasMapping<S, T> & HasEntityMeta<K, S> & HasProperties<T>> String selectClause(Q queryInfo) {
         ObjectExpression<S, T> expression = Optional
                 .ofNullable(queryInfo.mapping())
                 .orElse(ObjectExpression.arg((TypeToken)queryInfo.metaClass().asType()));
@@ -175,11 +224,11 @@ public class DefaultSqlStatementProvider implements SqlStatementProvider {
                 .orElse("");
     }
 
-    private <K, S, Q extends HasEntityMeta<K, S>> String fromClause(Q statement) {
+    protected <K, S, Q extends HasEntityMeta<K, S>> String fromClause(Q statement) {
         return "from " + schemaProvider.tableName(statement.metaClass());
     }
 
-    private <S, Q extends HasPredicate<S>> String whereClause(Q statement) {
+    protected <S, Q extends HasPredicate<S>> String whereClause(Q statement) {
         return Optional
                 .ofNullable(statement.predicate())
                 .map(this::toConditionClause)
@@ -187,13 +236,13 @@ public class DefaultSqlStatementProvider implements SqlStatementProvider {
                 .orElse("");
     }
 
-    private <Q extends HasLimit> String limitClause(Q statement) {
+    protected <Q extends HasLimit> String limitClause(Q statement) {
         return Optional.ofNullable(statement.limit())
                 .map(count -> "limit " + count)
                 .orElse("");
     }
 
-    private <Q extends HasPagination> String skipClause(Q statement) {
+    protected <Q extends HasPagination> String skipClause(Q statement) {
         return Optional.ofNullable(statement.skip())
                 .map(count -> "skip " + count)
                 .orElse("");
@@ -216,7 +265,7 @@ public class DefaultSqlStatementProvider implements SqlStatementProvider {
         return builder.toString();
     }
 
-    private String toOrder(SortingInfo<?, ?, ?> sortingInfo) {
+    protected String toOrder(SortingInfo<?, ?, ?> sortingInfo) {
         return sqlExpressionGenerator.toSqlExpression(sortingInfo.property()) + (sortingInfo.ascending() ? " asc" : " desc");
     }
 
@@ -9,6 +9,7 @@ import com.slimgears.rxrepo.expressions.PropertyExpression;
 import com.slimgears.rxrepo.expressions.internal.MoreTypeTokens;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.provider.*;
+import com.slimgears.rxrepo.util.LiveSnapshots;
 import com.slimgears.rxrepo.util.PropertyMetas;
 import com.slimgears.rxrepo.util.PropertyResolver;
 import com.slimgears.util.autovalue.annotations.HasMetaClass;
@@ -22,6 +23,7 @@ import io.reactivex.functions.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -139,9 +141,24 @@ public class SqlQueryProvider implements QueryProvider {
                         .compose(toObjects(objectType, query.mapping())));
     }
 
-    @SuppressWarnings("unchecked")
+    @Override
+    public <K, S, T> Flowable<T> queryFlowable(QueryInfo<K, S, T> query) {
+        TypeToken<? extends T> objectType = HasMapping.objectType(query);
+        return schemaProvider
+                .createOrUpdate(query.metaClass())
+                .andThen(statementExecutor
+                        .executeQueryFlowable(statementProvider.forQuery(query))
+                        .concatMapMaybe(toObject(objectType, query.mapping())));
+    }
+
     private <T> ObservableTransformer<PropertyResolver, T> toObjects(TypeToken<? extends T> objectType, ObjectExpression<?, T> mapping) {
-        Function<PropertyResolver, Maybe<T>> mapper = Optional
+        Function<PropertyResolver, Maybe<T>> mapper = toObject(objectType, mapping);
+        return src -> src.flatMapMaybe(mapper);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Function<PropertyResolver, Maybe<T>> toObject(TypeToken<? extends T> objectType, ObjectExpression<?, T> mapping) {
+        return Optional
                 .ofNullable(mapping)
                 .flatMap(Optionals.ofType(PropertyExpression.class))
                 .map(PropertyExpression::path)
@@ -153,7 +170,6 @@ public class SqlQueryProvider implements QueryProvider {
                         .map(Maybe::just)
                         .orElseGet(Maybe::empty))
                 .orElse(pr -> Maybe.fromCallable(() -> pr.toObject(objectType)));
-        return src -> src.flatMapMaybe(mapper);
     }
 
     @Override
@@ -164,6 +180,13 @@ public class SqlQueryProvider implements QueryProvider {
                 .map(notification -> notification.map(pr -> pr.toObject(objectType))));
     }
 
+    // Live query is registered synchronously once the schema exists, so it is active before the snapshot is read
+    @Override
+    public <K, S> Observable<List<Notification<S>>> queryAndObserve(QueryInfo<K, S, S> query, SnapshotChunking chunking) {
+        return schemaProvider.createOrUpdate(query.metaClass())
+                .andThen(LiveSnapshots.queryAndObserve(this, query, chunking));
+    }
+
     @Override
     public <K, S, T, R> Maybe<R> aggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
         TypeToken<T> elementType = HasMapping.objectType(query);
@@ -171,14 +194,16 @@ public class SqlQueryProvider implements QueryProvider {
         TypeToken<R> resultType = aggregation.reflect().objectType();
         return schemaProvider.createOrUpdate(query.metaClass()).andThen(statementExecutor
                 .executeQuery(statementProvider.forAggregation(query, aggregation, aggregationField))
-                .map(pr -> {
+                .firstElement()
+                .flatMap(pr -> {
                     Object obj = pr.getProperty(aggregationField, TypeTokens.asClass(resultType));
                     //noinspection unchecked
-                    return (obj instanceof PropertyResolver)
+                    return Optional.ofNullable((obj instanceof PropertyResolver)
                             ? ((PropertyResolver)obj).toObject(resultType)
-                            : (R)obj;
-                })
-                .firstElement());
+                            : (R)obj)
+                            .map(Maybe::just)
+                            .orElseGet(Maybe::empty);
+                }));
     }
 
     @Override
@@ -2,7 +2,9 @@ package com.slimgears.rxrepo.sql;
 
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.util.PropertyResolver;
+import io.reactivex.BackpressureStrategy;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 
@@ -12,4 +14,8 @@ public interface SqlStatementExecutor {
     Single<Integer> executeCommandReturnCount(SqlStatement statement);
     Completable executeCommand(SqlStatement statement);
     Observable<Notification<PropertyResolver>> executeLiveQuery(SqlStatement statement);
+
+    default Flowable<PropertyResolver> executeQueryFlowable(SqlStatement statement) {
+        return executeQuery(statement).toFlowable(BackpressureStrategy.BUFFER);
+    }
 }
@@ -0,0 +1,45 @@
+package com.slimgears.rxrepo.sql;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+// Statement text with the positions of its arguments among the constants of the query shape.
+// Statements whose arguments cannot be traced back to the constants unambiguously are not templated
+class SqlStatementTemplate {
+    private final String statement;
+    private final int[] argIndices;
+
+    private SqlStatementTemplate(String statement, int[] argIndices) {
+        this.statement = statement;
+        this.argIndices = argIndices;
+    }
+
+    static Optional<SqlStatementTemplate> of(SqlStatement statement, List<Object> constants) {
+        Object[] args = statement.args();
+        if (args.length != constants.size()) {
+            return Optional.empty();
+        }
+        if (IntStream.range(0, args.length).allMatch(i -> args[i] == constants.get(i))) {
+            return Optional.of(new SqlStatementTemplate(statement.statement(), IntStream.range(0, args.length).toArray()));
+        }
+
+        int[] argIndices = new int[args.length];
+        for (int i = 0; i < args.length; ++i) {
+            Object arg = args[i];
+            int[] candidates = IntStream.range(0, constants.size()).filter(j -> constants.get(j) == arg).toArray();
+            if (candidates.length != 1) {
+                return Optional.empty();
+            }
+            argIndices[i] = candidates[0];
+        }
+        if (IntStream.of(argIndices).distinct().count() != argIndices.length) {
+            return Optional.empty();
+        }
+        return Optional.of(new SqlStatementTemplate(statement.statement(), argIndices));
+    }
+
+    SqlStatement bind(List<Object> constants) {
+        return SqlStatement.create(statement, IntStream.of(argIndices).mapToObj(constants::get).toArray());
+    }
+}
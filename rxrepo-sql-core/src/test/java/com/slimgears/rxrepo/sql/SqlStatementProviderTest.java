@@ -123,4 +123,22 @@ public class SqlStatementProviderTest {
                         "limit 100", statement.statement());
         Assert.assertArrayEquals(new Object[]{"aa", "bbb"}, statement.args());
     }
+
+    @Test
+    public void testStatementTemplateIsReusedForSameShape() {
+        DefaultSqlStatementProvider provider = (DefaultSqlStatementProvider)statementProvider;
+        SqlStatement first = provider.forQuery(QueryInfo.<Integer, Product, Product>builder()
+                .metaClass(Product.metaClass)
+                .predicate(Product.$.name.contains("aaa").and(Product.$.price.lessThan(100)))
+                .build());
+        SqlStatement second = provider.forQuery(QueryInfo.<Integer, Product, Product>builder()
+                .metaClass(Product.metaClass)
+                .predicate(Product.$.name.contains("bbb").and(Product.$.price.lessThan(200)))
+                .build());
+
+        Assert.assertEquals(first.statement(), second.statement());
+        Assert.assertArrayEquals(new Object[]{"aaa", 100}, first.args());
+        Assert.assertArrayEquals(new Object[]{"bbb", 200}, second.args());
+        Assert.assertEquals(1, provider.templateCacheStats().hitCount());
+    }
 }
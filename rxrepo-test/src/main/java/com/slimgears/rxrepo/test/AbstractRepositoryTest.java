@@ -13,6 +13,8 @@ import com.slimgears.util.test.logging.UseLogLevel;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subscribers.TestSubscriber;
 import io.reactivex.subjects.CompletableSubject;
 import org.junit.*;
 import org.junit.rules.MethodRule;
@@ -169,6 +171,34 @@ public abstract class AbstractRepositoryTest {
                 .assertValue(product);
     }
 
+    @Test
+    public void testQueryReflectsUpdatedReferencedEntity() {
+        Product product = Products.createOne();
+        EntitySet<UniqueId, Product> productSet = repository.entities(Product.metaClass);
+        EntitySet<UniqueId, Inventory> inventorySet = repository.entities(Inventory.metaClass);
+        productSet.update(product)
+                .ignoreElement()
+                .blockingAwait();
+
+        productSet.query()
+                .where(Product.$.key.eq(product.key()))
+                .retrieve()
+                .test()
+                .awaitDone(10, TimeUnit.SECONDS)
+                .assertValue(p -> "Inventory 0".equals(requireNonNull(p.inventory()).name()));
+
+        inventorySet.update(requireNonNull(product.inventory()).toBuilder().name("Inventory 0 - updated").build())
+                .ignoreElement()
+                .blockingAwait();
+
+        productSet.query()
+                .where(Product.$.key.eq(product.key()))
+                .retrieve()
+                .test()
+                .awaitDone(10, TimeUnit.SECONDS)
+                .assertValue(p -> "Inventory 0 - updated".equals(requireNonNull(p.inventory()).name()));
+    }
+
     @Test
     public void testAddSameInventory() throws InterruptedException {
         EntitySet<UniqueId, Product> productSet = repository.entities(Product.metaClass);
@@ -451,6 +481,54 @@ public abstract class AbstractRepositoryTest {
                 });
     }
 
+    @Test
+    public void testObserveAsListChanges() throws InterruptedException {
+        EntitySet<UniqueId, Product> productSet = repository.entities(Product.metaClass);
+        productSet.update(Products.createMany(20)).ignoreElement().blockingAwait();
+
+        List<Product> products = new ArrayList<>();
+        TestObserver<List<Product>> productsObserver = productSet
+                .query()
+                .orderBy(Product.$.key.id)
+                .observeAs(Notifications.toListChanges())
+                .map(changes -> {
+                    changes.forEach(change -> applyListChange(products, change));
+                    return ImmutableList.copyOf(products);
+                })
+                .filter(list -> list.size() == 15 && list.get(0).key().id() == 5)
+                .take(1)
+                .test();
+
+        productSet.deleteAll(Product.$.key.id.lessThan(5)).blockingAwait();
+
+        productsObserver
+                .await()
+                .assertNoErrors()
+                .assertValue(productSet.query().orderBy(Product.$.key.id).retrieveAsList().blockingGet());
+    }
+
+    private static <T> void applyListChange(List<T> list, ListChange<T> change) {
+        switch (change.type()) {
+            case Reset:
+                list.clear();
+                list.addAll(requireNonNull(change.items()));
+                break;
+            case Insert:
+                list.add(change.index(), change.item());
+                break;
+            case Remove:
+                list.remove(change.index());
+                break;
+            case Replace:
+                list.set(change.index(), change.item());
+                break;
+            case Move:
+                list.remove(change.fromIndex());
+                list.add(change.index(), change.item());
+                break;
+        }
+    }
+
     @Test
     public void testObserveReferencedObjectProperties() {
         repository.entities(Product.metaClass)
@@ -497,6 +575,62 @@ public abstract class AbstractRepositoryTest {
                 .assertValueAt(1, 0L);
     }
 
+    @Test
+    @UseLogLevel(LogLevel.TRACE)
+    public void testObserveMaxThenDeleteMax() {
+        List<Product> products = ImmutableList.copyOf(Products.createMany(10));
+        repository.entities(Product.metaClass)
+                .update(products)
+                .ignoreElement()
+                .blockingAwait();
+
+        int maxPrice = products.stream().mapToInt(Product::price).max().orElse(0);
+        int nextMaxPrice = products.stream().mapToInt(Product::price).filter(p -> p < maxPrice).max().orElse(0);
+
+        TestObserver<Integer> max = repository.entities(Product.metaClass)
+                .query()
+                .liveSelect(Product.$.price)
+                .aggregate(Aggregator.max())
+                .debounce(500, TimeUnit.MILLISECONDS)
+                .test()
+                .assertSubscribed();
+
+        max.awaitCount(1)
+                .assertValueCount(1)
+                .assertValue(maxPrice);
+
+        repository.entities(Product.metaClass).deleteAll(Product.$.price.eq(maxPrice))
+                .blockingAwait();
+
+        max.awaitCount(2)
+                .assertValueCount(2)
+                .assertValueAt(1, nextMaxPrice);
+    }
+
+    @Test
+    public void testObserveCountWhileInserting() throws InterruptedException {
+        EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+        List<Product> items = ImmutableList.copyOf(Products.createMany(200));
+
+        TestObserver<Void> writer = Observable.fromIterable(items)
+                .buffer(10)
+                .concatMapCompletable(chunk -> products.update(chunk).ignoreElement())
+                .subscribeOn(Schedulers.io())
+                .test();
+
+        TestObserver<Long> count = products
+                .query()
+                .observeCount()
+                .takeUntil(c -> c >= items.size())
+                .lastElement()
+                .test();
+
+        writer.await().assertNoErrors();
+        count.await()
+                .assertNoErrors()
+                .assertValue((long)items.size());
+    }
+
     @Test
     @UseLogLevel(LogLevel.TRACE)
     public void testPartialRetrieve() throws InterruptedException {
@@ -728,6 +862,307 @@ public abstract class AbstractRepositoryTest {
         productObserver.assertOf(countLessThan(4));
     }
 
+    @Test
+    public void testLiveQueriesFilteredByKey() {
+        EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+
+        TestObserver<Notification<Product>> firstObserver = products
+                .query()
+                .where(Product.$.key.eq(UniqueId.productId(1)))
+                .liveSelect()
+                .observe()
+                .test()
+                .assertSubscribed();
+
+        TestObserver<Notification<Product>> secondObserver = products
+                .query()
+                .where(Product.$.key.in(UniqueId.productId(2), UniqueId.productId(3)))
+                .liveSelect()
+                .observe()
+                .test()
+                .assertSubscribed();
+
+        TestObserver<Notification<Product>> pricedObserver = products
+                .query()
+                .where(Product.$.price.greaterThan(100))
+                .liveSelect()
+                .observe()
+                .test()
+                .assertSubscribed();
+
+        products.update(Product.builder().key(UniqueId.productId(1)).name("Product 1").price(101).build())
+                .ignoreElement()
+                .blockingAwait();
+        products.update(Product.builder().key(UniqueId.productId(3)).name("Product 3").price(99).build())
+                .ignoreElement()
+                .blockingAwait();
+        products.update(Product.builder().key(UniqueId.productId(4)).name("Product 4").price(104).build())
+                .ignoreElement()
+                .blockingAwait();
+
+        firstObserver
+                .assertOf(countExactly(1))
+                .assertValueAt(0, n -> requireNonNull(n.newValue()).price() == 101);
+        secondObserver
+                .assertOf(countExactly(1))
+                .assertValueAt(0, n -> requireNonNull(n.newValue()).price() == 99);
+        pricedObserver
+                .assertOf(countExactly(2))
+                .assertValueAt(1, n -> requireNonNull(n.newValue()).price() == 104);
+
+        firstObserver.dispose();
+        secondObserver.dispose();
+        pricedObserver.dispose();
+    }
+
+    @Test
+    public void testObserveAsListFilteredByKey() {
+        EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+        products.update(Products.createMany(10)).ignoreElement().blockingAwait();
+
+        TestObserver<List<Product>> listObserver = products
+                .query()
+                .where(Product.$.key.in(UniqueId.productId(1), UniqueId.productId(2)))
+                .observeAsList()
+                .test()
+                .awaitCount(1)
+                .assertValue(l -> l.size() == 2);
+
+        products.update(Product.builder().key(UniqueId.productId(5)).name("Product 5").price(205).build())
+                .ignoreElement()
+                .blockingAwait();
+        products.update(Product.builder().key(UniqueId.productId(2)).name("Product 2").price(202).build())
+                .ignoreElement()
+                .blockingAwait();
+
+        listObserver
+                .awaitCount(2)
+                .assertValueCount(2)
+                .assertValueAt(1, l -> l.size() == 2 && l.stream().anyMatch(p -> p.price() == 202));
+        listObserver.dispose();
+    }
+
+    @Test
+    public void testUnmappedLiveQueryIsConflated() {
+        EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+        TestObserver<Notification<Product>> observer = products.query()
+                .liveSelect()
+                .conflate(Duration.ofSeconds(1))
+                .observe()
+                .test();
+
+        Product product = Products.createOne(1);
+        products.update(product).ignoreElement().blockingAwait();
+        for (int i = 1; i <= 10; ++i) {
+            products.update(product.toBuilder().price(product.price() + i).build()).ignoreElement().blockingAwait();
+        }
+
+        observer.assertOf(countLessThan(11, Duration.ofSeconds(3)));
+        observer.assertValueAt(observer.valueCount() - 1, n -> requireNonNull(n.newValue()).price() == product.price() + 10);
+        observer.dispose();
+    }
+
+    @Test
+    public void testRetrieveFlowableOnDemand() {
+        EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+        products.update(Products.createMany(100))
+                .ignoreElement()
+                .blockingAwait();
+
+        TestSubscriber<Product> subscriber = products.findAllFlowable().test(0);
+        subscriber.request(10);
+        subscriber.awaitCount(10)
+                .assertValueCount(10)
+                .assertNotComplete();
+
+        subscriber.request(Long.MAX_VALUE);
+        subscriber.awaitDone(10, TimeUnit.SECONDS)
+                .assertValueCount(100)
+                .assertComplete();
+    }
+
+    @Test
+    public void testObserveAsListDoesNotLoseConcurrentUpdates() {
+        EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+        products.update(Products.createMany(0, 100))
+                .ignoreElement()
+                .blockingAwait();
+
+        TestObserver<List<Product>> observer = products.query()
+                .observeAsList()
+                .filter(list -> list.size() == 200)
+                .test();
+
+        products.update(Products.createMany(100, 100))
+                .ignoreElement()
+                .blockingAwait();
+
+        observer.awaitCount(1)
+                .assertValueCount(1)
+                .assertValue(list -> list.stream().map(Product::key).distinct().count() == 200);
+    }
+
+    @Test
+    public void testObserveAsListWithSnapshotChunks() {
+        EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+        products.update(Products.createMany(0, 100))
+                .ignoreElement()
+                .blockingAwait();
+
+        TestObserver<List<Product>> observer = products.query()
+                .liveSelect()
+                .snapshotChunks(10, Duration.ofSeconds(1))
+                .asList()
+                .takeUntil(list -> list.size() == 120)
+                .test();
+
+        products.update(Products.createMany(100, 20))
+                .ignoreElement()
+                .blockingAwait();
+
+        observer.awaitDone(10, TimeUnit.SECONDS)
+                .assertComplete()
+                .assertValueAt(0, list -> list.size() <= 10)
+                .assertValueAt(observer.valueCount() - 1, list -> list.stream().map(Product::key).distinct().count() == 120);
+        Assert.assertTrue(observer.valueCount() >= 10);
+    }
+
+    @Test
+    public void testConcurrentFindsAreResolved() {
+        EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+        products.update(Products.createMany(100))
+                .ignoreElement()
+                .blockingAwait();
+
+        List<Product> found = Observable.range(0, 110)
+                .flatMapMaybe(i -> products.find(UniqueId.productId(i)))
+                .toList()
+                .blockingGet();
+
+        Assert.assertEquals(100, found.size());
+        Assert.assertEquals(100, found.stream().map(Product::key).distinct().count());
+        Assert.assertNull(products.find(UniqueId.productId(200)).blockingGet());
+    }
+
+    @Test
+    public void testFindAllByKeys() {
+        EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+        products.update(Products.createMany(100))
+                .ignoreElement()
+                .blockingAwait();
+
+        List<UniqueId> keys = Arrays.asList(
+                UniqueId.productId(1),
+                UniqueId.productId(5),
+                UniqueId.productId(5),
+                UniqueId.productId(99),
+                UniqueId.productId(200));
+
+        Map<UniqueId, Product> found = products.findAll(keys).blockingGet();
+        Assert.assertEquals(3, found.size());
+        Assert.assertEquals("Product 5", found.get(UniqueId.productId(5)).name());
+        Assert.assertNotNull(found.get(UniqueId.productId(5)).inventory());
+        Assert.assertFalse(found.containsKey(UniqueId.productId(200)));
+    }
+
+    @Test
+    public void testKeysetPagination() {
+        EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+        products.update(Products.createMany(100))
+                .ignoreElement()
+                .blockingAwait();
+
+        List<Product> retrieved = new ArrayList<>();
+        KeysetPage<Product> firstPage = products.query()
+                .orderBy(Product.$.price)
+                .limit(15)
+                .retrievePage()
+                .blockingGet();
+
+        for (KeysetPage<Product> page = firstPage; !page.isEmpty(); ) {
+            retrieved.addAll(page.items());
+            page = products.query()
+                    .orderBy(Product.$.price)
+                    .after(page.next())
+                    .limit(15)
+                    .retrievePage()
+                    .blockingGet();
+        }
+
+        Assert.assertEquals(100, retrieved.size());
+        Assert.assertEquals(100, retrieved.stream().map(Product::key).distinct().count());
+        for (int i = 1; i < retrieved.size(); ++i) {
+            Assert.assertTrue(retrieved.get(i - 1).price() <= retrieved.get(i).price());
+        }
+
+        KeysetPage<Product> secondPage = products.query()
+                .orderBy(Product.$.price)
+                .after(firstPage.next())
+                .limit(15)
+                .retrievePage()
+                .blockingGet();
+
+        products.query()
+                .orderBy(Product.$.price)
+                .before(secondPage.previous())
+                .limit(15)
+                .retrieveAsList()
+                .test()
+                .assertValue(firstPage.items());
+    }
+
+    @Test
+    public void testKeysetPaginationOfMappedQuery() {
+        EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+        products.update(Products.createMany(30))
+                .ignoreElement()
+                .blockingAwait();
+
+        KeysetPage<Integer> firstPage = products.query()
+                .map(Product.$.price)
+                .limit(20)
+                .retrievePage()
+                .blockingGet();
+
+        KeysetPage<Integer> secondPage = products.query()
+                .map(Product.$.price)
+                .after(firstPage.next())
+                .limit(20)
+                .retrievePage()
+                .blockingGet();
+
+        Assert.assertEquals(20, firstPage.items().size());
+        Assert.assertEquals(10, secondPage.items().size());
+    }
+
+    @Test
+    public void testKeysetPaginationRejectsNullableSortProperty() {
+        EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+        products.update(Products.createMany(10))
+                .ignoreElement()
+                .blockingAwait();
+
+        try {
+            products.query()
+                    .orderBy(Product.$.name)
+                    .limit(5)
+                    .retrievePage()
+                    .blockingGet();
+            Assert.fail("Keyset pagination by nullable property is expected to fail");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("name"));
+        }
+
+        // Nullable property can still be used for regular pagination
+        products.query()
+                .orderBy(Product.$.name)
+                .limit(5)
+                .retrieve()
+                .test()
+                .awaitDone(10, TimeUnit.SECONDS)
+                .assertValueCount(5);
+    }
+
     @Test
     public void testDistinctSelect() {
         EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
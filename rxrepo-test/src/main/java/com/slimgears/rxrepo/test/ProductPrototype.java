@@ -1,6 +1,7 @@
 package com.slimgears.rxrepo.test;
 
 import com.slimgears.rxrepo.annotations.Filterable;
+import com.slimgears.rxrepo.annotations.Indexable;
 import com.slimgears.rxrepo.annotations.Searchable;
 import com.slimgears.rxrepo.annotations.UseExpressions;
 import com.slimgears.rxrepo.annotations.UseFilters;
@@ -26,8 +27,8 @@ public interface ProductPrototype {
     @Key @Filterable UniqueId key();
     @Nullable @Filterable @Searchable String name();
     @Filterable @Nullable Inventory inventory();
-    @Nullable @Searchable Type type();
-    int price();
+    @Nullable @Searchable @Indexable(asString = true) Type type();
+    @Indexable int price();
     @Nullable List<String> aliases();
     @Nullable List<UniqueId> relatedIds();
     @Nullable Vendor vendor();